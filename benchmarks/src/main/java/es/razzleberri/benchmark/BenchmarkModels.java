@@ -0,0 +1,139 @@
+package es.razzleberri.benchmark;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Provides the CraftStudio models which the benchmarks run against.
+ * <p>
+ * The small models are the test resources of the main project, the large ones are generated with a fixed seed so
+ * that every run measures the same input.
+ */
+public final class BenchmarkModels {
+    
+    private final static double[] ANGLES = {0, 0, 0, 15, 22.5, 45, 90, -45};
+    
+    private BenchmarkModels() {}
+    
+    /**
+     * Returns the JSON source of a model by name. The names {@code "large"} and {@code "huge"} refer to generated
+     * models of 10,000 and 100,000 blocks, {@code "rotated"} to a generated model of 10,000 blocks with arbitrary
+     * rotations, {@code "chain"} to a generated chain of 10,000 nested blocks, all other names to test resources.
+     *
+     * @param name the name of the model
+     * @return the JSON source of the model
+     * @throws IOException if the model can not be loaded
+     */
+    public static String load(String name) throws IOException {
+        switch (name) {
+            case "large": return generate(10_000, 12345);
+            case "huge": return generate(100_000, 12345);
+            case "rotated": return generate(10_000, 12345, true);
+            case "chain": return generateChain(10_000);
+            default: return resource(name + ".csjsmodel");
+        }
+    }
+    
+    public static String resource(String path) throws IOException {
+        try (InputStream stream = BenchmarkModels.class.getClassLoader().getResourceAsStream(path)) {
+            if (stream == null)
+                throw new IOException("resource \"" + path + "\" could not be found");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read; (read = stream.read(buffer)) != -1; )
+                bytes.write(buffer, 0, read);
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * Generates a model with the given number of blocks. Top-level blocks have up to three levels of children and
+     * use a small set of typical rotations.
+     *
+     * @param blocks the total number of blocks
+     * @param seed the seed of the random generator
+     * @return the JSON source of the model
+     */
+    public static String generate(int blocks, long seed) {
+        return generate(blocks, seed, false);
+    }
+    
+    /**
+     * Generates a model with the given number of blocks. Top-level blocks have up to three levels of children. If
+     * rotations are arbitrary, every block is rotated by whole angles between -180 and 180 degrees the way models are
+     * posed in the editor, so that nearly every bone has a rotation with rounding errors.
+     *
+     * @param blocks the total number of blocks
+     * @param seed the seed of the random generator
+     * @param arbitraryRotations whether blocks have arbitrary rotations instead of a small set of typical ones
+     * @return the JSON source of the model
+     */
+    public static String generate(int blocks, long seed, boolean arbitraryRotations) {
+        Random random = new Random(seed);
+        StringBuilder json = new StringBuilder(blocks * 320);
+        json.append("{\n  \"title\": \"geometry.generated\",\n  \"tree\": [");
+        
+        int remaining = blocks;
+        boolean first = true;
+        while (remaining > 0) {
+            if (!first)
+                json.append(',');
+            first = false;
+            remaining = appendBlock(json, random, arbitraryRotations, remaining, 0);
+        }
+        
+        return json.append("\n  ]\n}\n").toString();
+    }
+    
+    /**
+     * Generates a model consisting of a single chain of nested blocks, each of which is rotated and therefore
+     * converted into a bone of its own.
+     *
+     * @param depth the depth of the chain
+     * @return the JSON source of the model
+     */
+    public static String generateChain(int depth) {
+        StringBuilder json = new StringBuilder(depth * 240);
+        json.append("{\"title\": \"geometry.chain\", \"tree\": [");
+        for (int i = 0; i < depth; i++) {
+            appendFields(json, "chain" + i, 1, 2, 0, i % 2 == 0? 15 : -15, 0);
+            json.append(", \"children\": [");
+        }
+        for (int i = 0; i < depth; i++)
+            json.append("]}");
+        return json.append("]}").toString();
+    }
+    
+    private static int appendBlock(StringBuilder json, Random random, boolean arbitraryRotations, int remaining,
+                                   int depth) {
+        appendFields(json, "block" + remaining,
+            random.nextInt(32) - 16, random.nextInt(32), random.nextInt(32) - 16,
+            angle(random, arbitraryRotations), angle(random, arbitraryRotations));
+        remaining--;
+        
+        json.append(", \"children\": [");
+        int children = depth < 3? random.nextInt(4) : 0;
+        for (int i = 0; i < children && remaining > 0; i++) {
+            if (i != 0)
+                json.append(',');
+            remaining = appendBlock(json, random, arbitraryRotations, remaining, depth + 1);
+        }
+        json.append("]}");
+        return remaining;
+    }
+    
+    private static double angle(Random random, boolean arbitrary) {
+        return arbitrary? random.nextInt(360) - 180 : ANGLES[random.nextInt(ANGLES.length)];
+    }
+    
+    private static void appendFields(StringBuilder json, String name, int x, int y, int z, double rotX, double rotY) {
+        json.append("\n{\"name\": \"").append(name).append('"')
+            .append(", \"position\": [").append(x).append(", ").append(y).append(", ").append(z).append(']')
+            .append(", \"offsetFromPivot\": [0, 0, 0]")
+            .append(", \"size\": [").append(2 + (x & 7)).append(", ").append(2 + (y & 7)).append(", 4]")
+            .append(", \"rotation\": [").append(rotX).append(", ").append(rotY).append(", 0]")
+            .append(", \"texOffset\": [").append(x & 63).append(", ").append(y & 63).append(']');
+    }
+    
+}
@@ -0,0 +1,23 @@
+package es.razzleberri.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, so that allocation rates are reported next to throughput.
+ * <p>
+ * All regular JMH command line options are accepted, for example a regular expression selecting the benchmarks
+ * to run.
+ */
+public final class BenchmarkRunner {
+    
+    public static void main(String... args) throws Exception {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+    
+}
@@ -0,0 +1,64 @@
+package es.razzleberri.benchmark;
+
+import es.razzleberri.*;
+import es.razzleberri.io.CompactCraftStudioDeserializer;
+import es.razzleberri.io.CraftStudioDeserializer;
+import es.razzleberri.util.RotationCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+    
+    @Param({"model", "rotations", "large", "rotated", "chain"})
+    public String model;
+    
+    private CraftStudioModel csModel;
+    private CompactCraftStudioModel compactModel;
+    private final ConversionOptions options = new ConversionOptions();
+    private final ConversionOptions parallelOptions = new ConversionOptions().setParallel(true);
+    private final ConversionOptions cachedOptions = new ConversionOptions().setRotationCache(new RotationCache(4096));
+    
+    @Setup
+    public void setup() throws IOException {
+        String source = BenchmarkModels.load(model);
+        csModel = new CraftStudioDeserializer().fromString(source);
+        compactModel = new CompactCraftStudioDeserializer().fromString(source);
+    }
+    
+    @Benchmark
+    public BedrockEntityModel convert() {
+        return CraftStudioToBedrockEntity.convert(csModel);
+    }
+    
+    @Benchmark
+    public CompactBedrockGeometry convertCompact() {
+        return CraftStudioToBedrockEntity.convert(compactModel, options);
+    }
+    
+    /**
+     * Converts the compact model with a rotation cache, which is shared by all invocations like by a batch.
+     */
+    @Benchmark
+    public CompactBedrockGeometry convertCompactCached() {
+        return CraftStudioToBedrockEntity.convert(compactModel, cachedOptions);
+    }
+    
+    @Benchmark
+    public BedrockEntityModel convertParallel() {
+        return CraftStudioToBedrockEntity.convert(csModel, parallelOptions);
+    }
+    
+    @Benchmark
+    public CompactBedrockGeometry convertCompactParallel() {
+        return CraftStudioToBedrockEntity.convert(compactModel, parallelOptions);
+    }
+    
+}
@@ -0,0 +1,38 @@
+package es.razzleberri.benchmark;
+
+import java.io.Writer;
+
+/**
+ * A {@link Writer} which discards everything written to it, so that serialization can be measured without the
+ * cost of storing its output.
+ */
+public class NullWriter extends Writer {
+    
+    private long length;
+    
+    @Override
+    public void write(int c) {
+        length++;
+    }
+    
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+        this.length += length;
+    }
+    
+    @Override
+    public void write(String str, int offset, int length) {
+        this.length += length;
+    }
+    
+    public long getLength() {
+        return length;
+    }
+    
+    @Override
+    public void flush() {}
+    
+    @Override
+    public void close() {}
+    
+}
@@ -0,0 +1,76 @@
+package es.razzleberri.benchmark;
+
+import es.razzleberri.CompactCraftStudioModel;
+import es.razzleberri.CraftStudioModel;
+import es.razzleberri.io.BinaryCraftStudioDeserializer;
+import es.razzleberri.io.BinaryCraftStudioSerializer;
+import es.razzleberri.io.CompactCraftStudioDeserializer;
+import es.razzleberri.io.CraftStudioDeserializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    
+    @Param({"model", "rotations", "large", "chain"})
+    public String model;
+    
+    private String source;
+    private File file;
+    private byte[] binary;
+    
+    @Setup
+    public void setup() throws IOException {
+        source = BenchmarkModels.load(model);
+        file = File.createTempFile("benchmark", ".csjsmodel");
+        file.deleteOnExit();
+        Files.write(file.toPath(), source.getBytes(StandardCharsets.UTF_8));
+        binary = new BinaryCraftStudioSerializer().toBytes(parse());
+    }
+    
+    @Benchmark
+    public CraftStudioModel parse() throws IOException {
+        return new CraftStudioDeserializer().fromReader(new StringReader(source));
+    }
+    
+    /**
+     * Parses the model from a file, which is memory-mapped if it is large enough.
+     */
+    @Benchmark
+    public CompactCraftStudioModel parseCompactFile() throws IOException {
+        return new CompactCraftStudioDeserializer().fromFile(file);
+    }
+    
+    /**
+     * Parses the model from a file the way it used to be read, through a {@link FileReader}.
+     */
+    @Benchmark
+    public CompactCraftStudioModel parseCompactFileReader() throws IOException {
+        try (Reader reader = new FileReader(file)) {
+            return new CompactCraftStudioDeserializer().fromReader(reader);
+        }
+    }
+    
+    @Benchmark
+    public CompactCraftStudioModel parseCompact() throws IOException {
+        return new CompactCraftStudioDeserializer().fromReader(new StringReader(source));
+    }
+    
+    /**
+     * Reads the same model as {@link #parse()} from its binary form instead of JSON.
+     */
+    @Benchmark
+    public CraftStudioModel parseBinary() throws IOException {
+        return new BinaryCraftStudioDeserializer().fromBytes(binary);
+    }
+    
+}
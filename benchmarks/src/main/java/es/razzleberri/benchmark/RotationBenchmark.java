@@ -0,0 +1,100 @@
+package es.razzleberri.benchmark;
+
+import es.razzleberri.util.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rotation math which runs for every block of every converted model.
+ * <p>
+ * Each invocation operates on the next element of a fixed table of random rotations, so that the JIT can not
+ * constant-fold the inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotationBenchmark {
+    
+    private final static int SIZE = 1024;
+    
+    private final Vec3d[] degrees = new Vec3d[SIZE];
+    private final Vec3d[] radians = new Vec3d[SIZE];
+    private final Matrix3x3d[] matrices = new Matrix3x3d[SIZE];
+    private final Matrix3x3d scratch = new Matrix3x3d();
+    private final double[] result = new double[3];
+    private int index;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(12345);
+        for (int i = 0; i < SIZE; i++) {
+            degrees[i] = new Vec3d(random.nextDouble() * 360, random.nextDouble() * 360, random.nextDouble() * 360);
+            radians[i] = degrees[i].times(Math.toRadians(1));
+            matrices[i] = Matrix3x3d.fromEulerXYZ(radians[i]);
+        }
+    }
+    
+    private int next() {
+        return index = (index + 1) & (SIZE - 1);
+    }
+    
+    @Benchmark
+    public Vec3d craftStudioRotationToEntityRotation() {
+        return Rotations.craftStudioRotationToEntityRotation(degrees[next()]);
+    }
+    
+    @Benchmark
+    public boolean isZeroRotation() {
+        return Rotations.isZeroRotation(degrees[next()]);
+    }
+    
+    @Benchmark
+    public Matrix3x3d matrixTimes() {
+        int i = next();
+        return matrices[i].times(matrices[(i + 1) & (SIZE - 1)]);
+    }
+    
+    @Benchmark
+    public Matrix3x3d matrixSetProduct() {
+        int i = next();
+        return scratch.setProduct(matrices[i], matrices[(i + 1) & (SIZE - 1)]);
+    }
+    
+    @Benchmark
+    public Matrix3x3d fromEulerYXZ() {
+        return Matrix3x3d.fromEulerYXZ(radians[next()]);
+    }
+    
+    @Benchmark
+    public Matrix3x3d setFromEulerYXZ() {
+        Vec3d v = radians[next()];
+        return scratch.setFromEulerYXZ(v.getX(), v.getY(), v.getZ());
+    }
+    
+    @Benchmark
+    public Vec3d getXYZEulerRotation() {
+        return matrices[next()].getXYZEulerRotation();
+    }
+    
+    @Benchmark
+    public Vec3d getYXZEulerRotation() {
+        return matrices[next()].getYXZEulerRotation();
+    }
+    
+    @Benchmark
+    public Vec3d getLZYXEulerRotation() {
+        return matrices[next()].getLZYXEulerRotation();
+    }
+    
+    @Benchmark
+    public double[] getLZYXEulerRotationInPlace() {
+        matrices[next()].getLZYXEulerRotation(result);
+        return result;
+    }
+    
+}
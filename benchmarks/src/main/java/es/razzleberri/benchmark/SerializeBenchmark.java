@@ -0,0 +1,47 @@
+package es.razzleberri.benchmark;
+
+import es.razzleberri.*;
+import es.razzleberri.io.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+    
+    @Param({"model", "rotations", "large", "rotated"})
+    public String model;
+    
+    private BedrockEntityModel entityModel;
+    private CompactBedrockGeometry compactGeometry;
+    
+    @Setup
+    public void setup() throws IOException {
+        String source = BenchmarkModels.load(model);
+        CraftStudioModel csModel = new CraftStudioDeserializer().fromString(source);
+        entityModel = CraftStudioToBedrockEntity.convert(csModel);
+        CompactCraftStudioModel compactModel = new CompactCraftStudioDeserializer().fromString(source);
+        compactGeometry = CraftStudioToBedrockEntity.convert(compactModel, new ConversionOptions());
+    }
+    
+    @Benchmark
+    public long serialize() throws IOException {
+        NullWriter writer = new NullWriter();
+        new BedrockEntitySerializer().toWriter(entityModel, writer);
+        return writer.getLength();
+    }
+    
+    @Benchmark
+    public long serializeCompact() throws IOException {
+        NullWriter writer = new NullWriter();
+        new CompactBedrockEntitySerializer().toWriter(compactGeometry, writer);
+        return writer.getLength();
+    }
+    
+}
@@ -0,0 +1,374 @@
+package es.razzleberri;
+
+import es.razzleberri.io.AtomicFileWriter;
+import es.razzleberri.io.FileContent;
+import es.razzleberri.util.RotationCache;
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * Converts many CraftStudio models in one run, so that JVM startup and class loading are only paid once.
+ * <p>
+ * The input is either a directory, which is searched recursively for {@code .csjsmodel} files, or a path containing
+ * a glob pattern such as {@code models/*.csjsmodel}. The relative path of every input file is mirrored in the
+ * output directory, with the extension replaced by {@code .json}, unless the batch is created by
+ * {@link #joined(String, Path, ModelConverter)} and all models are {@link #runJoined(PrintStream) joined} into one
+ * file.
+ */
+public class BatchConverter {
+    
+    public final static String CS_EXTENSION = ".csjsmodel", ENTITY_EXTENSION = ".json";
+    
+    private final static String GLOB_CHARS = "*?[{";
+    
+    @NotNull
+    private final Path inputRoot;
+    @Nullable
+    private final PathMatcher matcher;
+    /** the output directory, or the output file if the batch is joined */
+    @NotNull
+    private final Path outputRoot;
+    private final boolean joined;
+    @NotNull
+    private final ModelConverter converter;
+    
+    private BatchConverter(@NotNull Path inputRoot,
+                           @Nullable PathMatcher matcher,
+                           @NotNull Path outputRoot,
+                           boolean joined,
+                           @NotNull ModelConverter converter) {
+        this.inputRoot = inputRoot;
+        this.matcher = matcher;
+        this.outputRoot = outputRoot;
+        this.joined = joined;
+        this.converter = converter;
+    }
+    
+    /**
+     * Returns whether the given input path is meant for batch conversion, which is the case for directories and
+     * glob patterns.
+     *
+     * @param input the input path as given on the command line
+     * @return whether the input is a batch input
+     */
+    public static boolean isBatchInput(@NotNull String input) {
+        return indexOfGlob(input) != -1 || new File(input).isDirectory();
+    }
+    
+    /**
+     * Creates a new batch converter.
+     *
+     * @param input the input directory or glob pattern
+     * @param outputDir the output directory
+     * @param converter the converter used for every single file
+     * @return a new batch converter
+     */
+    @NotNull
+    public static BatchConverter of(@NotNull String input,
+                                    @NotNull Path outputDir,
+                                    @NotNull ModelConverter converter) {
+        return create(input, outputDir, false, converter);
+    }
+    
+    /**
+     * Creates a new batch converter which {@link #runJoined(PrintStream) joins} all models into one entity file.
+     *
+     * @param input the input directory or glob pattern
+     * @param outputFile the entity file
+     * @param converter the converter used for every single file
+     * @return a new batch converter
+     */
+    @NotNull
+    public static BatchConverter joined(@NotNull String input,
+                                        @NotNull Path outputFile,
+                                        @NotNull ModelConverter converter) {
+        return create(input, outputFile, true, converter);
+    }
+    
+    private static BatchConverter create(String input, Path output, boolean joined, ModelConverter converter) {
+        int globIndex = indexOfGlob(input);
+        if (globIndex == -1)
+            return new BatchConverter(Paths.get(input), null, output, joined, converter);
+        
+        int separator = Math.max(input.lastIndexOf('/', globIndex), input.lastIndexOf(File.separatorChar, globIndex));
+        Path root = separator == -1? Paths.get("") : Paths.get(input.substring(0, separator + 1));
+        String pattern = input.substring(separator + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        return new BatchConverter(root, matcher, output, joined, converter);
+    }
+    
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); i++)
+            if (GLOB_CHARS.indexOf(input.charAt(i)) != -1)
+                return i;
+        return -1;
+    }
+    
+    /**
+     * Finds all input files of this batch, sorted by path.
+     *
+     * @return the input files
+     * @throws IOException if the input directory can not be walked
+     */
+    @NotNull
+    public List<Path> findInputs() throws IOException {
+        try (Stream<Path> stream = Files.walk(getInputRoot())) {
+            return stream
+                .filter(Files::isRegularFile)
+                .filter(this::isInput)
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Returns the directory which contains all input files of this batch.
+     *
+     * @return the input directory
+     */
+    @NotNull
+    public Path getInputRoot() {
+        return inputRoot.toString().isEmpty()? Paths.get(".") : inputRoot;
+    }
+    
+    /**
+     * Returns whether a file inside of the {@link #getInputRoot() input directory} is an input of this batch.
+     *
+     * @param path the path of the file, starting with the input directory
+     * @return whether the file is an input
+     */
+    public boolean isInput(@NotNull Path path) {
+        Path relative = getInputRoot().relativize(path);
+        return matcher == null
+            ? relative.getFileName().toString().endsWith(CS_EXTENSION)
+            : matcher.matches(relative);
+    }
+    
+    /**
+     * Returns whether this batch joins all models into one entity file.
+     *
+     * @return whether this batch is joined
+     * @see #joined(String, Path, ModelConverter)
+     */
+    public boolean isJoined() {
+        return joined;
+    }
+    
+    /**
+     * Returns the output file for a given input file, which is the same entity file for all inputs of a joined batch.
+     *
+     * @param input the input file
+     * @return the output file
+     */
+    @NotNull
+    public Path getOutputOf(@NotNull Path input) {
+        if (joined)
+            return outputRoot;
+        String relative = getInputRoot().relativize(input).toString();
+        if (relative.endsWith(CS_EXTENSION))
+            relative = relative.substring(0, relative.length() - CS_EXTENSION.length());
+        return outputRoot.resolve(relative + ENTITY_EXTENSION);
+    }
+    
+    /**
+     * Converts all input files on a {@link ForkJoinPool} with one thread per available processor.
+     * <p>
+     * A line is printed for every file as well as a summary of the whole batch. Results are printed in input order.
+     *
+     * @param out the stream to print the summary to
+     * @return the results of all conversions in input order
+     * @throws IOException if the inputs can not be found
+     * @throws IllegalStateException if this batch is {@link #isJoined() joined}
+     */
+    @NotNull
+    public List<ConversionResult> run(@NotNull PrintStream out) throws IOException {
+        if (joined)
+            throw new IllegalStateException("joined batches must be run with runJoined");
+        long time = System.nanoTime();
+        List<Path> inputs = findInputs();
+        
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<ConversionResult> results = new ArrayList<>(inputs.size());
+        try {
+            List<ForkJoinTask<ConversionResult>> tasks = new ArrayList<>(inputs.size());
+            for (Path input : inputs)
+                tasks.add(pool.submit(() -> converter.convert(input, getOutputOf(input))));
+            
+            for (ForkJoinTask<ConversionResult> task : tasks) {
+                ConversionResult result = task.join();
+                out.println(result);
+                results.add(result);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        
+        time = System.nanoTime() - time;
+        out.println(summarize(results, time, parallelism));
+        printCaches(out);
+        return results;
+    }
+    
+    /**
+     * Converts all input files on a {@link ForkJoinPool} with one thread per available processor and joins their
+     * geometries into the entity file of this batch, which the game loads much faster than many small files.
+     * <p>
+     * The geometries are written in input order, so the file only changes if the models change. Geometries are keyed
+     * by their name, so an input whose geometry has the same name as the geometry of an earlier input fails. The
+     * entity file is only written if every input has been converted, so that no geometry is silently missing. A batch
+     * without any inputs is an error, instead of an entity file without geometries.
+     * <p>
+     * Every input is converted locally, since the {@link ConversionCache cache} and the
+     * {@link ConversionClient daemon} only handle whole entity files.
+     *
+     * @param out the stream to print the summary to
+     * @return the results of all conversions in input order, all of which refer to the entity file
+     * @throws IOException if the inputs can not be found, there are no inputs or the entity file can not be written
+     * @throws IllegalStateException if this batch is not {@link #isJoined() joined}
+     */
+    @NotNull
+    public List<ConversionResult> runJoined(@NotNull PrintStream out) throws IOException {
+        if (!joined)
+            throw new IllegalStateException("only joined batches can be run with runJoined");
+        final Path outputFile = outputRoot;
+        long time = System.nanoTime();
+        List<Path> inputs = findInputs();
+        if (inputs.isEmpty())
+            throw new IOException("No models found in " + getInputRoot() + ", not writing " + outputFile);
+        
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<JoinedInput> joined = new ArrayList<>(inputs.size());
+        try {
+            List<ForkJoinTask<JoinedInput>> tasks = new ArrayList<>(inputs.size());
+            for (Path input : inputs)
+                tasks.add(pool.submit(() -> JoinedInput.convert(input, converter)));
+            for (ForkJoinTask<JoinedInput> task : tasks)
+                joined.add(task.join());
+        } finally {
+            pool.shutdown();
+        }
+        
+        // the first input defining a geometry keeps it
+        Map<String, Path> names = new HashMap<>(inputs.size() * 2);
+        List<CompactBedrockGeometry> geometries = new ArrayList<>(inputs.size());
+        for (JoinedInput input : joined) {
+            if (input.converted == null)
+                continue;
+            String name = input.converted.getGeometry().getName();
+            Path first = names.putIfAbsent(name, input.input);
+            if (first == null) {
+                geometries.add(input.converted.getGeometry());
+            } else {
+                input.error = "geometry \"" + name + "\" is already defined by " + first;
+                input.converted = null;
+            }
+        }
+        
+        boolean written = false;
+        if (geometries.size() == inputs.size()) {
+            Path parent = outputFile.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            // the joined file is streamed into the pooled buffers, since no one needs it as an array
+            try (AtomicFileWriter writer = new AtomicFileWriter(outputFile)) {
+                converter.getOptions().newSerializer().toWriter(geometries, writer);
+                written = writer.commitIfChanged();
+            }
+        }
+        
+        List<ConversionResult> results = new ArrayList<>(inputs.size());
+        for (JoinedInput input : joined) {
+            ConversionResult result = input.converted == null
+                ? ConversionResult.failure(input.input, outputFile, input.nanos, input.error)
+                : ConversionResult.success(input.input, outputFile, input.nanos, input.converted, written);
+            out.println(result);
+            results.add(result);
+        }
+        
+        time = System.nanoTime() - time;
+        out.println(summarize(results, time, parallelism));
+        if (geometries.size() != inputs.size())
+            out.println("Not writing " + outputFile + " since not every model could be converted");
+        printCaches(out);
+        return results;
+    }
+    
+    private void printCaches(PrintStream out) {
+        RotationCache rotationCache = converter.getOptions().getRotationCache();
+        if (rotationCache != null)
+            out.println("Rotation cache: " + rotationCache);
+        ConversionCache cache = converter.getCache();
+        if (cache != null)
+            out.println("Conversion cache: " + cache);
+    }
+    
+    @NotNull
+    private static String summarize(List<ConversionResult> results, long nanos, int parallelism) {
+        int succeeded = 0, cached = 0, blocks = 0, bones = 0, cubes = 0, mergedCubes = 0, culledCubes = 0;
+        for (ConversionResult result : results) {
+            if (!result.isSuccess())
+                continue;
+            succeeded++;
+            // the cache only holds entity files, so the numbers of blocks, bones and cubes of cached models are unknown
+            if (result.isCached()) {
+                cached++;
+                continue;
+            }
+            blocks += result.getBlocks();
+            bones += result.getBones();
+            cubes += result.getCubes();
+            mergedCubes += result.getMergedCubes();
+            culledCubes += result.getCulledCubes();
+        }
+        int failed = results.size() - succeeded;
+        
+        return "Converted " + succeeded + "/" + results.size() + " models"
+            + (failed == 0? "" : " (" + failed + " failed)")
+            + (cached == 0? "" : " (" + cached + " cached, which are not counted)")
+            + ": " + blocks + " blocks -> " + bones + " bones, " + cubes + " cubes"
+            + ConversionResult.describeRemovedCubes(mergedCubes, culledCubes)
+            + " in " + nanos / 1_000_000 + " ms on " + parallelism + " threads";
+    }
+    
+    /**
+     * The conversion of one input of a joined batch, which is either a geometry or an error.
+     */
+    private final static class JoinedInput {
+        
+        @NotNull
+        final Path input;
+        long nanos;
+        @Nullable
+        ConvertedGeometry converted;
+        @Nullable
+        String error;
+        
+        private JoinedInput(@NotNull Path input) {
+            this.input = input;
+        }
+        
+        /**
+         * Converts an input, reporting failures through the result like {@link ModelConverter#convert(Path, Path)}.
+         */
+        static JoinedInput convert(Path input, ModelConverter converter) {
+            JoinedInput result = new JoinedInput(input);
+            long time = System.nanoTime();
+            try {
+                result.converted = converter.convertGeometry(FileContent.read(input));
+            } catch (IOException | RuntimeException ex) {
+                result.error = ex.getMessage() == null? ex.toString() : ex.getMessage();
+            }
+            result.nanos = System.nanoTime() - time;
+            return result;
+        }
+        
+    }
+    
+}
@@ -28,6 +28,21 @@ public class BedrockEntityBone implements Iterable<BedrockEntityCube> {
         this.rotation = rotation;
     }
     
+    /**
+     * Returns a copy of this bone with a different name or parent, which shares the pivot, rotation and cubes of this
+     * bone.
+     *
+     * @param name the new name
+     * @param parent the new name of the parent or {@code null}
+     * @return the renamed bone
+     */
+    @NotNull
+    public BedrockEntityBone renamed(@NotNull String name, @Nullable String parent) {
+        BedrockEntityBone result = new BedrockEntityBone(name, parent, pivot, rotation);
+        result.cubes.addAll(cubes);
+        return result;
+    }
+    
     @NotNull
     public String getName() {
         return name;
@@ -64,6 +79,16 @@ public class BedrockEntityBone implements Iterable<BedrockEntityCube> {
         this.cubes.add(cube);
     }
     
+    /**
+     * Replaces all cubes of this bone.
+     *
+     * @param cubes the new cubes
+     */
+    public void setCubes(@NotNull Collection<BedrockEntityCube> cubes) {
+        this.cubes.clear();
+        this.cubes.addAll(cubes);
+    }
+    
     public List<BedrockEntityCube> getCubes() {
         return Collections.unmodifiableList(cubes);
     }
@@ -9,13 +9,15 @@ import java.util.*;
 public class BedrockEntityGeometry implements Iterable<BedrockEntityBone> {
     
     @NotNull
-    private final Vec2i visibleBounds;
+    private Vec2i visibleBounds;
     @NotNull
-    private final Vec3d visibleBoundsOffset;
+    private Vec3d visibleBoundsOffset;
     @NotNull
-    private final Vec2i textureSize;
+    private Vec2i textureSize;
     @NotNull
     private final List<BedrockEntityBone> bones = new ArrayList<>(16);
+    @NotNull
+    private final Map<String, BedrockEntityBone> bonesByName = new HashMap<>();
     
     public BedrockEntityGeometry(@NotNull Vec2i visibleBounds,
                                  @NotNull Vec3d visibleBoundsOffset,
@@ -35,17 +37,68 @@ public class BedrockEntityGeometry implements Iterable<BedrockEntityBone> {
         return visibleBoundsOffset;
     }
     
+    /**
+     * Changes the visible bounds.
+     *
+     * @param visibleBounds the width and height of the bounds in blocks
+     * @param visibleBoundsOffset the offset of the center of the bounds in blocks
+     * @see VisibleBounds
+     */
+    public void setVisibleBounds(@NotNull Vec2i visibleBounds, @NotNull Vec3d visibleBoundsOffset) {
+        this.visibleBounds = visibleBounds;
+        this.visibleBoundsOffset = visibleBoundsOffset;
+    }
+    
     @NotNull
     public Vec2i getTextureSize() {
         return textureSize;
     }
     
+    /**
+     * Changes the texture size.
+     *
+     * @param textureSize the width and height of the texture in pixels
+     * @see UvPacker
+     */
+    public void setTextureSize(@NotNull Vec2i textureSize) {
+        this.textureSize = textureSize;
+    }
+    
     @NotNull
     public Collection<BedrockEntityBone> getBones() {
         return Collections.unmodifiableList(bones);
     }
     
+    /**
+     * Returns whether this geometry contains a bone with the given name.
+     *
+     * @param name the name of the bone
+     * @return whether the bone exists
+     */
+    public boolean hasBone(@NotNull String name) {
+        return bonesByName.containsKey(name);
+    }
+    
+    /**
+     * Returns the bone with the given name.
+     *
+     * @param name the name of the bone
+     * @return the bone or {@code null} if this geometry contains no such bone
+     */
+    @Nullable
+    public BedrockEntityBone getBone(@NotNull String name) {
+        return bonesByName.get(name);
+    }
+    
+    /**
+     * Appends a bone.
+     *
+     * @param bone the bone
+     * @throws IllegalArgumentException if this geometry already contains a bone with the same name
+     */
     public void addBone(@NotNull BedrockEntityBone bone) {
+        if (bonesByName.putIfAbsent(bone.getName(), bone) != null)
+            throw new IllegalArgumentException("bone \"" + bone.getName() + "\" appears multiple times");
         bones.add(bone);
     }
     
@@ -53,6 +106,18 @@ public class BedrockEntityGeometry implements Iterable<BedrockEntityBone> {
         iterable.forEach(this::addBone);
     }
     
+    /**
+     * Replaces all bones.
+     *
+     * @param iterable the new bones
+     * @throws IllegalArgumentException if a name appears multiple times
+     */
+    public void setBones(@NotNull Iterable<BedrockEntityBone> iterable) {
+        bones.clear();
+        bonesByName.clear();
+        addBones(iterable);
+    }
+    
     public int size() {
         return bones.size();
     }
@@ -0,0 +1,125 @@
+package es.razzleberri;
+
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * Removes bones which don't transform their cubes, so that entities consist of fewer bones.
+ * <p>
+ *     The origins of cubes and the pivots of bones are given in model space, so a bone whose rotation is the
+ *     {@link Rotations#isIdentity(double, double, double) identity} places its cubes exactly where its parent bone
+ *     would. The cubes of such a bone are moved to the nearest ancestor which is kept and its children become children
+ *     of that ancestor, so whole chains of such bones collapse into one bone. Bones without a parent are always kept.
+ * </p>
+ * <p>
+ *     Animations refer to bones by their name, so flattening is optional.
+ * </p>
+ */
+public final class BoneFlattener {
+    
+    private BoneFlattener() {}
+    
+    /**
+     * Flattens the bones of a geometry.
+     *
+     * @param geometry the entity geometry
+     * @return the number of bones which have been removed
+     */
+    public static int flattenBones(@NotNull BedrockEntityGeometry geometry) {
+        // the name of the bone receiving the cubes of each bone
+        Map<String, String> targets = new HashMap<>();
+        Map<String, BedrockEntityBone> kept = new LinkedHashMap<>();
+        for (BedrockEntityBone bone : geometry) {
+            String target = targetOf(geometry, bone, targets);
+            if (target.equals(bone.getName())) {
+                String parent = bone.getParent() == null? null : targetOf(geometry, bone.getParent(), targets);
+                kept.put(bone.getName(), Objects.equals(parent, bone.getParent())
+                    ? bone
+                    : bone.renamed(bone.getName(), parent));
+            }
+        }
+        final int removed = geometry.size() - kept.size();
+        if (removed == 0)
+            return 0;
+        
+        // the bones are in any order, so the cubes are moved after all kept bones are known
+        for (BedrockEntityBone bone : geometry)
+            if (!kept.containsKey(bone.getName()))
+                bone.getCubes().forEach(kept.get(targets.get(bone.getName()))::addCube);
+        geometry.setBones(kept.values());
+        return removed;
+    }
+    
+    /**
+     * Returns the name of the nearest bone, starting at the bone with the given name, which is kept.
+     */
+    private static String targetOf(BedrockEntityGeometry geometry, String name, Map<String, String> targets) {
+        BedrockEntityBone bone = geometry.getBone(name);
+        return bone == null? name : targetOf(geometry, bone, targets);
+    }
+    
+    private static String targetOf(BedrockEntityGeometry geometry,
+                                   BedrockEntityBone bone,
+                                   Map<String, String> targets) {
+        String target = targets.get(bone.getName());
+        if (target != null)
+            return target;
+        
+        // walk up until a kept bone or a bone with a known target is found
+        List<String> path = new ArrayList<>();
+        while (target == null) {
+            if (path.size() == geometry.size())
+                throw new IllegalArgumentException("bone \"" + bone.getName() + "\" is its own ancestor");
+            path.add(bone.getName());
+            BedrockEntityBone parent = bone.getParent() == null? null : geometry.getBone(bone.getParent());
+            if (parent == null || !isIdentity(bone)) {
+                target = bone.getName();
+                break;
+            }
+            bone = parent;
+            target = targets.get(bone.getName());
+        }
+        for (String name : path)
+            targets.put(name, target);
+        return target;
+    }
+    
+    private static boolean isIdentity(BedrockEntityBone bone) {
+        Vec3d rotation = bone.getRotation();
+        return rotation == null || Rotations.isIdentity(rotation.getX(), rotation.getY(), rotation.getZ());
+    }
+    
+    /**
+     * Flattens the bones of a compact geometry.
+     *
+     * @param geometry the entity geometry
+     * @return the number of bones which have been removed
+     */
+    public static int flattenBones(@NotNull CompactBedrockGeometry geometry) {
+        final int count = geometry.getBoneCount();
+        int[] targets = new int[count];
+        int removed = 0;
+        for (int bone = 0; bone < count; bone++) {
+            // parents precede their children, so the target of the parent is already known
+            int parent = geometry.getBoneParent(bone);
+            if (parent == -1 || !isIdentity(geometry, bone)) {
+                targets[bone] = bone;
+            } else {
+                targets[bone] = targets[parent];
+                removed++;
+            }
+        }
+        geometry.removeBones(targets);
+        return removed;
+    }
+    
+    private static boolean isIdentity(CompactBedrockGeometry geometry, int bone) {
+        return Rotations.isIdentity(
+            geometry.getRotation(bone, 0),
+            geometry.getRotation(bone, 1),
+            geometry.getRotation(bone, 2));
+    }
+    
+}
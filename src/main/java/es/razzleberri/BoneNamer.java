@@ -0,0 +1,45 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * Assigns unique names to bones in the order in which they are added to a geometry.
+ * <p>
+ *     A name which is already taken is first prefixed with the name of the parent bone, as in {@code "body.arm"}. If
+ *     that name is taken as well, the original name is suffixed with the lowest number from {@code 2} upwards which
+ *     leads to a free name, as in {@code "arm_2"}. The next number to try is remembered for every name, so that many
+ *     bones of the same name don't require trying all numbers again.
+ * </p>
+ */
+final class BoneNamer {
+    
+    private final Set<String> names = new HashSet<>();
+    private final Map<String, Integer> nextSuffixes = new HashMap<>();
+    
+    /**
+     * Returns a unique name for a bone and reserves it.
+     *
+     * @param name the name of the bone
+     * @param parent the unique name of the parent bone or {@code null} if the bone has no parent
+     * @return the name or a new name if the name is already taken
+     */
+    @NotNull
+    String uniqueName(@NotNull String name, @Nullable String parent) {
+        if (names.add(name))
+            return name;
+        
+        String result = parent == null? null : parent + '.' + name;
+        if (result == null || !names.add(result)) {
+            int suffix = nextSuffixes.getOrDefault(name, 2);
+            do {
+                result = name + '_' + suffix++;
+            } while (!names.add(result));
+            nextSuffixes.put(name, suffix);
+        }
+        System.err.println("WARNING: Bone \"" + name + "\" appears multiple times, renamed to \"" + result + "\"");
+        return result;
+    }
+    
+}
@@ -0,0 +1,418 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * An entity geometry stored as parallel arrays instead of one object graph per bone and cube.
+ * <p>
+ *     Bones are numbered in the order in which they were added and reference their parents by index. The cubes of a
+ *     bone are stored consecutively, so cubes can only be added to the last added bone.
+ * </p>
+ * <p>
+ *     Vector fields are accessed with an {@code axis} in range {@code 0..2} (or {@code 0..1}).
+ * </p>
+ *
+ * @see BedrockEntityGeometry
+ */
+public class CompactBedrockGeometry {
+    
+    @NotNull
+    private final String name;
+    private int visibleBoundsWidth, visibleBoundsHeight;
+    private double visibleBoundsOffsetX, visibleBoundsOffsetY, visibleBoundsOffsetZ;
+    private int textureWidth, textureHeight;
+    
+    private int boneCount;
+    private String[] boneNames;
+    private int[] boneParents, cubeStarts;
+    private double[] pivots, rotations;
+    
+    private int cubeCount;
+    private double[] origins;
+    private int[] sizes, uvs;
+    
+    public CompactBedrockGeometry(@NotNull String name,
+                                  int visibleBoundsWidth, int visibleBoundsHeight,
+                                  double visibleBoundsOffsetX, double visibleBoundsOffsetY, double visibleBoundsOffsetZ,
+                                  int textureWidth, int textureHeight,
+                                  int capacity) {
+        this.name = name;
+        this.visibleBoundsWidth = visibleBoundsWidth;
+        this.visibleBoundsHeight = visibleBoundsHeight;
+        this.visibleBoundsOffsetX = visibleBoundsOffsetX;
+        this.visibleBoundsOffsetY = visibleBoundsOffsetY;
+        this.visibleBoundsOffsetZ = visibleBoundsOffsetZ;
+        this.textureWidth = textureWidth;
+        this.textureHeight = textureHeight;
+        
+        capacity = Math.max(capacity, 1);
+        this.boneNames = new String[capacity];
+        this.boneParents = new int[capacity];
+        this.cubeStarts = new int[capacity];
+        this.pivots = new double[capacity * 3];
+        this.rotations = new double[capacity * 3];
+        this.origins = new double[capacity * 3];
+        this.sizes = new int[capacity * 3];
+        this.uvs = new int[capacity * 2];
+    }
+    
+    /**
+     * Appends a bone without any cubes.
+     *
+     * @param parent the index of the parent bone or {@code -1} if the bone has no parent
+     * @return the index of the new bone
+     */
+    public int addBone(@NotNull String name,
+                       int parent,
+                       double pivotX, double pivotY, double pivotZ,
+                       double rotationX, double rotationY, double rotationZ) {
+        if (parent < -1 || parent >= boneCount)
+            throw new IllegalArgumentException("invalid parent index: " + parent);
+        if (boneCount == boneNames.length) {
+            int capacity = boneCount * 2;
+            boneNames = Arrays.copyOf(boneNames, capacity);
+            boneParents = Arrays.copyOf(boneParents, capacity);
+            cubeStarts = Arrays.copyOf(cubeStarts, capacity);
+            pivots = Arrays.copyOf(pivots, capacity * 3);
+            rotations = Arrays.copyOf(rotations, capacity * 3);
+        }
+        
+        final int i = boneCount++, i3 = i * 3;
+        boneNames[i] = name;
+        boneParents[i] = parent;
+        cubeStarts[i] = cubeCount;
+        pivots[i3] = pivotX;
+        pivots[i3 + 1] = pivotY;
+        pivots[i3 + 2] = pivotZ;
+        rotations[i3] = rotationX;
+        rotations[i3 + 1] = rotationY;
+        rotations[i3 + 2] = rotationZ;
+        return i;
+    }
+    
+    /**
+     * Appends a cube to the last added bone.
+     *
+     * @return the index of the new cube
+     * @throws IllegalStateException if no bone has been added yet
+     */
+    public int addCube(double originX, double originY, double originZ,
+                       int sizeX, int sizeY, int sizeZ,
+                       int u, int v) {
+        if (boneCount == 0)
+            throw new IllegalStateException("cubes can only be added to bones");
+        if (cubeCount == sizes.length / 3) {
+            int capacity = cubeCount * 2;
+            origins = Arrays.copyOf(origins, capacity * 3);
+            sizes = Arrays.copyOf(sizes, capacity * 3);
+            uvs = Arrays.copyOf(uvs, capacity * 2);
+        }
+        
+        final int i = cubeCount++, i3 = i * 3;
+        origins[i3] = originX;
+        origins[i3 + 1] = originY;
+        origins[i3 + 2] = originZ;
+        sizes[i3] = sizeX;
+        sizes[i3 + 1] = sizeY;
+        sizes[i3 + 2] = sizeZ;
+        uvs[i * 2] = u;
+        uvs[i * 2 + 1] = v;
+        return i;
+    }
+    
+    /**
+     * Changes the origin and size of a cube.
+     *
+     * @param cube the index of the cube
+     */
+    public void setCube(int cube,
+                        double originX, double originY, double originZ,
+                        int sizeX, int sizeY, int sizeZ) {
+        if (cube < 0 || cube >= cubeCount)
+            throw new IndexOutOfBoundsException("cube: " + cube);
+        final int i3 = cube * 3;
+        origins[i3] = originX;
+        origins[i3 + 1] = originY;
+        origins[i3 + 2] = originZ;
+        sizes[i3] = sizeX;
+        sizes[i3 + 1] = sizeY;
+        sizes[i3 + 2] = sizeZ;
+    }
+    
+    /**
+     * Removes cubes, keeping the order of the remaining cubes and their assignment to bones.
+     *
+     * @param removed the indices of the cubes to remove
+     */
+    public void removeCubes(@NotNull BitSet removed) {
+        if (removed.isEmpty())
+            return;
+        int bone = 0, count = 0;
+        for (int cube = 0; cube < cubeCount; cube++) {
+            // bones whose cubes start here now start at the new index, including bones without cubes
+            while (bone < boneCount && cubeStarts[bone] == cube)
+                cubeStarts[bone++] = count;
+            if (removed.get(cube))
+                continue;
+            if (count != cube) {
+                System.arraycopy(origins, cube * 3, origins, count * 3, 3);
+                System.arraycopy(sizes, cube * 3, sizes, count * 3, 3);
+                System.arraycopy(uvs, cube * 2, uvs, count * 2, 2);
+            }
+            count++;
+        }
+        while (bone < boneCount)
+            cubeStarts[bone++] = count;
+        cubeCount = count;
+    }
+    
+    /**
+     * Removes bones and moves their cubes and children to other bones. Every bone whose target is another bone is
+     * removed, its cubes are appended to the cubes of its target and its children become children of its target.
+     * Bones keep their order and so do cubes, except that the moved cubes follow the cubes of their target.
+     *
+     * @param targets the index of the bone receiving the cubes of each bone, which is the bone itself if it is kept
+     * @throws IllegalArgumentException if a bone is moved to a bone which is removed itself
+     */
+    public void removeBones(int[] targets) {
+        final int[] newIndices = new int[boneCount], counts = new int[boneCount];
+        int bones = 0;
+        for (int bone = 0; bone < boneCount; bone++) {
+            if (targets[targets[bone]] != targets[bone])
+                throw new IllegalArgumentException("target of bone " + bone + " is removed");
+            newIndices[bone] = targets[bone] == bone? bones++ : -1;
+            counts[targets[bone]] += getCubeEnd(bone) - cubeStarts[bone];
+        }
+        if (bones == boneCount)
+            return;
+        
+        // the index at which the next cube of each kept bone is written
+        final int[] next = new int[boneCount];
+        for (int bone = 0, start = 0; bone < boneCount; bone++) {
+            if (newIndices[bone] == -1)
+                continue;
+            next[bone] = start;
+            start += counts[bone];
+        }
+        
+        final double[] newOrigins = new double[origins.length];
+        final int[] newSizes = new int[sizes.length], newUvs = new int[uvs.length];
+        for (int bone = 0; bone < boneCount; bone++) {
+            final int start = cubeStarts[bone], count = getCubeEnd(bone) - start, to = next[targets[bone]];
+            System.arraycopy(origins, start * 3, newOrigins, to * 3, count * 3);
+            System.arraycopy(sizes, start * 3, newSizes, to * 3, count * 3);
+            System.arraycopy(uvs, start * 2, newUvs, to * 2, count * 2);
+            next[targets[bone]] += count;
+        }
+        origins = newOrigins;
+        sizes = newSizes;
+        uvs = newUvs;
+        
+        for (int bone = 0; bone < boneCount; bone++) {
+            final int i = newIndices[bone];
+            if (i == -1)
+                continue;
+            final int parent = boneParents[bone];
+            boneNames[i] = boneNames[bone];
+            boneParents[i] = parent == -1? -1 : newIndices[targets[parent]];
+            cubeStarts[i] = next[bone] - counts[bone];
+            System.arraycopy(pivots, bone * 3, pivots, i * 3, 3);
+            System.arraycopy(rotations, bone * 3, rotations, i * 3, 3);
+        }
+        boneCount = bones;
+    }
+    
+    /**
+     * Appends all bones and cubes of another geometry. The appended bones keep their parents, so the indices of their
+     * parents are shifted by the number of bones of this geometry.
+     *
+     * @param other the geometry to append
+     */
+    public void addAll(@NotNull CompactBedrockGeometry other) {
+        final int bones = boneCount + other.boneCount, cubes = cubeCount + other.cubeCount;
+        if (bones > boneNames.length) {
+            int capacity = Math.max(boneNames.length * 2, bones);
+            boneNames = Arrays.copyOf(boneNames, capacity);
+            boneParents = Arrays.copyOf(boneParents, capacity);
+            cubeStarts = Arrays.copyOf(cubeStarts, capacity);
+            pivots = Arrays.copyOf(pivots, capacity * 3);
+            rotations = Arrays.copyOf(rotations, capacity * 3);
+        }
+        if (cubes > sizes.length / 3) {
+            int capacity = Math.max(sizes.length / 3 * 2, cubes);
+            origins = Arrays.copyOf(origins, capacity * 3);
+            sizes = Arrays.copyOf(sizes, capacity * 3);
+            uvs = Arrays.copyOf(uvs, capacity * 2);
+        }
+        
+        System.arraycopy(other.boneNames, 0, boneNames, boneCount, other.boneCount);
+        System.arraycopy(other.pivots, 0, pivots, boneCount * 3, other.boneCount * 3);
+        System.arraycopy(other.rotations, 0, rotations, boneCount * 3, other.boneCount * 3);
+        for (int i = 0; i < other.boneCount; i++) {
+            int parent = other.boneParents[i];
+            boneParents[boneCount + i] = parent == -1? -1 : parent + boneCount;
+            cubeStarts[boneCount + i] = other.cubeStarts[i] + cubeCount;
+        }
+        System.arraycopy(other.origins, 0, origins, cubeCount * 3, other.cubeCount * 3);
+        System.arraycopy(other.sizes, 0, sizes, cubeCount * 3, other.cubeCount * 3);
+        System.arraycopy(other.uvs, 0, uvs, cubeCount * 2, other.cubeCount * 2);
+        boneCount = bones;
+        cubeCount = cubes;
+    }
+    
+    @NotNull
+    public String getName() {
+        return name;
+    }
+    
+    public int getVisibleBoundsWidth() {
+        return visibleBoundsWidth;
+    }
+    
+    public int getVisibleBoundsHeight() {
+        return visibleBoundsHeight;
+    }
+    
+    public double getVisibleBoundsOffset(int axis) {
+        switch (axis) {
+            case 0: return visibleBoundsOffsetX;
+            case 1: return visibleBoundsOffsetY;
+            case 2: return visibleBoundsOffsetZ;
+            default: throw new IndexOutOfBoundsException("axis: " + axis);
+        }
+    }
+    
+    /**
+     * Changes the visible bounds.
+     *
+     * @see VisibleBounds
+     */
+    public void setVisibleBounds(int width, int height, double offsetX, double offsetY, double offsetZ) {
+        this.visibleBoundsWidth = width;
+        this.visibleBoundsHeight = height;
+        this.visibleBoundsOffsetX = offsetX;
+        this.visibleBoundsOffsetY = offsetY;
+        this.visibleBoundsOffsetZ = offsetZ;
+    }
+    
+    public int getTextureWidth() {
+        return textureWidth;
+    }
+    
+    public int getTextureHeight() {
+        return textureHeight;
+    }
+    
+    /**
+     * Changes the texture size.
+     *
+     * @see UvPacker
+     */
+    public void setTextureSize(int width, int height) {
+        this.textureWidth = width;
+        this.textureHeight = height;
+    }
+    
+    // BONES
+    
+    public int getBoneCount() {
+        return boneCount;
+    }
+    
+    @NotNull
+    public String getBoneName(int bone) {
+        return boneNames[bone];
+    }
+    
+    /**
+     * Changes the name of a bone. Children reference their parents by index, so they keep referencing the bone.
+     *
+     * @param bone the index of the bone
+     * @param name the new name
+     */
+    public void setBoneName(int bone, @NotNull String name) {
+        if (bone < 0 || bone >= boneCount)
+            throw new IndexOutOfBoundsException("bone: " + bone);
+        boneNames[bone] = name;
+    }
+    
+    /**
+     * Returns the index of the parent of a bone.
+     *
+     * @param bone the index of the bone
+     * @return the index of the parent or {@code -1} if the bone has no parent
+     */
+    public int getBoneParent(int bone) {
+        return boneParents[bone];
+    }
+    
+    @Nullable
+    public String getBoneParentName(int bone) {
+        int parent = boneParents[bone];
+        return parent == -1? null : boneNames[parent];
+    }
+    
+    public double getPivot(int bone, int axis) {
+        return pivots[bone * 3 + axis];
+    }
+    
+    public double getRotation(int bone, int axis) {
+        return rotations[bone * 3 + axis];
+    }
+    
+    /**
+     * Returns the index of the first cube of a bone.
+     *
+     * @param bone the index of the bone
+     * @return the index of the first cube
+     */
+    public int getCubeStart(int bone) {
+        return cubeStarts[bone];
+    }
+    
+    /**
+     * Returns the exclusive end of the cubes of a bone.
+     *
+     * @param bone the index of the bone
+     * @return the index after the last cube
+     */
+    public int getCubeEnd(int bone) {
+        return bone + 1 == boneCount? cubeCount : cubeStarts[bone + 1];
+    }
+    
+    // CUBES
+    
+    public int getCubeCount() {
+        return cubeCount;
+    }
+    
+    public double getOrigin(int cube, int axis) {
+        return origins[cube * 3 + axis];
+    }
+    
+    public int getSize(int cube, int axis) {
+        return sizes[cube * 3 + axis];
+    }
+    
+    public int getUv(int cube, int axis) {
+        return uvs[cube * 2 + axis];
+    }
+    
+    /**
+     * Changes the UV offset of a cube.
+     *
+     * @param cube the index of the cube
+     * @param u the horizontal offset in pixels
+     * @param v the vertical offset in pixels
+     * @see UvPacker
+     */
+    public void setUv(int cube, int u, int v) {
+        if (cube < 0 || cube >= cubeCount)
+            throw new IndexOutOfBoundsException("cube: " + cube);
+        uvs[cube * 2] = u;
+        uvs[cube * 2 + 1] = v;
+    }
+    
+}
@@ -0,0 +1,172 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A CraftStudio model stored as parallel arrays instead of one object graph per block.
+ * <p>
+ *     Blocks are numbered in pre-order, so the descendants of a block directly follow it and the subtree of block
+ *     {@code i} is the range {@code i until getEnd(i)}. The first child of a block is {@code i + 1} if that is less
+ *     than {@code getEnd(i)} and the next sibling of a block is {@code getEnd(i)}.
+ * </p>
+ * <p>
+ *     Vector fields are stored in columns of 3 (or 2) consecutive elements per block and are accessed with an
+ *     {@code axis} in range {@code 0..2} (or {@code 0..1}).
+ * </p>
+ *
+ * @see CraftStudioModel
+ */
+public class CompactCraftStudioModel {
+    
+    @NotNull
+    private String title;
+    
+    private int size;
+    private String[] names;
+    private int[] parents, ends;
+    private double[] positions, offsetsFromPivot, rotations;
+    private int[] sizes, texOffsets;
+    
+    public CompactCraftStudioModel(@NotNull String title, int capacity) {
+        this.title = title;
+        capacity = Math.max(capacity, 1);
+        this.names = new String[capacity];
+        this.parents = new int[capacity];
+        this.ends = new int[capacity];
+        this.positions = new double[capacity * 3];
+        this.offsetsFromPivot = new double[capacity * 3];
+        this.rotations = new double[capacity * 3];
+        this.sizes = new int[capacity * 3];
+        this.texOffsets = new int[capacity * 2];
+    }
+    
+    public CompactCraftStudioModel(@NotNull String title) {
+        this(title, 32);
+    }
+    
+    /**
+     * Appends a block. The block must be closed with {@link #endBlock(int)} after all of its children have been added.
+     *
+     * @param parent the index of the parent block or {@code -1} if the block is a root block
+     * @return the index of the new block
+     */
+    public int addBlock(int parent,
+                        @NotNull String name,
+                        double positionX, double positionY, double positionZ,
+                        double offsetX, double offsetY, double offsetZ,
+                        int sizeX, int sizeY, int sizeZ,
+                        double rotationX, double rotationY, double rotationZ,
+                        int texOffsetX, int texOffsetY) {
+        if (parent < -1 || parent >= size)
+            throw new IllegalArgumentException("invalid parent index: " + parent);
+        if (size == names.length)
+            grow();
+        
+        final int i = size++, i2 = i * 2, i3 = i * 3;
+        names[i] = name;
+        parents[i] = parent;
+        ends[i] = size;
+        positions[i3] = positionX;
+        positions[i3 + 1] = positionY;
+        positions[i3 + 2] = positionZ;
+        offsetsFromPivot[i3] = offsetX;
+        offsetsFromPivot[i3 + 1] = offsetY;
+        offsetsFromPivot[i3 + 2] = offsetZ;
+        sizes[i3] = sizeX;
+        sizes[i3 + 1] = sizeY;
+        sizes[i3 + 2] = sizeZ;
+        rotations[i3] = rotationX;
+        rotations[i3 + 1] = rotationY;
+        rotations[i3 + 2] = rotationZ;
+        texOffsets[i2] = texOffsetX;
+        texOffsets[i2 + 1] = texOffsetY;
+        return i;
+    }
+    
+    /**
+     * Closes a block, making all blocks added since the block itself its descendants.
+     *
+     * @param block the index of the block
+     */
+    public void endBlock(int block) {
+        ends[block] = size;
+    }
+    
+    private void grow() {
+        int capacity = names.length * 2;
+        names = Arrays.copyOf(names, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        positions = Arrays.copyOf(positions, capacity * 3);
+        offsetsFromPivot = Arrays.copyOf(offsetsFromPivot, capacity * 3);
+        rotations = Arrays.copyOf(rotations, capacity * 3);
+        sizes = Arrays.copyOf(sizes, capacity * 3);
+        texOffsets = Arrays.copyOf(texOffsets, capacity * 2);
+    }
+    
+    @NotNull
+    public String getTitle() {
+        return title;
+    }
+    
+    public void setTitle(@NotNull String title) {
+        this.title = title;
+    }
+    
+    /**
+     * Returns the number of blocks in this model, including all nested children.
+     *
+     * @return the total number of blocks
+     */
+    public int size() {
+        return size;
+    }
+    
+    @NotNull
+    public String getName(int block) {
+        return names[block];
+    }
+    
+    /**
+     * Returns the index of the parent of a block.
+     *
+     * @param block the index of the block
+     * @return the index of the parent or {@code -1} if the block is a root block
+     */
+    public int getParent(int block) {
+        return parents[block];
+    }
+    
+    /**
+     * Returns the exclusive end of the subtree of a block, which is also the index of its next sibling.
+     *
+     * @param block the index of the block
+     * @return the end of the subtree
+     */
+    public int getEnd(int block) {
+        return ends[block];
+    }
+    
+    public double getPosition(int block, int axis) {
+        return positions[block * 3 + axis];
+    }
+    
+    public double getOffsetFromPivot(int block, int axis) {
+        return offsetsFromPivot[block * 3 + axis];
+    }
+    
+    public int getSize(int block, int axis) {
+        return sizes[block * 3 + axis];
+    }
+    
+    public double getRotation(int block, int axis) {
+        return rotations[block * 3 + axis];
+    }
+    
+    public int getTexOffset(int block, int axis) {
+        return texOffsets[block * 2 + axis];
+    }
+    
+}
@@ -0,0 +1,267 @@
+package es.razzleberri;
+
+import es.razzleberri.io.AtomicFileOutputStream;
+import org.jetbrains.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+/**
+ * A persistent cache of entity files, keyed by a hash of the CraftStudio model file and a fingerprint of the
+ * converter.
+ * <p>
+ *     Entries are plain entity files which are copied to their destination on a hit, so nothing needs to be parsed or
+ *     converted. Entries are spread over subdirectories by the first two characters of their key.
+ * </p>
+ * <p>
+ *     The cache is limited by the total size of its entries, evicting the least recently used entries first. When the
+ *     {@link CraftStudioToBedrockEntity#VERSION version} of the converter changes, all entries are deleted.
+ * </p>
+ */
+public class ConversionCache {
+    
+    private final static String VERSION_FILE = "VERSION", ENTRY_EXTENSION = ".json";
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    @NotNull
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong bytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+    
+    private ConversionCache(@NotNull Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Opens a cache directory, creating it if necessary. If the cache was created by a different version of the
+     * converter, all of its entries are deleted.
+     *
+     * @param directory the cache directory
+     * @param maxBytes the maximum total size of all entries
+     * @return the cache
+     * @throws IOException if the cache directory can not be created or read
+     */
+    @NotNull
+    public static ConversionCache open(@NotNull Path directory, long maxBytes) throws IOException {
+        ConversionCache cache = new ConversionCache(directory, maxBytes);
+        Files.createDirectories(directory);
+        
+        Path versionFile = directory.resolve(VERSION_FILE);
+        String version = String.valueOf(CraftStudioToBedrockEntity.VERSION);
+        if (!Files.isRegularFile(versionFile)
+            || !version.equals(new String(Files.readAllBytes(versionFile), StandardCharsets.UTF_8).trim())) {
+            for (Path entry : cache.listEntries())
+                Files.deleteIfExists(entry);
+            Files.write(versionFile, version.getBytes(StandardCharsets.UTF_8));
+        }
+        
+        long total = 0;
+        for (Path entry : cache.listEntries())
+            total += Files.size(entry);
+        cache.bytes.set(total);
+        return cache;
+    }
+    
+    /**
+     * Computes the key of a model file's content, converted with the given options.
+     *
+     * @param content the content of the CraftStudio model file
+     * @param options the conversion options
+     * @return the key
+     */
+    @NotNull
+    public static String keyOf(byte[] content, @NotNull ConversionOptions options) {
+        return keyOf(ByteBuffer.wrap(content), options);
+    }
+    
+    /**
+     * Computes the key of a model file's content, converted with the given options.
+     *
+     * @param content the content of the CraftStudio model file, its position is not modified
+     * @param options the conversion options
+     * @return the key
+     */
+    @NotNull
+    public static String keyOf(@NotNull ByteBuffer content, @NotNull ConversionOptions options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new AssertionError(ex);
+        }
+        String fingerprint = CraftStudioToBedrockEntity.VERSION + "/" + options.getFingerprint() + "/";
+        digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        digest.update(content.duplicate());
+        
+        byte[] hash = digest.digest();
+        char[] result = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            result[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            result[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(result);
+    }
+    
+    private Path entryOf(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key + ENTRY_EXTENSION);
+    }
+    
+    private List<Path> listEntries() throws IOException {
+        try (Stream<Path> stream = Files.walk(directory, 2)) {
+            return stream
+                .filter(path -> path.getFileName().toString().endsWith(ENTRY_EXTENSION))
+                .filter(Files::isRegularFile)
+                .collect(Collectors.toList());
+        }
+    }
+    
+    /**
+     * Returns whether the cache contains an entry which is identical to the given file.
+     *
+     * @param key the key
+     * @param file the file
+     * @return whether the entry exists and has the same content as the file
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean matches(@NotNull String key, @NotNull Path file) throws IOException {
+        Path entry = entryOf(key);
+        try {
+            return Files.isRegularFile(file)
+                && Files.size(file) == Files.size(entry)
+                && Arrays.equals(Files.readAllBytes(file), Files.readAllBytes(entry));
+        } catch (NoSuchFileException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Copies the entry of a key to a destination file, if the entry exists.
+     *
+     * @param key the key
+     * @param destination the destination file
+     * @return whether the entry existed and was copied
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean copyTo(@NotNull String key, @NotNull Path destination) throws IOException {
+        Path entry = entryOf(key);
+        try (FileChannel source = FileChannel.open(entry, StandardOpenOption.READ)) {
+            try (AtomicFileOutputStream target = new AtomicFileOutputStream(destination)) {
+                target.transferFrom(source);
+                target.commit();
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException ex) {
+            if (Files.exists(entry))
+                throw ex;
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        return true;
+    }
+    
+    /**
+     * Records a hit which did not require copying the entry, because the destination was already up to date.
+     *
+     * @param key the key
+     */
+    public void touch(@NotNull String key) {
+        try {
+            Files.setLastModifiedTime(entryOf(key), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // the entry has been evicted in the meantime, which is harmless
+        }
+        hits.increment();
+    }
+    
+    /**
+     * Stores an entity file in the cache, evicting the least recently used entries if the cache becomes too large.
+     *
+     * @param key the key
+     * @param content the content of the entity file
+     * @throws IOException if an I/O error occurs
+     */
+    public void put(@NotNull String key, byte[] content) throws IOException {
+        Path entry = entryOf(key);
+        Files.createDirectories(entry.getParent());
+        
+        // write a temporary file first, so that concurrent readers never see a partial entry
+        Path temp = Files.createTempFile(entry.getParent(), key, ".tmp");
+        try {
+            Files.write(temp, content);
+            long previous = Files.exists(entry)? Files.size(entry) : 0;
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            bytes.addAndGet(content.length - previous);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        
+        if (bytes.get() > maxBytes)
+            evict();
+    }
+    
+    /**
+     * Deletes the least recently used entries until the cache has shrunk to 90% of its maximum size, so that not
+     * every insertion has to evict entries.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private synchronized void evict() throws IOException {
+        if (bytes.get() <= maxBytes)
+            return;
+        
+        List<Path> entries = listEntries();
+        Map<Path, FileTime> times = new HashMap<>(entries.size());
+        for (Path entry : entries)
+            times.put(entry, Files.getLastModifiedTime(entry));
+        entries.sort(Comparator.comparing(times::get));
+        
+        final long target = maxBytes - maxBytes / 10;
+        for (Path entry : entries) {
+            if (bytes.get() <= target)
+                break;
+            long size = Files.size(entry);
+            if (Files.deleteIfExists(entry))
+                bytes.addAndGet(-size);
+        }
+    }
+    
+    @NotNull
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Returns the total size of all entries.
+     *
+     * @return the size in bytes
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    @Override
+    public String toString() {
+        return getHits() + " hits, " + getMisses() + " misses, " + getBytes() / 1024 + " KiB in " + directory;
+    }
+    
+}
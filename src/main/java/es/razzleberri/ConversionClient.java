@@ -0,0 +1,133 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * Sends conversion requests to a {@link ConversionDaemon}.
+ * <p>
+ * Every request uses its own connection, so a client can be shared between threads. If the daemon can not serve a
+ * request, because it is not running, does not answer in time or converts with another
+ * {@link CraftStudioToBedrockEntity#VERSION version}, an {@link UnavailableException} is thrown, so that the caller
+ * can convert locally instead.
+ */
+public class ConversionClient {
+    
+    private final static int CONNECT_TIMEOUT_MILLIS = 200;
+    /** the time to wait for the daemon to answer, which is generous because large models take a while to convert */
+    private final static int READ_TIMEOUT_MILLIS = 60_000;
+    /** the message of daemons from before the version check, which reject the magic of newer clients */
+    private final static String LEGACY_REJECTION = "not a conversion request";
+    
+    @NotNull
+    private final InetSocketAddress address;
+    
+    /**
+     * @param port the port of the daemon on the loopback address
+     */
+    public ConversionClient(int port) {
+        this.address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+    
+    /**
+     * Returns whether a daemon accepts connections at the address of this client.
+     *
+     * @return whether a daemon is running
+     */
+    public boolean isAvailable() {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Converts the content of a CraftStudio model file using the daemon.
+     *
+     * @param content the content of the model file
+     * @param options the conversion options, which are sent to the daemon by their fingerprint
+     * @return the output of the conversion
+     * @throws UnavailableException if the daemon can not serve the request
+     * @throws IOException if the conversion fails
+     */
+    @NotNull
+    public ConversionOutput convert(byte[] content, @NotNull ConversionOptions options) throws IOException {
+        return convert(ByteBuffer.wrap(content), options);
+    }
+    
+    /**
+     * Converts the content of a CraftStudio model file using the daemon.
+     *
+     * @param content the content of the model file, its position is not modified
+     * @param options the conversion options, which are sent to the daemon by their fingerprint
+     * @return the output of the conversion
+     * @throws UnavailableException if the daemon can not serve the request
+     * @throws IOException if the conversion fails
+     */
+    @NotNull
+    public ConversionOutput convert(@NotNull ByteBuffer content, @NotNull ConversionOptions options) throws IOException {
+        final int length = content.remaining();
+        if (length > ConversionDaemon.MAX_LENGTH)
+            throw new UnavailableException("model is too large for the daemon: " + length + " bytes");
+        
+        String error;
+        try (Socket socket = new Socket()) {
+            socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(ConversionDaemon.MAGIC);
+            out.writeInt(CraftStudioToBedrockEntity.VERSION);
+            out.writeUTF(options.getFingerprint());
+            out.writeInt(length);
+            out.flush();
+            Channels.newChannel(socket.getOutputStream()).write(content.duplicate());
+            
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            byte status = in.readByte();
+            if (status == ConversionDaemon.STATUS_OK) {
+                int blocks = in.readInt(), bones = in.readInt(), cubes = in.readInt();
+                int mergedCubes = in.readInt(), culledCubes = in.readInt();
+                byte[] entity = new byte[in.readInt()];
+                in.readFully(entity);
+                return new ConversionOutput(entity, blocks, bones, cubes, mergedCubes, culledCubes);
+            }
+            error = in.readUTF();
+            if (status == ConversionDaemon.STATUS_REJECTED || error.equals(LEGACY_REJECTION))
+                throw new UnavailableException(this + " rejected the request: " + error);
+        } catch (UnavailableException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new UnavailableException(this + " is unavailable: " + ex, ex);
+        }
+        // only the errors which the daemon reports about the model itself are failures of the conversion
+        throw new IOException(error);
+    }
+    
+    @Override
+    public String toString() {
+        return "daemon at " + address;
+    }
+    
+    /**
+     * Signals that a daemon can not serve a request, so that the model should be converted locally.
+     */
+    public static class UnavailableException extends IOException {
+        
+        public UnavailableException(String message) {
+            super(message);
+        }
+        
+        public UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+        
+    }
+    
+}
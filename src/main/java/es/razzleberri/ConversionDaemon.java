@@ -0,0 +1,245 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A resident converter which accepts conversion requests on a localhost TCP socket, so that clients don't pay for JVM
+ * startup and a cold JIT on every conversion.
+ * <p>
+ *     Every connection is served by its own thread and may send any number of requests, one after another. A request
+ *     consists of:
+ * </p>
+ * <ol>
+ *     <li>the {@code int} {@link #MAGIC}</li>
+ *     <li>the {@code int} {@link CraftStudioToBedrockEntity#VERSION version of the conversion}</li>
+ *     <li>the {@link ConversionOptions#getFingerprint() fingerprint} of the conversion options as modified UTF-8</li>
+ *     <li>the {@code int} length of the CraftStudio model file followed by its bytes</li>
+ * </ol>
+ * <p>
+ *     The response starts with a status byte. {@link #STATUS_OK} is followed by the {@code int} number of blocks,
+ *     bones, cubes, merged cubes and culled cubes and then the {@code int} length of the entity file followed by its
+ *     bytes.
+ *     {@link #STATUS_ERROR} is followed by an error message as modified UTF-8. {@link #STATUS_REJECTED} is followed by
+ *     a message as well and means that the request was not meant for this daemon, because its magic number or its
+ *     version of the conversion differs, so that clients convert locally instead of receiving the output of another
+ *     version.
+ * </p>
+ * <p>
+ *     At most {@link #MAX_CONNECTIONS} connections are served at the same time, further connections are closed right
+ *     away. At most a fixed number of requests are read and converted at the same time, while further requests wait
+ *     for their turn before their model is read, so that waiting requests don't hold any model in memory. A client
+ *     which sends nothing for {@link #READ_TIMEOUT_MILLIS} is disconnected.
+ * </p>
+ *
+ * @see ConversionClient
+ */
+public class ConversionDaemon implements Closeable {
+    
+    public final static int DEFAULT_PORT = 48213;
+    /**
+     * The magic number of requests, which changes whenever the protocol changes, so that clients and daemons of
+     * different versions reject each other instead of misreading each other.
+     */
+    public final static int MAGIC = 0x43533248;
+    public final static byte STATUS_OK = 0, STATUS_ERROR = 1, STATUS_REJECTED = 2;
+    
+    /**
+     * The maximum length of a model file, which prevents a broken client from making the daemon allocate arbitrary
+     * amounts of memory.
+     */
+    final static int MAX_LENGTH = 256 << 20;
+    /**
+     * The maximum number of connections which are served at the same time.
+     */
+    public final static int MAX_CONNECTIONS = 64;
+    /**
+     * The time after which a client which sends nothing is disconnected, so that broken clients can't hold a
+     * connection thread forever.
+     */
+    public final static int READ_TIMEOUT_MILLIS = 30_000;
+    
+    @NotNull
+    private final ServerSocket serverSocket;
+    @NotNull
+    private final ExecutorService executor;
+    @NotNull
+    private final Semaphore inFlight;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final int readTimeoutMillis;
+    
+    /**
+     * Binds a daemon to a port of the loopback address.
+     *
+     * @param port the port or {@code 0} for any free port
+     * @param maxInFlight the maximum number of requests being read and converted at the same time
+     * @throws IOException if the port can not be bound
+     */
+    public ConversionDaemon(int port, int maxInFlight) throws IOException {
+        this(port, maxInFlight, READ_TIMEOUT_MILLIS);
+    }
+    
+    ConversionDaemon(int port, int maxInFlight, int readTimeoutMillis) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.inFlight = new Semaphore(maxInFlight);
+        this.readTimeoutMillis = readTimeoutMillis;
+        // no queue, connections beyond the maximum are rejected instead of piling up
+        this.executor = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "conversion-daemon-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+    
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+    
+    /**
+     * Returns the number of requests which have been received, including requests which are still being served.
+     *
+     * @return the number of requests
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+    
+    /**
+     * Accepts connections until this daemon is closed.
+     *
+     * @throws IOException if accepting a connection fails for another reason than this daemon being closed
+     */
+    public void run() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException ex) {
+                if (serverSocket.isClosed())
+                    return;
+                throw ex;
+            }
+            try {
+                executor.execute(() -> serve(socket));
+            } catch (RejectedExecutionException ex) {
+                socket.close();
+            }
+        }
+    }
+    
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(readTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            
+            int magic;
+            while ((magic = readMagic(in)) != -1) {
+                if (magic != MAGIC) {
+                    respond(out, STATUS_REJECTED, "not a conversion request");
+                    return;
+                }
+                int version = in.readInt();
+                if (version != CraftStudioToBedrockEntity.VERSION) {
+                    respond(out, STATUS_REJECTED, "daemon converts version " + CraftStudioToBedrockEntity.VERSION
+                        + ", not version " + version);
+                    return;
+                }
+                String fingerprint = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_LENGTH) {
+                    respondError(out, "invalid model length: " + length);
+                    return;
+                }
+                
+                try {
+                    inFlight.acquire();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    respondError(out, "daemon is shutting down");
+                    return;
+                }
+                ConversionOutput output = null;
+                String error = null;
+                try {
+                    // allocated only with a permit, so that the permits also limit the memory held by requests
+                    byte[] content = new byte[length];
+                    in.readFully(content);
+                    // counted before responding, so that the count includes every request a client has an answer to
+                    requests.incrementAndGet();
+                    try {
+                        ConversionOptions options = ConversionOptions.fromFlags(fingerprint);
+                        output = new ModelConverter(options, true).convert(content);
+                    } catch (IOException | RuntimeException ex) {
+                        error = ex.getMessage() == null? ex.toString() : ex.getMessage();
+                    }
+                } finally {
+                    // released before responding, so that slow readers don't hold a permit
+                    inFlight.release();
+                }
+                
+                if (output != null)
+                    respond(out, output);
+                else
+                    respondError(out, error);
+            }
+        } catch (IOException ex) {
+            // the client went away or stopped sending, there is nobody left to report this to
+        }
+    }
+    
+    /**
+     * Reads the magic number of the next request.
+     *
+     * @return the magic number or {@code -1} if the client has closed the connection
+     */
+    private static int readMagic(DataInputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1)
+            return -1;
+        return first << 24 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8 | in.readUnsignedByte();
+    }
+    
+    private static void respond(DataOutputStream out, ConversionOutput output) throws IOException {
+        out.writeByte(STATUS_OK);
+        out.writeInt(output.getBlocks());
+        out.writeInt(output.getBones());
+        out.writeInt(output.getCubes());
+        out.writeInt(output.getMergedCubes());
+        out.writeInt(output.getCulledCubes());
+        out.writeInt(output.getContent().length);
+        out.write(output.getContent());
+        out.flush();
+    }
+    
+    private static void respondError(DataOutputStream out, String message) throws IOException {
+        respond(out, STATUS_ERROR, message);
+    }
+    
+    private static void respond(DataOutputStream out, byte status, String message) throws IOException {
+        out.writeByte(status);
+        // writeUTF is limited to 65535 bytes
+        out.writeUTF(message.length() > 1000? message.substring(0, 1000) : message);
+        out.flush();
+    }
+    
+    /**
+     * Stops accepting connections. Connections which are currently being served are closed once their client closes
+     * them.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdown();
+    }
+    
+}
@@ -0,0 +1,385 @@
+package es.razzleberri;
+
+import es.razzleberri.io.BedrockEntitySerializer;
+import es.razzleberri.io.CompactBedrockEntitySerializer;
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.*;
+
+/**
+ * Optional settings of {@link CraftStudioToBedrockEntity#convert(CraftStudioModel, ConversionOptions)}.
+ * <p>
+ * The default options produce the same output as {@link CraftStudioToBedrockEntity#convert(CraftStudioModel)}.
+ * <p>
+ * The passes which run after the conversion, {@link #setMergeCubes(boolean) merging cubes},
+ * {@link #setFlattenBones(boolean) flattening bones}, {@link #setCullCubes(boolean) culling cubes} and
+ * {@link #setPackUvs(boolean) packing UV layouts}, are only applied by {@link ModelConverter}. The {@code convert}
+ * methods of {@link CraftStudioToBedrockEntity} ignore them, so callers of these methods have to run the passes on
+ * the converted geometry themselves. The same goes for the {@link #newSerializer() serializer options}.
+ */
+public class ConversionOptions {
+    
+    /**
+     * The default minimum number of blocks of a task of a parallel conversion.
+     */
+    public final static int DEFAULT_PARALLEL_THRESHOLD = 1024;
+    
+    /**
+     * The default number of decimals of quantized doubles, which is finer than any position a model can express.
+     */
+    public final static int DEFAULT_DECIMALS = 4;
+    
+    @Nullable
+    private RotationCache rotationCache;
+    private int parallelThreshold;
+    private boolean mergeCubes, flattenBones, cullCubes, fixedVisibleBounds, packUvs, compactOutput;
+    private int decimals = BedrockEntitySerializer.FULL_PRECISION;
+    
+    /**
+     * Creates options from command line flags. Flags which don't affect the conversion are ignored, so that
+     * {@code fromFlags(options.getFingerprint())} returns options which are equivalent to {@code options}. The flag
+     * {@code q} may be followed by the number of decimals, such as {@code q3}.
+     *
+     * @param flags the flags
+     * @return new options
+     * @throws IllegalArgumentException if the number of decimals is too large
+     */
+    @NotNull
+    public static ConversionOptions fromFlags(@NotNull String flags) {
+        ConversionOptions options = new ConversionOptions();
+        if (flags.indexOf('p') != -1)
+            options.setParallel(true);
+        if (flags.indexOf('m') != -1)
+            options.setMergeCubes(true);
+        if (flags.indexOf('f') != -1)
+            options.setFlattenBones(true);
+        if (flags.indexOf('i') != -1)
+            options.setCullCubes(true);
+        if (flags.indexOf('b') != -1)
+            options.setFixedVisibleBounds(true);
+        if (flags.indexOf('u') != -1)
+            options.setPackUvs(true);
+        if (flags.indexOf('x') != -1)
+            options.setCompactOutput(true);
+        final int q = flags.indexOf('q');
+        if (q != -1) {
+            int end = q + 1;
+            while (end < flags.length() && Character.isDigit(flags.charAt(end)))
+                end++;
+            int decimals = DEFAULT_DECIMALS;
+            if (end != q + 1) {
+                try {
+                    decimals = Integer.parseInt(flags.substring(q + 1, end));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("too many decimals: " + flags.substring(q + 1, end));
+                }
+            }
+            options.setDecimals(decimals);
+        }
+        return options;
+    }
+    
+    @Nullable
+    public RotationCache getRotationCache() {
+        return rotationCache;
+    }
+    
+    /**
+     * Sets the cache used for converting rotations. The same cache can be used by multiple conversions at once.
+     * There is no cache by default, since computing a rotation is about as fast as looking it up, and a cache only
+     * pays off for models which repeat the same few rotations over and over.
+     *
+     * @param rotationCache the cache or {@code null} if rotations should always be computed
+     * @return these options
+     */
+    @NotNull
+    public ConversionOptions setRotationCache(@Nullable RotationCache rotationCache) {
+        this.rotationCache = rotationCache;
+        return this;
+    }
+    
+    /**
+     * Returns whether top-level blocks are converted in parallel.
+     *
+     * @return whether conversions are parallel
+     * @see #setParallelThreshold(int)
+     */
+    public boolean isParallel() {
+        return parallelThreshold > 0;
+    }
+    
+    /**
+     * Returns the minimum number of blocks of a task of a parallel conversion.
+     *
+     * @return the threshold or {@code 0} if conversions are sequential
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+    
+    /**
+     * Enables or disables parallel conversions with the {@link #DEFAULT_PARALLEL_THRESHOLD default threshold}.
+     *
+     * @param parallel whether top-level blocks should be converted in parallel
+     * @return these options
+     */
+    @NotNull
+    public ConversionOptions setParallel(boolean parallel) {
+        return setParallelThreshold(parallel? DEFAULT_PARALLEL_THRESHOLD : 0);
+    }
+    
+    /**
+     * Sets the minimum number of blocks of a task of a parallel conversion. The top-level blocks of a model are split
+     * into tasks on the common {@link java.util.concurrent.ForkJoinPool}, ranges of top-level blocks with fewer
+     * blocks than the threshold are converted sequentially. Parallel conversions produce the same output as
+     * sequential conversions.
+     *
+     * @param parallelThreshold the threshold or {@code 0} if conversions should be sequential
+     * @return these options
+     */
+    @NotNull
+    public ConversionOptions setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 0)
+            throw new IllegalArgumentException("negative threshold: " + parallelThreshold);
+        this.parallelThreshold = parallelThreshold;
+        return this;
+    }
+    
+    /**
+     * Returns whether adjacent cubes are merged after the conversion.
+     *
+     * @return whether cubes are merged
+     * @see CubeMerger
+     */
+    public boolean isMergeCubes() {
+        return mergeCubes;
+    }
+    
+    /**
+     * Sets whether adjacent cubes of the same bone are merged into larger cubes after the conversion. Only
+     * {@link ModelConverter} merges cubes, callers of {@link CraftStudioToBedrockEntity} have to call
+     * {@link CubeMerger#mergeCubes(BedrockEntityGeometry)} themselves.
+     *
+     * @param mergeCubes whether cubes should be merged
+     * @return these options
+     * @see CubeMerger
+     */
+    @NotNull
+    public ConversionOptions setMergeCubes(boolean mergeCubes) {
+        this.mergeCubes = mergeCubes;
+        return this;
+    }
+    
+    /**
+     * Returns whether bones without rotation are removed after the conversion.
+     *
+     * @return whether bones are flattened
+     * @see BoneFlattener
+     */
+    public boolean isFlattenBones() {
+        return flattenBones;
+    }
+    
+    /**
+     * Sets whether bones without rotation are removed after the conversion, moving their cubes and children to their
+     * nearest ancestor with rotation. Only {@link ModelConverter} flattens bones, callers of
+     * {@link CraftStudioToBedrockEntity} have to call {@link BoneFlattener#flattenBones(BedrockEntityGeometry)}
+     * themselves.
+     *
+     * @param flattenBones whether bones should be flattened
+     * @return these options
+     * @see BoneFlattener
+     */
+    @NotNull
+    public ConversionOptions setFlattenBones(boolean flattenBones) {
+        this.flattenBones = flattenBones;
+        return this;
+    }
+    
+    /**
+     * Returns whether hidden cubes are removed after the conversion.
+     *
+     * @return whether cubes are culled
+     * @see CubeCuller
+     */
+    public boolean isCullCubes() {
+        return cullCubes;
+    }
+    
+    /**
+     * Sets whether cubes which are enclosed by other cubes of the same bone or which have no area are removed after
+     * the conversion. Only {@link ModelConverter} culls cubes, callers of {@link CraftStudioToBedrockEntity} have to
+     * call {@link CubeCuller#cull(BedrockEntityGeometry)} themselves.
+     *
+     * @param cullCubes whether cubes should be culled
+     * @return these options
+     * @see CubeCuller
+     */
+    @NotNull
+    public ConversionOptions setCullCubes(boolean cullCubes) {
+        this.cullCubes = cullCubes;
+        return this;
+    }
+    
+    /**
+     * Returns whether every geometry has the same fixed visible bounds instead of bounds computed from its cubes.
+     *
+     * @return whether visible bounds are fixed
+     * @see VisibleBounds
+     */
+    public boolean isFixedVisibleBounds() {
+        return fixedVisibleBounds;
+    }
+    
+    /**
+     * Sets whether every geometry gets the fixed visible bounds of earlier versions, which are one block wide and two
+     * blocks high, instead of bounds computed from its cubes.
+     *
+     * @param fixedVisibleBounds whether visible bounds should be fixed
+     * @return these options
+     * @see VisibleBounds
+     */
+    @NotNull
+    public ConversionOptions setFixedVisibleBounds(boolean fixedVisibleBounds) {
+        this.fixedVisibleBounds = fixedVisibleBounds;
+        return this;
+    }
+    
+    /**
+     * Returns whether the UV layouts of all cubes are packed into the smallest texture they fit into.
+     *
+     * @return whether UV layouts are packed
+     * @see UvPacker
+     */
+    public boolean isPackUvs() {
+        return packUvs;
+    }
+    
+    /**
+     * Sets whether the UV layouts of all cubes are packed into the smallest texture they fit into. The texture no
+     * longer matches the packed layout and has to be painted for it. Only {@link ModelConverter} packs UV layouts,
+     * callers of {@link CraftStudioToBedrockEntity} have to call {@link UvPacker#pack(BedrockEntityGeometry)}
+     * themselves.
+     *
+     * @param packUvs whether UV layouts should be packed
+     * @return these options
+     * @see UvPacker
+     */
+    @NotNull
+    public ConversionOptions setPackUvs(boolean packUvs) {
+        this.packUvs = packUvs;
+        return this;
+    }
+    
+    /**
+     * Returns whether entity files are written without any whitespace.
+     *
+     * @return whether the output is compact
+     */
+    public boolean isCompactOutput() {
+        return compactOutput;
+    }
+    
+    /**
+     * Sets whether entity files are written without any whitespace instead of being pretty-printed, which makes them
+     * much smaller to ship.
+     *
+     * @param compactOutput whether the output should be compact
+     * @return these options
+     */
+    @NotNull
+    public ConversionOptions setCompactOutput(boolean compactOutput) {
+        this.compactOutput = compactOutput;
+        return this;
+    }
+    
+    /**
+     * Returns the number of decimals which the doubles of entity files are rounded to.
+     *
+     * @return the number of decimals or {@link BedrockEntitySerializer#FULL_PRECISION}
+     */
+    public int getDecimals() {
+        return decimals;
+    }
+    
+    /**
+     * Sets the number of decimals which the pivots, rotations, origins and visible bounds offsets of entity files are
+     * rounded to. Rotations computed from CraftStudio angles carry rounding errors such as {@code -44.40850000000001},
+     * which rounding drops from the output.
+     *
+     * @param decimals the number of decimals or {@link BedrockEntitySerializer#FULL_PRECISION}
+     * @return these options
+     */
+    @NotNull
+    public ConversionOptions setDecimals(int decimals) {
+        if (decimals < BedrockEntitySerializer.FULL_PRECISION)
+            throw new IllegalArgumentException("negative decimals: " + decimals);
+        this.decimals = decimals;
+        return this;
+    }
+    
+    /**
+     * Creates a serializer which writes entity files as these options ask for.
+     *
+     * @return a new serializer
+     */
+    @NotNull
+    public CompactBedrockEntitySerializer newSerializer() {
+        return new CompactBedrockEntitySerializer(compactOutput, decimals);
+    }
+    
+    /**
+     * Returns a string identifying all options which affect the output of a conversion, so that conversions with
+     * equal fingerprints produce the same output. Caches such as the {@link #getRotationCache() rotation cache} and
+     * the {@link #isParallel() parallelism} only affect the performance and are not part of the fingerprint.
+     * <p>
+     * The fingerprint consists of the command line flags of the options, as accepted by {@link #fromFlags(String)}.
+     *
+     * @return the fingerprint
+     */
+    @NotNull
+    public String getFingerprint() {
+        StringBuilder result = new StringBuilder(4);
+        if (mergeCubes)
+            result.append('m');
+        if (flattenBones)
+            result.append('f');
+        if (cullCubes)
+            result.append('i');
+        if (fixedVisibleBounds)
+            result.append('b');
+        if (packUvs)
+            result.append('u');
+        if (compactOutput)
+            result.append('x');
+        if (decimals != BedrockEntitySerializer.FULL_PRECISION)
+            result.append('q').append(decimals);
+        return result.toString();
+    }
+    
+    @NotNull
+    Vec3d toEntityRotation(@NotNull Vec3d xyzDegrees) {
+        return rotationCache == null
+            ? Rotations.craftStudioRotationToEntityRotation(xyzDegrees)
+            : rotationCache.toEntityRotation(xyzDegrees);
+    }
+    
+    boolean isZeroRotation(@NotNull Vec3d xyzDegrees) {
+        return rotationCache == null
+            ? Rotations.isZeroRotation(xyzDegrees)
+            : rotationCache.isZeroRotation(xyzDegrees);
+    }
+    
+    void toEntityRotation(double x, double y, double z, double[] result) {
+        if (rotationCache == null)
+            Rotations.craftStudioRotationToEntityRotation(x, y, z, result);
+        else
+            rotationCache.toEntityRotation(x, y, z, result);
+    }
+    
+    boolean isZeroRotation(double x, double y, double z) {
+        return rotationCache == null
+            ? Rotations.isZeroRotation(x, y, z)
+            : rotationCache.isZeroRotation(x, y, z);
+    }
+    
+}
@@ -0,0 +1,62 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A serialized entity file together with statistics about its conversion.
+ */
+public class ConversionOutput {
+    
+    private final byte[] content;
+    private final int blocks, bones, cubes, mergedCubes, culledCubes;
+    
+    public ConversionOutput(byte[] content, int blocks, int bones, int cubes, int mergedCubes, int culledCubes) {
+        this.content = content;
+        this.blocks = blocks;
+        this.bones = bones;
+        this.cubes = cubes;
+        this.mergedCubes = mergedCubes;
+        this.culledCubes = culledCubes;
+    }
+    
+    /**
+     * Returns the content of the entity file.
+     *
+     * @return the content
+     */
+    @NotNull
+    public byte[] getContent() {
+        return content;
+    }
+    
+    public int getBlocks() {
+        return blocks;
+    }
+    
+    public int getBones() {
+        return bones;
+    }
+    
+    public int getCubes() {
+        return cubes;
+    }
+    
+    /**
+     * Returns the number of cubes which have been removed by {@link CubeMerger merging} them into other cubes.
+     *
+     * @return the number of merged cubes
+     */
+    public int getMergedCubes() {
+        return mergedCubes;
+    }
+    
+    /**
+     * Returns the number of cubes which have been removed by {@link CubeCuller culling} them.
+     *
+     * @return the number of culled cubes
+     */
+    public int getCulledCubes() {
+        return culledCubes;
+    }
+    
+}
@@ -0,0 +1,194 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.*;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of converting a single CraftStudio model file into an entity file.
+ */
+public class ConversionResult {
+    
+    @NotNull
+    private final Path input;
+    @NotNull
+    private final Path output;
+    private final long nanos;
+    private final int blocks, bones, cubes, mergedCubes, culledCubes;
+    private final boolean written, cached;
+    @Nullable
+    private final String error;
+    
+    private ConversionResult(@NotNull Path input,
+                             @NotNull Path output,
+                             long nanos,
+                             int blocks,
+                             int bones,
+                             int cubes,
+                             int mergedCubes,
+                             int culledCubes,
+                             boolean written,
+                             boolean cached,
+                             @Nullable String error) {
+        this.input = input;
+        this.output = output;
+        this.nanos = nanos;
+        this.blocks = blocks;
+        this.bones = bones;
+        this.cubes = cubes;
+        this.mergedCubes = mergedCubes;
+        this.culledCubes = culledCubes;
+        this.written = written;
+        this.cached = cached;
+        this.error = error;
+    }
+    
+    /**
+     * @param conversion the output of the conversion, whose statistics are kept
+     * @param written whether the output file was written, which is not the case if it already had the same content
+     */
+    @NotNull
+    public static ConversionResult success(@NotNull Path input, @NotNull Path output, long nanos,
+                                           @NotNull ConversionOutput conversion, boolean written) {
+        return new ConversionResult(input, output, nanos,
+            conversion.getBlocks(), conversion.getBones(), conversion.getCubes(),
+            conversion.getMergedCubes(), conversion.getCulledCubes(),
+            written, false, null);
+    }
+    
+    /**
+     * Creates the result of a conversion whose geometry has been joined with other geometries into one output file.
+     *
+     * @param conversion the converted geometry, whose statistics are kept
+     * @param written whether the output file was written, which is not the case if it already had the same content
+     */
+    @NotNull
+    public static ConversionResult success(@NotNull Path input, @NotNull Path output, long nanos,
+                                           @NotNull ConvertedGeometry conversion, boolean written) {
+        CompactBedrockGeometry geometry = conversion.getGeometry();
+        return new ConversionResult(input, output, nanos,
+            conversion.getBlocks(), geometry.getBoneCount(), geometry.getCubeCount(),
+            conversion.getMergedCubes(), conversion.getCulledCubes(),
+            written, false, null);
+    }
+    
+    /**
+     * Creates the result of a conversion which was answered by a {@link ConversionCache}. The number of blocks, bones
+     * and cubes of such conversions is unknown and reported as zero, so summaries leave these results out of their
+     * totals.
+     *
+     * @param written whether the output file was written, which is not the case if it already had the same content
+     */
+    @NotNull
+    public static ConversionResult cached(@NotNull Path input, @NotNull Path output, long nanos, boolean written) {
+        return new ConversionResult(input, output, nanos, 0, 0, 0, 0, 0, written, true, null);
+    }
+    
+    @NotNull
+    public static ConversionResult failure(@NotNull Path input, @NotNull Path output, long nanos,
+                                           @NotNull String error) {
+        return new ConversionResult(input, output, nanos, 0, 0, 0, 0, 0, false, false, error);
+    }
+    
+    @NotNull
+    public Path getInput() {
+        return input;
+    }
+    
+    @NotNull
+    public Path getOutput() {
+        return output;
+    }
+    
+    public long getNanos() {
+        return nanos;
+    }
+    
+    public long getMillis() {
+        return nanos / 1_000_000;
+    }
+    
+    public int getBlocks() {
+        return blocks;
+    }
+    
+    public int getBones() {
+        return bones;
+    }
+    
+    public int getCubes() {
+        return cubes;
+    }
+    
+    public int getMergedCubes() {
+        return mergedCubes;
+    }
+    
+    public int getCulledCubes() {
+        return culledCubes;
+    }
+    
+    /**
+     * Returns whether the output file was written. Successful conversions don't write the output file if it already
+     * contains the exact same content.
+     *
+     * @return whether the output file was written
+     */
+    public boolean isWritten() {
+        return written;
+    }
+    
+    /**
+     * Returns whether the output was copied from a {@link ConversionCache} instead of being converted.
+     *
+     * @return whether the result was cached
+     */
+    public boolean isCached() {
+        return cached;
+    }
+    
+    @Nullable
+    public String getError() {
+        return error;
+    }
+    
+    public boolean isSuccess() {
+        return error == null;
+    }
+    
+    @Override
+    public String toString() {
+        if (error != null)
+            return "FAILED " + input + ": " + error;
+        if (cached)
+            return input + " -> " + output + " (cached, " + getMillis() + " ms" + (written? ")" : ", unchanged)");
+        return input + " -> " + output
+            + " (" + blocks + " blocks, " + bones + " bones, " + cubes + " cubes"
+            + describeRemovedCubes(mergedCubes, culledCubes) + ", " + getMillis() + " ms"
+            + (written? ")" : ", unchanged)");
+    }
+    
+    /**
+     * Describes the number of cubes removed by merging and culling, if any.
+     *
+     * @param mergedCubes the number of merged cubes
+     * @param culledCubes the number of culled cubes
+     * @return the description, starting with a space, or an empty string
+     */
+    @NotNull
+    static String describeRemovedCubes(int mergedCubes, int culledCubes) {
+        if (mergedCubes == 0 && culledCubes == 0)
+            return "";
+        StringBuilder result = new StringBuilder(" (");
+        if (mergedCubes != 0)
+            result.append(mergedCubes).append(" merged");
+        if (culledCubes != 0) {
+            if (mergedCubes != 0)
+                result.append(", ");
+            result.append(culledCubes).append(" culled, ")
+                .append((long) culledCubes * CubeCuller.FACES_PER_CUBE).append(" faces saved");
+        }
+        return result.append(')').toString();
+    }
+    
+}
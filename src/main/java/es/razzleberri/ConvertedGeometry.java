@@ -0,0 +1,50 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A converted geometry which has not been serialized yet, together with statistics about its conversion.
+ */
+public class ConvertedGeometry {
+    
+    @NotNull
+    private final CompactBedrockGeometry geometry;
+    private final int blocks, mergedCubes, culledCubes;
+    
+    public ConvertedGeometry(@NotNull CompactBedrockGeometry geometry, int blocks, int mergedCubes, int culledCubes) {
+        this.geometry = geometry;
+        this.blocks = blocks;
+        this.mergedCubes = mergedCubes;
+        this.culledCubes = culledCubes;
+    }
+    
+    @NotNull
+    public CompactBedrockGeometry getGeometry() {
+        return geometry;
+    }
+    
+    public int getBlocks() {
+        return blocks;
+    }
+    
+    public int getMergedCubes() {
+        return mergedCubes;
+    }
+    
+    public int getCulledCubes() {
+        return culledCubes;
+    }
+    
+    /**
+     * Combines the statistics of this conversion with the serialized geometry.
+     *
+     * @param content the serialized geometry
+     * @return the output of the conversion
+     */
+    @NotNull
+    public ConversionOutput toOutput(byte[] content) {
+        return new ConversionOutput(content, blocks, geometry.getBoneCount(), geometry.getCubeCount(),
+            mergedCubes, culledCubes);
+    }
+    
+}
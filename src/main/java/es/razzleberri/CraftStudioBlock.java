@@ -35,6 +35,23 @@ public class CraftStudioBlock {
         return Collections.unmodifiableList(children);
     }
     
+    /**
+     * Returns the number of blocks in the tree of this block, including this block itself.
+     *
+     * @return the total number of blocks
+     */
+    public int getTotalSize() {
+        int result = 0;
+        Deque<CraftStudioBlock> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            result++;
+            for (CraftStudioBlock child : stack.pop().children)
+                stack.push(child);
+        }
+        return result;
+    }
+    
     @NotNull
     public String getName() {
         return name;
@@ -34,4 +34,16 @@ public class CraftStudioModel {
         return blocks.size();
     }
     
+    /**
+     * Returns the number of blocks in this model, including all nested children.
+     *
+     * @return the total number of blocks
+     */
+    public int getTotalSize() {
+        int result = 0;
+        for (CraftStudioBlock block : blocks)
+            result += block.getTotalSize();
+        return result;
+    }
+    
 }
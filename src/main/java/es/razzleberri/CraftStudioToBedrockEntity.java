@@ -3,89 +3,314 @@ package es.razzleberri;
 import es.razzleberri.util.*;
 import org.jetbrains.annotations.*;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BinaryOperator;
+
 public final class CraftStudioToBedrockEntity {
     
+    /**
+     * The version of the conversion, which must be incremented whenever a change to the converter changes its output.
+     * Cached conversions of other versions are discarded.
+     * <p>
+     * Version 4 keeps the descendants of blocks without rotation at any depth and positions them relative to all of
+     * their ancestors, which changes the default output of models nested more than two levels deep.
+     */
+    public final static int VERSION = 4;
+    
     private final static Vec2i VISIBLE_BOUNDS = new Vec2i(1, 2);
     private final static Vec3d VISIBLE_BOUNDS_OFFSET = new Vec3d(0, 0, 0);
     private final static Vec2i TEXTURE_SIZE = new Vec2i(128, 128);
     
     @NotNull
     public static BedrockEntityModel convert(@NotNull CraftStudioModel csModel) {
+        return convert(csModel, new ConversionOptions());
+    }
+    
+    @NotNull
+    public static BedrockEntityModel convert(@NotNull CraftStudioModel csModel, @NotNull ConversionOptions options) {
         BedrockEntityModel result = new BedrockEntityModel();
         BedrockEntityGeometry geometry = new BedrockEntityGeometry(
             VISIBLE_BOUNDS,
             VISIBLE_BOUNDS_OFFSET,
             TEXTURE_SIZE);
         
-        for (CraftStudioBlock block : csModel.getBlocks())
-            blockToBone(geometry, block, null);
+        List<CraftStudioBlock> blocks = csModel.getBlocks();
+        if (options.isParallel() && blocks.size() > 1) {
+            int[] offsets = new int[blocks.size() + 1];
+            for (int i = 0; i < blocks.size(); i++)
+                offsets[i + 1] = offsets[i] + blocks.get(i).getTotalSize();
+            addBones(geometry, ForkJoinPool.commonPool().invoke(new SubtreeTask<>(
+                offsets, 0, blocks.size(), options.getParallelThreshold(),
+                (from, to) -> blocksToBones(blocks.subList(from, to), options),
+                BoneList::addAll)));
+        } else {
+            addBones(geometry, blocksToBones(blocks, options));
+        }
+        if (!options.isFixedVisibleBounds())
+            VisibleBounds.compute(geometry, options.getParallelThreshold());
         
         result.putGeometry(csModel.getTitle(), geometry);
         return result;
     }
     
     /**
-     * Converts a {@link CraftStudioBlock} to a {@link BedrockEntityBone} and adds the bone to the given
-     * {@link BedrockEntityGeometry}.
+     * Converts a {@link CompactCraftStudioModel} without creating any objects for its blocks, bones and cubes.
      * <p>
-     * If the given block has a parent, the parent will be referenced by the block in the geometry.
+     * The result is equivalent to the result of {@link #convert(CraftStudioModel, ConversionOptions)}.
+     *
+     * @param csModel the CraftStudio model
+     * @param options the conversion options
+     * @return the entity geometry
+     */
+    @NotNull
+    public static CompactBedrockGeometry convert(@NotNull CompactCraftStudioModel csModel,
+                                                 @NotNull ConversionOptions options) {
+        CompactBedrockGeometry geometry = newGeometry(csModel, csModel.size());
+        
+        if (options.isParallel() && csModel.size() > 0 && csModel.getEnd(0) < csModel.size()) {
+            // the offset of each top-level block, followed by the size of the model
+            int count = 0;
+            int[] offsets = new int[16];
+            for (int block = 0; block < csModel.size(); block = csModel.getEnd(block)) {
+                if (count + 1 == offsets.length)
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsets[count++] = block;
+            }
+            offsets[count] = csModel.size();
+            
+            final int[] roots = offsets;
+            geometry.addAll(ForkJoinPool.commonPool().invoke(new SubtreeTask<>(
+                roots, 0, count, options.getParallelThreshold(),
+                (from, to) -> {
+                    CompactBedrockGeometry part = newGeometry(csModel, roots[to] - roots[from]);
+                    blocksToBones(part, csModel, roots[from], roots[to], options);
+                    return part;
+                },
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                })));
+        } else {
+            blocksToBones(geometry, csModel, 0, csModel.size(), options);
+        }
+        
+        resolveNames(geometry);
+        if (!options.isFixedVisibleBounds())
+            VisibleBounds.compute(geometry, options.getParallelThreshold());
+        return geometry;
+    }
+    
+    private static CompactBedrockGeometry newGeometry(CompactCraftStudioModel csModel, int capacity) {
+        return new CompactBedrockGeometry(
+            csModel.getTitle(),
+            VISIBLE_BOUNDS.getX(), VISIBLE_BOUNDS.getY(),
+            VISIBLE_BOUNDS_OFFSET.getX(), VISIBLE_BOUNDS_OFFSET.getY(), VISIBLE_BOUNDS_OFFSET.getZ(),
+            TEXTURE_SIZE.getX(), TEXTURE_SIZE.getY(),
+            capacity);
+    }
+    
+    /**
+     * Converts a range of top-level blocks into a list of bones.
+     *
+     * @param blocks the top-level blocks
+     * @param options the conversion options
+     * @return the bones of all blocks in order
+     */
+    private static BoneList blocksToBones(@NotNull List<CraftStudioBlock> blocks,
+                                          @NotNull ConversionOptions options) {
+        BoneList bones = new BoneList(blocks.size());
+        // the blocks which still have to be converted, the next block being on top
+        List<PendingBlock> stack = new ArrayList<>();
+        for (CraftStudioBlock root : blocks) {
+            blockToBone(bones, new PendingBlock(root, null, -1, null, null), options, stack);
+            while (!stack.isEmpty())
+                blockToBone(bones, stack.remove(stack.size() - 1), options, stack);
+        }
+        return bones;
+    }
+    
+    /**
+     * Adds converted bones to a geometry, renaming every bone whose name is already taken.
      * <p>
-     * If the given block has children, these children will be appended, referencing the given block as a parent.
+     * Bones are renamed in conversion order, after the bones of their parents, so that the result does not depend on
+     * whether the bones were converted in parallel.
      *
      * @param geometry the entity geometry
-     * @param block the block to be converted
-     * @param parent the parent of the block, can be {@code null}
+     * @param bones the converted bones
+     * @see BoneNamer
      */
-    private static void blockToBone(@NotNull BedrockEntityGeometry geometry,
-                                    @NotNull CraftStudioBlock block,
-                                    @Nullable CraftStudioBlock parent) {
-        String name = block.getName();
-        String parentName = parent == null? null : parent.getName();
-        /* if (geometry.hasBone(name)) {
-            if (parentName != null)
-                name = parentName + '.' + name;
-            if (geometry.hasBone(name)) {
-                System.err.println("ERROR: Bone \"" + name + "\" appears multiple times");
+    private static void addBones(@NotNull BedrockEntityGeometry geometry, @NotNull BoneList bones) {
+        BoneNamer namer = new BoneNamer();
+        String[] names = new String[bones.size()];
+        for (int i = 0; i < names.length; i++) {
+            BedrockEntityBone bone = bones.get(i);
+            int parent = bones.getParent(i);
+            String parentName = parent == -1? null : names[parent];
+            String name = names[i] = namer.uniqueName(bone.getName(), parentName);
+            if (!name.equals(bone.getName()) || !Objects.equals(parentName, bone.getParent()))
+                bone = bone.renamed(name, parentName);
+            geometry.addBone(bone);
+        }
+    }
+    
+    /**
+     * Renames every bone of a geometry whose name is already taken by a previous bone.
+     *
+     * @param geometry the entity geometry
+     * @see #addBones(BedrockEntityGeometry, BoneList)
+     */
+    private static void resolveNames(@NotNull CompactBedrockGeometry geometry) {
+        BoneNamer namer = new BoneNamer();
+        for (int bone = 0; bone < geometry.getBoneCount(); bone++) {
+            String name = geometry.getBoneName(bone);
+            String unique = namer.uniqueName(name, geometry.getBoneParentName(bone));
+            if (!unique.equals(name))
+                geometry.setBoneName(bone, unique);
+        }
+    }
+    
+    /**
+     * Converts the top-level blocks in range {@code from until to} and adds their bones to the given geometry.
+     *
+     * @param geometry the entity geometry
+     * @param csModel the CraftStudio model
+     * @param from the index of the first top-level block
+     * @param to the end of the subtree of the last top-level block
+     * @param options the conversion options
+     */
+    private static void blocksToBones(@NotNull CompactBedrockGeometry geometry,
+                                      @NotNull CompactCraftStudioModel csModel,
+                                      int from,
+                                      int to,
+                                      @NotNull ConversionOptions options) {
+        double[] rotation = new double[3];
+        double[] positions = new double[3 * (to - from)], origins = new double[3 * (to - from)];
+        accumulatePositions(csModel, from, to, positions, origins);
+        // triples of a converted block, its bone and its next descendant which has not been visited yet
+        int[] stack = new int[3 * 16];
+        for (int root = from; root < to; root = csModel.getEnd(root)) {
+            int size = 0;
+            stack[size++] = root;
+            stack[size++] = blockToBone(geometry, csModel, root, from, -1, positions, origins, options, rotation);
+            stack[size++] = root + 1;
+            
+            while (size != 0) {
+                final int block = stack[size - 3], end = csModel.getEnd(block);
+                // descendants without rotation are cubes of the bone, but their descendants are visited
+                int child = stack[size - 1];
+                while (child < end && isZeroRotation(csModel, child, options))
+                    child++;
+                if (child == end) {
+                    size -= 3;
+                    continue;
+                }
+                
+                stack[size - 1] = csModel.getEnd(child);
+                int bone = blockToBone(geometry, csModel, child, from, stack[size - 2], positions, origins, options,
+                    rotation);
+                if (size == stack.length)
+                    stack = Arrays.copyOf(stack, size * 2);
+                stack[size++] = child;
+                stack[size++] = bone;
+                stack[size++] = child + 1;
             }
-        } */
-        
-        Vec3d pivot = block.getPosition();
-        if (parent != null)
-            pivot = pivot.plus(parent.getPosition());
-        pivot = new Vec3d(
-            pivot.getX(),
-            pivot.getY(),
-            -pivot.getZ()
+        }
+    }
+    
+    /**
+     * Converts a {@link CraftStudioBlock} to a {@link BedrockEntityBone} and adds the bone to the given list of
+     * bones.
+     * <p>
+     * If the given block has a parent, the parent will be referenced by the block in the geometry. Bones are named
+     * after their blocks, duplicate names are resolved once all bones have been converted.
+     * <p>
+     * Descendants without rotation, at any depth, are added as cubes of the bone, as long as all blocks between them
+     * and the bone have no rotation either. All other descendants below such blocks become children of the bone and are
+     * pushed onto the given stack in reverse order, so that they are converted in order.
+     *
+     * @param bones the converted bones
+     * @param pending the block to be converted, together with its parent bone
+     * @param options the conversion options
+     * @param stack the stack of blocks which still have to be converted
+     */
+    private static void blockToBone(@NotNull BoneList bones,
+                                    @NotNull PendingBlock pending,
+                                    @NotNull ConversionOptions options,
+                                    @NotNull List<PendingBlock> stack) {
+        final CraftStudioBlock block = pending.block;
+        String name = block.getName();
+        
+        Vec3d position = block.getPosition();
+        if (pending.parentPosition != null)
+            position = position.plus(pending.parentPosition);
+        Vec3d pivot = new Vec3d(
+            position.getX(),
+            position.getY(),
+            -position.getZ()
             //pivot.getZ()
         );
         
-        Vec3d rotation = Rotations.craftStudioRotationToEntityRotation(block.getRotation());
+        Vec3d rotation = options.toEntityRotation(block.getRotation());
         
         //System.err.println(name);
-        BedrockEntityBone bone = new BedrockEntityBone(name, parentName, pivot, rotation);
-        bone.addCube(blockToCube(block, parent));
-        geometry.addBone(bone);
+        BedrockEntityBone bone = new BedrockEntityBone(name, pending.parentName, pivot, rotation);
+        Vec3d origin = cubeOrigin(block, pending.parentOrigin);
+        bone.addCube(blockToCube(block, origin));
+        int index = bones.add(bone, pending.parentBone);
         
-        for (CraftStudioBlock child : block.getChildren()) {
-            if (Rotations.isZeroRotation(child.getRotation()))
-                bone.addCube(blockToCube(child, block));
-            else
-                blockToBone(geometry, child, block);
+        // the descendants in pre-order, the next one being on top
+        Deque<PendingBlock> descendants = new ArrayDeque<>();
+        pushChildren(descendants, block, name, index, position, origin);
+        final int start = stack.size();
+        while (!descendants.isEmpty()) {
+            PendingBlock descendant = descendants.pop();
+            if (!options.isZeroRotation(descendant.block.getRotation())) {
+                stack.add(descendant);
+                continue;
+            }
+            CraftStudioBlock child = descendant.block;
+            Vec3d childOrigin = cubeOrigin(child, descendant.parentOrigin);
+            bone.addCube(blockToCube(child, childOrigin));
+            pushChildren(descendants, child, name, index, child.getPosition().plus(descendant.parentPosition),
+                childOrigin);
         }
+        Collections.reverse(stack.subList(start, stack.size()));
+    }
+    
+    private static void pushChildren(Deque<PendingBlock> descendants,
+                                     CraftStudioBlock block,
+                                     String bone,
+                                     int boneIndex,
+                                     Vec3d position,
+                                     Vec3d origin) {
+        List<CraftStudioBlock> children = block.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--)
+            descendants.push(new PendingBlock(children.get(i), bone, boneIndex, position, origin));
+    }
+    
+    /**
+     * Returns the center of the cube of a block in model space, which is its position and its offset from its pivot
+     * added to the same sum of all of its ancestors.
+     *
+     * @param block the block
+     * @param parentOrigin the center of the cube of the parent of the block or {@code null}
+     * @return the center of the cube
+     */
+    private static Vec3d cubeOrigin(@NotNull CraftStudioBlock block, @Nullable Vec3d parentOrigin) {
+        Vec3d origin = block.getPosition().plus(block.getOffsetFromPivot());
+        return parentOrigin == null? origin : origin.plus(parentOrigin);
     }
     
     private static BedrockEntityCube blockToCube(@NotNull CraftStudioBlock block,
-                                                 @Nullable CraftStudioBlock parent) {
+                                                 @NotNull Vec3d origin) {
         Vec3i size = block.getSize();
-        Vec3d position = block.getPosition().plus(block.getOffsetFromPivot());
-        if (parent != null)
-            position = position.plus(parent.getPosition().plus(parent.getOffsetFromPivot()));
-        position = new Vec3d(
-            //-(position.getX() - size.getX() / 2d) - size.getX(),
-            position.getX() - size.getX() / 2d,
-            position.getY() - size.getY() / 2d,
-            //position.getZ() - size.getZ() / 2d
-            -(position.getZ() - size.getZ() / 2d) - size.getZ()
+        Vec3d position = new Vec3d(
+            //-(origin.getX() - size.getX() / 2d) - size.getX(),
+            origin.getX() - size.getX() / 2d,
+            origin.getY() - size.getY() / 2d,
+            //origin.getZ() - size.getZ() / 2d
+            -(origin.getZ() - size.getZ() / 2d) - size.getZ()
         );
         
         return new BedrockEntityCube(
@@ -95,6 +320,239 @@ public final class CraftStudioToBedrockEntity {
         );
     }
     
+    /**
+     * Computes the position and the cube center of every block in range {@code from until to} in model space, which
+     * are the sums of the positions, and of the positions and offsets from the pivot, of the block and all of its
+     * ancestors.
+     *
+     * @param csModel the CraftStudio model
+     * @param from the index of the first top-level block
+     * @param to the end of the subtree of the last top-level block
+     * @param positions the positions, three per block starting at {@code from}
+     * @param origins the cube centers, three per block starting at {@code from}
+     */
+    private static void accumulatePositions(@NotNull CompactCraftStudioModel csModel,
+                                            int from,
+                                            int to,
+                                            double[] positions,
+                                            double[] origins) {
+        // parents precede their children, so the sums of the parent are already known
+        for (int block = from; block < to; block++) {
+            final int parent = csModel.getParent(block), i = 3 * (block - from), p = 3 * (parent - from);
+            for (int axis = 0; axis < 3; axis++) {
+                double position = csModel.getPosition(block, axis);
+                double origin = position + csModel.getOffsetFromPivot(block, axis);
+                positions[i + axis] = parent == -1? position : position + positions[p + axis];
+                origins[i + axis] = parent == -1? origin : origin + origins[p + axis];
+            }
+        }
+    }
+    
+    /**
+     * Converts a block of a {@link CompactCraftStudioModel} to a bone and adds it to the given geometry, together with
+     * the cubes of its descendants without rotation which are only separated from it by blocks without rotation. The
+     * bones of all other descendants are added by the caller, after all cubes of this bone, so that the cubes of each
+     * bone stay consecutive.
+     *
+     * @param geometry the entity geometry
+     * @param csModel the CraftStudio model
+     * @param block the index of the block to be converted
+     * @param from the index of the first block of the converted range
+     * @param parentBone the index of the parent bone or {@code -1}
+     * @param positions the positions of the blocks in model space
+     * @param origins the cube centers of the blocks in model space
+     * @param options the conversion options
+     * @param rotation a scratch array for the converted rotation
+     * @return the index of the bone
+     * @see #accumulatePositions(CompactCraftStudioModel, int, int, double[], double[])
+     */
+    private static int blockToBone(@NotNull CompactBedrockGeometry geometry,
+                                   @NotNull CompactCraftStudioModel csModel,
+                                   int block,
+                                   int from,
+                                   int parentBone,
+                                   double[] positions,
+                                   double[] origins,
+                                   @NotNull ConversionOptions options,
+                                   double[] rotation) {
+        final int i = 3 * (block - from);
+        options.toEntityRotation(
+            csModel.getRotation(block, 0),
+            csModel.getRotation(block, 1),
+            csModel.getRotation(block, 2),
+            rotation);
+        
+        int bone = geometry.addBone(csModel.getName(block), parentBone,
+            positions[i], positions[i + 1], -positions[i + 2],
+            rotation[0], rotation[1], rotation[2]);
+        blockToCube(geometry, csModel, block, origins, i);
+        
+        // descendants without rotation are visited, all other descendants are skipped with their subtrees
+        final int end = csModel.getEnd(block);
+        for (int child = block + 1; child < end; ) {
+            if (isZeroRotation(csModel, child, options)) {
+                blockToCube(geometry, csModel, child, origins, 3 * (child - from));
+                child++;
+            } else {
+                child = csModel.getEnd(child);
+            }
+        }
+        return bone;
+    }
+    
+    private static boolean isZeroRotation(CompactCraftStudioModel csModel, int block, ConversionOptions options) {
+        return options.isZeroRotation(
+            csModel.getRotation(block, 0),
+            csModel.getRotation(block, 1),
+            csModel.getRotation(block, 2));
+    }
+    
+    private static void blockToCube(@NotNull CompactBedrockGeometry geometry,
+                                    @NotNull CompactCraftStudioModel csModel,
+                                    int block,
+                                    double[] origins,
+                                    int i) {
+        final int
+            sizeX = csModel.getSize(block, 0),
+            sizeY = csModel.getSize(block, 1),
+            sizeZ = csModel.getSize(block, 2);
+        geometry.addCube(
+            origins[i] - sizeX / 2d,
+            origins[i + 1] - sizeY / 2d,
+            -(origins[i + 2] - sizeZ / 2d) - sizeZ,
+            sizeX, sizeY, sizeZ,
+            csModel.getTexOffset(block, 0), csModel.getTexOffset(block, 1));
+    }
+    
+    /**
+     * Bones in conversion order, together with the index of the bone of their parent.
+     */
+    private final static class BoneList {
+        
+        private final List<BedrockEntityBone> bones;
+        private int[] parents;
+        
+        BoneList(int capacity) {
+            this.bones = new ArrayList<>(Math.max(capacity, 1));
+            this.parents = new int[Math.max(capacity, 1)];
+        }
+        
+        int add(BedrockEntityBone bone, int parent) {
+            int index = bones.size();
+            if (index == parents.length)
+                parents = Arrays.copyOf(parents, index * 2);
+            parents[index] = parent;
+            bones.add(bone);
+            return index;
+        }
+        
+        /**
+         * Appends all bones of another list, shifting the indices of their parents accordingly.
+         *
+         * @param other the other list
+         * @return this list
+         */
+        BoneList addAll(BoneList other) {
+            int offset = bones.size(), size = offset + other.size();
+            if (size > parents.length)
+                parents = Arrays.copyOf(parents, Math.max(parents.length * 2, size));
+            for (int i = 0; i < other.size(); i++) {
+                int parent = other.parents[i];
+                parents[offset + i] = parent == -1? -1 : parent + offset;
+            }
+            bones.addAll(other.bones);
+            return this;
+        }
+        
+        BedrockEntityBone get(int index) {
+            return bones.get(index);
+        }
+        
+        int getParent(int index) {
+            return parents[index];
+        }
+        
+        int size() {
+            return bones.size();
+        }
+        
+    }
+    
+    /**
+     * A block which still has to be converted, together with the name and the index of the bone of its parent and the
+     * position and cube center of its parent in model space.
+     */
+    private final static class PendingBlock {
+        
+        final CraftStudioBlock block;
+        @Nullable
+        final String parentName;
+        final int parentBone;
+        @Nullable
+        final Vec3d parentPosition, parentOrigin;
+        
+        PendingBlock(CraftStudioBlock block,
+                     @Nullable String parentName,
+                     int parentBone,
+                     @Nullable Vec3d parentPosition,
+                     @Nullable Vec3d parentOrigin) {
+            this.block = block;
+            this.parentName = parentName;
+            this.parentBone = parentBone;
+            this.parentPosition = parentPosition;
+            this.parentOrigin = parentOrigin;
+        }
+        
+    }
+    
+    /**
+     * Converts a range of top-level blocks by recursively splitting it into two halves with about the same number of
+     * blocks, until a range consists of a single top-level block or of fewer blocks than the threshold. The results of
+     * both halves are concatenated in order, so the result equals the result of a sequential conversion.
+     *
+     * @param <R> the type of the converted bones
+     */
+    private final static class SubtreeTask<R> extends RecursiveTask<R> {
+        
+        interface RangeConverter<R> {
+            R convert(int from, int to);
+        }
+        
+        /** the offset of each top-level block in pre-order, followed by the total number of blocks */
+        private final int[] offsets;
+        private final int from, to, threshold;
+        private final RangeConverter<R> converter;
+        private final BinaryOperator<R> concatenation;
+        
+        SubtreeTask(int[] offsets, int from, int to, int threshold,
+                    RangeConverter<R> converter, BinaryOperator<R> concatenation) {
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.converter = converter;
+            this.concatenation = concatenation;
+        }
+        
+        @Override
+        protected R compute() {
+            if (to - from == 1 || offsets[to] - offsets[from] < threshold)
+                return converter.convert(from, to);
+            
+            // the first top-level block whose subtree reaches past the middle of the range
+            int middle = Arrays.binarySearch(offsets, from, to, (offsets[from] + offsets[to]) >>> 1);
+            if (middle < 0)
+                middle = -middle - 2;
+            middle = Math.max(from + 1, Math.min(to - 1, middle));
+            
+            SubtreeTask<R> left = new SubtreeTask<>(offsets, from, middle, threshold, converter, concatenation);
+            left.fork();
+            R right = new SubtreeTask<>(offsets, middle, to, threshold, converter, concatenation).compute();
+            return concatenation.apply(left.join(), right);
+        }
+        
+    }
+    
     /* @Nullable
     private static String prefixOf(String name) {
         int index = name.indexOf('.');
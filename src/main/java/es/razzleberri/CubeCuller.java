@@ -0,0 +1,234 @@
+package es.razzleberri;
+
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Removes cubes which can never be seen, because they are enclosed by other cubes of the same bone or because they
+ * have no area.
+ * <p>
+ *     The cubes of a bone are rasterized into an occupancy grid with a resolution of half a unit, which is the
+ *     resolution of the cubes created by the converter, stored in a {@link BitSet}. A cube is enclosed if every cell
+ *     next to each of its faces is occupied, which also applies to cubes without any thickness. Cubes whose origin is
+ *     not on the grid are neither rasterized nor enclosed, and bones whose cubes span more than {@link #MAX_CELLS}
+ *     cells are only checked for cubes without area.
+ * </p>
+ * <p>
+ *     Removing an enclosed cube only reveals its cavity, which is itself enclosed. Textures with transparent pixels
+ *     may however show what lies behind them, which is why culling is optional.
+ * </p>
+ */
+public final class CubeCuller {
+    
+    /**
+     * The number of faces of each cube, which are rendered even if some of them have no area.
+     */
+    public final static int FACES_PER_CUBE = 6;
+    
+    /**
+     * The maximum number of cells of the occupancy grid of a bone, which takes up 2 MiB.
+     */
+    public final static int MAX_CELLS = 1 << 24;
+    
+    private int culledCubes;
+    
+    /**
+     * Culls the cubes of every bone of a geometry.
+     *
+     * @param geometry the entity geometry
+     * @return the number of cubes which have been removed
+     */
+    public int cull(@NotNull BedrockEntityGeometry geometry) {
+        int removed = 0;
+        for (BedrockEntityBone bone : geometry) {
+            List<BedrockEntityCube> cubes = bone.getCubes();
+            Grid grid = new Grid(cubes.size());
+            for (BedrockEntityCube cube : cubes) {
+                Vec3d origin = cube.getOrigin();
+                Vec3i size = cube.getSize();
+                grid.add(origin.getX(), origin.getY(), origin.getZ(), size.getX(), size.getY(), size.getZ());
+            }
+            BitSet culled = grid.cull();
+            if (culled.isEmpty())
+                continue;
+            
+            List<BedrockEntityCube> result = new ArrayList<>(cubes.size() - culled.cardinality());
+            for (int i = 0; i < cubes.size(); i++)
+                if (!culled.get(i))
+                    result.add(cubes.get(i));
+            bone.setCubes(result);
+            removed += culled.cardinality();
+        }
+        culledCubes += removed;
+        return removed;
+    }
+    
+    /**
+     * Culls the cubes of every bone of a compact geometry.
+     *
+     * @param geometry the entity geometry
+     * @return the number of cubes which have been removed
+     */
+    public int cull(@NotNull CompactBedrockGeometry geometry) {
+        BitSet removedCubes = new BitSet(geometry.getCubeCount());
+        for (int bone = 0; bone < geometry.getBoneCount(); bone++) {
+            final int start = geometry.getCubeStart(bone), end = geometry.getCubeEnd(bone);
+            Grid grid = new Grid(end - start);
+            for (int cube = start; cube < end; cube++)
+                grid.add(
+                    geometry.getOrigin(cube, 0), geometry.getOrigin(cube, 1), geometry.getOrigin(cube, 2),
+                    geometry.getSize(cube, 0), geometry.getSize(cube, 1), geometry.getSize(cube, 2));
+            BitSet culled = grid.cull();
+            for (int i = culled.nextSetBit(0); i != -1; i = culled.nextSetBit(i + 1))
+                removedCubes.set(start + i);
+        }
+        geometry.removeCubes(removedCubes);
+        
+        final int removed = removedCubes.cardinality();
+        culledCubes += removed;
+        return removed;
+    }
+    
+    /**
+     * Returns the number of cubes which have been removed by this culler so far.
+     *
+     * @return the number of culled cubes
+     */
+    public int getCulledCubes() {
+        return culledCubes;
+    }
+    
+    /**
+     * Returns an estimate of the number of faces which no longer need to be rendered.
+     *
+     * @return the number of faces of all culled cubes
+     */
+    public long getCulledFaces() {
+        return (long) culledCubes * FACES_PER_CUBE;
+    }
+    
+    /**
+     * The cubes of a single bone in half units, with an occupancy grid covering all cubes on the grid.
+     */
+    private final static class Grid {
+        
+        /** the inclusive lower and exclusive upper corner of each cube, or {@link Integer#MIN_VALUE} if off-grid */
+        final int[] lower, upper;
+        /** the cubes which are culled */
+        final BitSet culled = new BitSet();
+        int size;
+        
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        int lengthY, lengthZ;
+        BitSet cells;
+        
+        Grid(int capacity) {
+            this.lower = new int[capacity * 3];
+            this.upper = new int[capacity * 3];
+        }
+        
+        void add(double x, double y, double z, int sizeX, int sizeY, int sizeZ) {
+            final int i = size++, i3 = i * 3;
+            // cubes which are only a line or a point have no area, wherever they are
+            if ((sizeX == 0? 1 : 0) + (sizeY == 0? 1 : 0) + (sizeZ == 0? 1 : 0) >= 2)
+                culled.set(i);
+            if (!isOnGrid(x) || !isOnGrid(y) || !isOnGrid(z) || sizeX < 0 || sizeY < 0 || sizeZ < 0) {
+                lower[i3] = Integer.MIN_VALUE;
+                return;
+            }
+            lower[i3] = (int) (x * 2);
+            lower[i3 + 1] = (int) (y * 2);
+            lower[i3 + 2] = (int) (z * 2);
+            upper[i3] = lower[i3] + sizeX * 2;
+            upper[i3 + 1] = lower[i3 + 1] + sizeY * 2;
+            upper[i3 + 2] = lower[i3 + 2] + sizeZ * 2;
+            
+            minX = Math.min(minX, lower[i3]);
+            minY = Math.min(minY, lower[i3 + 1]);
+            minZ = Math.min(minZ, lower[i3 + 2]);
+            maxX = Math.max(maxX, upper[i3]);
+            maxY = Math.max(maxY, upper[i3 + 1]);
+            maxZ = Math.max(maxZ, upper[i3 + 2]);
+        }
+        
+        private static boolean isOnGrid(double coordinate) {
+            final double half = coordinate * 2;
+            return half == Math.rint(half) && Math.abs(half) < 1 << 28;
+        }
+        
+        /**
+         * Returns the cubes which can not be seen.
+         *
+         * @return the indices of the culled cubes
+         */
+        BitSet cull() {
+            if (size - culled.cardinality() < 2 || minX > maxX)
+                return culled;
+            
+            // one cell of margin on every side, so that the cells next to every cube are inside the grid
+            final long lengthX = maxX - minX + 2L;
+            lengthY = maxY - minY + 2;
+            lengthZ = maxZ - minZ + 2;
+            if (lengthX * lengthY * lengthZ > MAX_CELLS)
+                return culled;
+            cells = new BitSet((int) (lengthX * lengthY * lengthZ));
+            for (int i = 0; i < size; i++)
+                if (lower[i * 3] != Integer.MIN_VALUE && hasVolume(i))
+                    fill(i);
+            
+            for (int i = 0; i < size; i++)
+                if (lower[i * 3] != Integer.MIN_VALUE && !culled.get(i) && isEnclosed(i))
+                    culled.set(i);
+            return culled;
+        }
+        
+        private boolean hasVolume(int cube) {
+            final int i3 = cube * 3;
+            return lower[i3] != upper[i3] && lower[i3 + 1] != upper[i3 + 1] && lower[i3 + 2] != upper[i3 + 2];
+        }
+        
+        private int indexOf(int x, int y, int z) {
+            return ((x - minX + 1) * lengthY + (y - minY + 1)) * lengthZ + (z - minZ + 1);
+        }
+        
+        private void fill(int cube) {
+            final int i3 = cube * 3;
+            for (int x = lower[i3]; x < upper[i3]; x++)
+                for (int y = lower[i3 + 1]; y < upper[i3 + 1]; y++)
+                    cells.set(indexOf(x, y, lower[i3 + 2]), indexOf(x, y, upper[i3 + 2]));
+        }
+        
+        /**
+         * Returns whether the cells next to every face of a cube are occupied. The cube is grown by one cell along
+         * each axis in turn, and every grown box must be occupied completely.
+         */
+        private boolean isEnclosed(int cube) {
+            final int i3 = cube * 3;
+            for (int axis = 0; axis < 3; axis++) {
+                int fromX = lower[i3], toX = upper[i3];
+                int fromY = lower[i3 + 1], toY = upper[i3 + 1];
+                int fromZ = lower[i3 + 2], toZ = upper[i3 + 2];
+                switch (axis) {
+                    case 0: fromX--; toX++; break;
+                    case 1: fromY--; toY++; break;
+                    default: fromZ--; toZ++; break;
+                }
+                if (fromZ == toZ)
+                    continue;
+                for (int x = fromX; x < toX; x++) {
+                    for (int y = fromY; y < toY; y++) {
+                        final int from = indexOf(x, y, fromZ);
+                        if (cells.nextClearBit(from) < from + (toZ - fromZ))
+                            return false;
+                    }
+                }
+            }
+            return true;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,246 @@
+package es.razzleberri;
+
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Merges adjacent cubes of the same bone into larger cubes, so that entities consist of fewer cubes.
+ * <p>
+ *     Two cubes are merged if they touch along one axis and have the same origin and size along both other axes, so
+ *     that together they form a box. Both cubes must also use the same UV offset, and the box UV layout of the merged
+ *     cube must still fit into the texture. Since the merged cube maps a larger region of the texture, merging only
+ *     preserves the appearance of textures which are uniform within that region, which is why merging is optional.
+ * </p>
+ * <p>
+ *     Cubes are merged greedily into rows along the x-axis, then rows into slabs along the y-axis and finally slabs
+ *     into boxes along the z-axis. For every axis, cubes are grouped by their cross-section in a hash map and each
+ *     group is sorted along the axis, so a bone with {@code n} cubes is merged in {@code O(n log n)}. Within a group,
+ *     every cube is appended to a cube which ends where it starts, which is looked up by a hash map as well.
+ * </p>
+ * <p>
+ *     A merged cube takes the place of the first of its cubes, so the order of the remaining cubes is kept.
+ * </p>
+ */
+public final class CubeMerger {
+    
+    private CubeMerger() {}
+    
+    /**
+     * Merges the cubes of every bone of a geometry.
+     *
+     * @param geometry the entity geometry
+     * @return the number of cubes which have been removed
+     */
+    public static int mergeCubes(@NotNull BedrockEntityGeometry geometry) {
+        final Vec2i textureSize = geometry.getTextureSize();
+        int removed = 0;
+        for (BedrockEntityBone bone : geometry) {
+            List<BedrockEntityCube> cubes = bone.getCubes();
+            if (cubes.size() < 2)
+                continue;
+            
+            Cubes work = new Cubes(cubes.size(), textureSize.getX(), textureSize.getY());
+            for (BedrockEntityCube cube : cubes)
+                work.add(cube.getOrigin(), cube.getSize(), cube.getUv());
+            int merged = work.merge();
+            if (merged == 0)
+                continue;
+            
+            List<BedrockEntityCube> result = new ArrayList<>(cubes.size() - merged);
+            for (int i = 0; i < work.size; i++) {
+                if (!work.alive[i])
+                    continue;
+                final int i3 = i * 3;
+                result.add(new BedrockEntityCube(
+                    new Vec3d(work.origins[i3], work.origins[i3 + 1], work.origins[i3 + 2]),
+                    new Vec3i(work.sizes[i3], work.sizes[i3 + 1], work.sizes[i3 + 2]),
+                    cubes.get(i).getUv()));
+            }
+            bone.setCubes(result);
+            removed += merged;
+        }
+        return removed;
+    }
+    
+    /**
+     * Merges the cubes of every bone of a compact geometry.
+     *
+     * @param geometry the entity geometry
+     * @return the number of cubes which have been removed
+     */
+    public static int mergeCubes(@NotNull CompactBedrockGeometry geometry) {
+        BitSet removedCubes = new BitSet(geometry.getCubeCount());
+        for (int bone = 0; bone < geometry.getBoneCount(); bone++) {
+            final int start = geometry.getCubeStart(bone), end = geometry.getCubeEnd(bone);
+            if (end - start < 2)
+                continue;
+            
+            Cubes work = new Cubes(end - start, geometry.getTextureWidth(), geometry.getTextureHeight());
+            for (int cube = start; cube < end; cube++)
+                work.add(
+                    geometry.getOrigin(cube, 0), geometry.getOrigin(cube, 1), geometry.getOrigin(cube, 2),
+                    geometry.getSize(cube, 0), geometry.getSize(cube, 1), geometry.getSize(cube, 2),
+                    geometry.getUv(cube, 0), geometry.getUv(cube, 1));
+            if (work.merge() == 0)
+                continue;
+            
+            for (int i = 0; i < work.size; i++) {
+                final int i3 = i * 3;
+                if (work.alive[i])
+                    geometry.setCube(start + i,
+                        work.origins[i3], work.origins[i3 + 1], work.origins[i3 + 2],
+                        work.sizes[i3], work.sizes[i3 + 1], work.sizes[i3 + 2]);
+                else
+                    removedCubes.set(start + i);
+            }
+        }
+        geometry.removeCubes(removedCubes);
+        return removedCubes.cardinality();
+    }
+    
+    /**
+     * The cubes of a single bone, stored as parallel arrays.
+     */
+    private final static class Cubes {
+        
+        final double[] origins;
+        final int[] sizes, uvs;
+        final boolean[] alive;
+        final int textureWidth, textureHeight;
+        int size;
+        
+        Cubes(int capacity, int textureWidth, int textureHeight) {
+            this.origins = new double[capacity * 3];
+            this.sizes = new int[capacity * 3];
+            this.uvs = new int[capacity * 2];
+            this.alive = new boolean[capacity];
+            this.textureWidth = textureWidth;
+            this.textureHeight = textureHeight;
+        }
+        
+        void add(Vec3d origin, Vec3i size, Vec2i uv) {
+            add(origin.getX(), origin.getY(), origin.getZ(),
+                size.getX(), size.getY(), size.getZ(),
+                uv.getX(), uv.getY());
+        }
+        
+        void add(double x, double y, double z, int sizeX, int sizeY, int sizeZ, int u, int v) {
+            final int i = size++, i3 = i * 3;
+            origins[i3] = x;
+            origins[i3 + 1] = y;
+            origins[i3 + 2] = z;
+            sizes[i3] = sizeX;
+            sizes[i3 + 1] = sizeY;
+            sizes[i3 + 2] = sizeZ;
+            uvs[i * 2] = u;
+            uvs[i * 2 + 1] = v;
+            alive[i] = true;
+        }
+        
+        /**
+         * Merges cubes along all three axes.
+         *
+         * @return the number of removed cubes
+         */
+        int merge() {
+            return mergeAlong(0) + mergeAlong(1) + mergeAlong(2);
+        }
+        
+        private int mergeAlong(final int axis) {
+            Map<CrossSection, List<Integer>> lines = new HashMap<>();
+            for (int i = 0; i < size; i++)
+                if (alive[i])
+                    lines.computeIfAbsent(new CrossSection(this, i, axis), key -> new ArrayList<>(2)).add(i);
+            
+            int removed = 0;
+            for (List<Integer> line : lines.values()) {
+                if (line.size() < 2)
+                    continue;
+                line.sort(Comparator.<Integer>comparingDouble(i -> origins[i * 3 + axis])
+                    .thenComparingInt(i -> i));
+                
+                // the cubes of the line by the coordinate where they end, so that a cube which starts there can be
+                // appended to them even if other cubes of the line overlap them
+                Map<Double, Integer> ends = new HashMap<>();
+                for (int next : line) {
+                    final int n = next * 3 + axis;
+                    Integer previous = ends.remove(origins[n] + 0.0);
+                    if (previous == null || !fitsTexture(previous, next, axis)) {
+                        ends.put(origins[n] + sizes[n] + 0.0, next);
+                        continue;
+                    }
+                    
+                    // the merged cube keeps the place of the earlier cube
+                    final int p = previous * 3 + axis;
+                    int first = Math.min(previous, next), second = Math.max(previous, next);
+                    origins[first * 3 + axis] = origins[p];
+                    sizes[first * 3 + axis] = sizes[p] + sizes[n];
+                    alive[second] = false;
+                    ends.put(origins[first * 3 + axis] + sizes[first * 3 + axis] + 0.0, first);
+                    removed++;
+                }
+            }
+            return removed;
+        }
+        
+        /**
+         * Returns whether the box UV layout of the merged cube of two cubes fits into the texture.
+         */
+        private boolean fitsTexture(int a, int b, int axis) {
+            int sizeX = sizes[a * 3], sizeY = sizes[a * 3 + 1], sizeZ = sizes[a * 3 + 2];
+            switch (axis) {
+                case 0: sizeX += sizes[b * 3]; break;
+                case 1: sizeY += sizes[b * 3 + 1]; break;
+                default: sizeZ += sizes[b * 3 + 2]; break;
+            }
+            return uvs[a * 2] + 2 * (sizeX + sizeZ) <= textureWidth
+                && uvs[a * 2 + 1] + sizeY + sizeZ <= textureHeight;
+        }
+        
+    }
+    
+    /**
+     * The position and size of a cube along the two axes other than the axis of merging, together with its UV offset.
+     * Cubes with equal cross-sections lie on the same line and can be merged if they touch.
+     */
+    private final static class CrossSection {
+        
+        private final double origin1, origin2;
+        private final int size1, size2, u, v;
+        
+        CrossSection(Cubes cubes, int cube, int axis) {
+            final int axis1 = (axis + 1) % 3, axis2 = (axis + 2) % 3;
+            // adding zero turns -0.0 into 0.0, so that equal origins have equal hash codes
+            this.origin1 = cubes.origins[cube * 3 + axis1] + 0.0;
+            this.origin2 = cubes.origins[cube * 3 + axis2] + 0.0;
+            this.size1 = cubes.sizes[cube * 3 + axis1];
+            this.size2 = cubes.sizes[cube * 3 + axis2];
+            this.u = cubes.uvs[cube * 2];
+            this.v = cubes.uvs[cube * 2 + 1];
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CrossSection))
+                return false;
+            CrossSection other = (CrossSection) obj;
+            return origin1 == other.origin1 && origin2 == other.origin2
+                && size1 == other.size1 && size2 == other.size2
+                && u == other.u && v == other.v;
+        }
+        
+        @Override
+        public int hashCode() {
+            int result = Double.hashCode(origin1);
+            result = 31 * result + Double.hashCode(origin2);
+            result = 31 * result + size1;
+            result = 31 * result + size2;
+            result = 31 * result + u;
+            return 31 * result + v;
+        }
+        
+    }
+    
+}
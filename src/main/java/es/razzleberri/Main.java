@@ -1,40 +1,133 @@
 package es.razzleberri;
 
-import es.razzleberri.io.BedrockEntitySerializer;
-import es.razzleberri.io.CraftStudioDeserializer;
-
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class Main {
     
+    private final static String CACHE_DIRECTORY = ".craftstudio2entity/cache";
+    private final static long CACHE_MAX_BYTES = 256L << 20;
+    private final static int DAEMON_PORT = Integer.getInteger("craftstudio2entity.port", ConversionDaemon.DEFAULT_PORT);
+    
     public static void main(String... args) throws IOException {
+        if (args.length >= 1 && args[0].equals("--daemon")) {
+            runDaemon(args.length > 1? Integer.parseInt(args[1]) : DAEMON_PORT);
+            return;
+        }
         if (args.length < 2)
-            exitWithError("Usage: java -jar <jar_path> <csjsmodel_path> <entity_path> [flags (r=replace)]");
-    
-        final File
-            csFile = new File(args[0]),
-            entityFile = new File(args[1]);
-    
+            exitWithError("Usage: java -jar <jar_path> <csjsmodel_path|directory|glob> <entity_path|directory> "
+                + "[flags (r=replace, w=watch, c=cache, d=daemon, p=parallel, j=join into one file, m=merge cubes"
+                + ", f=flatten bones, i=cull interior cubes, b=fixed visible bounds, u=pack uvs, x=compact output"
+                + ", q[decimals]=round pivots, rotations, origins and visible bounds offsets)]\n"
+                + "       java -jar <jar_path> --daemon [port]");
+        
         Set<Character> flags = new HashSet<>(4);
         if (args.length > 2)
             for (char c : args[2].toCharArray())
                 flags.add(c);
         
+        final boolean watch = flags.contains('w');
+        // watching keeps replacing the files it wrote itself
+        final boolean replace = watch || flags.contains('r');
+        
+        ConversionOptions options = null;
+        try {
+            options = ConversionOptions.fromFlags(args.length > 2? args[2] : "");
+        } catch (IllegalArgumentException ex) {
+            exitWithError("Invalid flags: " + ex.getMessage());
+        }
+        ConversionCache cache = flags.contains('c')
+            ? ConversionCache.open(Paths.get(System.getProperty("user.home"), CACHE_DIRECTORY), CACHE_MAX_BYTES)
+            : null;
+        ConversionClient client = null;
+        if (flags.contains('d')) {
+            client = new ConversionClient(DAEMON_PORT);
+            if (!client.isAvailable()) {
+                System.err.println("WARNING: No daemon is running on port " + DAEMON_PORT + ", converting locally");
+                client = null;
+            }
+        }
+        // the models of watch mode are still being edited, so they must not stay mapped
+        ModelConverter converter = new ModelConverter(options, replace, cache, client, !watch);
+        
+        if (BatchConverter.isBatchInput(args[0]) && flags.contains('j')) {
+            File entityFile = new File(args[1]);
+            if (watch)
+                exitWithError("Joined models can not be watched!");
+            if (entityFile.isDirectory())
+                exitWithError(entityFile + " must be a file!");
+            if (entityFile.exists() && !replace)
+                exitWithError(entityFile + " already exists!");
+            
+            BatchConverter batch = BatchConverter.joined(args[0], entityFile.toPath(), converter);
+            List<ConversionResult> results = null;
+            try {
+                results = batch.runJoined(System.err);
+            } catch (IOException ex) {
+                exitWithError(ex.getMessage());
+            }
+            if (results.stream().anyMatch(result -> !result.isSuccess()))
+                System.exit(1);
+            return;
+        }
+        
+        if (BatchConverter.isBatchInput(args[0])) {
+            File outputDir = new File(args[1]);
+            if (outputDir.isFile())
+                exitWithError(outputDir + " must be a directory!");
+            
+            BatchConverter batch = BatchConverter.of(args[0], outputDir.toPath(), converter);
+            List<ConversionResult> results = batch.run(System.err);
+            if (watch)
+                watch(ModelWatcher.forBatch(batch, converter));
+            if (results.stream().anyMatch(result -> !result.isSuccess()))
+                System.exit(1);
+            return;
+        }
+        
+        final File
+            csFile = new File(args[0]),
+            entityFile = new File(args[1]);
+        
         if (!csFile.isFile())
             exitWithError(csFile + " must be a file!");
-        if (entityFile.exists() && !flags.contains('r'))
+        if (entityFile.exists() && !replace)
             exitWithError(entityFile + " already exists!");
+        if (flags.contains('j'))
+            System.err.println("WARNING: Only batches can be joined, converting " + csFile + " on its own");
         
-        long time = System.currentTimeMillis();
-        CraftStudioModel csModel = new CraftStudioDeserializer().fromFile(csFile);
-        BedrockEntityModel entityModel = CraftStudioToBedrockEntity.convert(csModel);
-        new BedrockEntitySerializer().toFile(entityModel, entityFile);
-        time = System.currentTimeMillis() - time;
+        ConversionResult result = converter.convert(csFile.toPath(), entityFile.toPath());
+        if (watch) {
+            System.err.println(result);
+            watch(ModelWatcher.forFile(csFile.toPath(), entityFile.toPath(), converter));
+        }
+        if (!result.isSuccess())
+            exitWithError(result.getError());
         
-        System.err.println("Done! (" + time + " ms)");
+        System.err.println("Done! (" + result.getMillis() + " ms)");
+    }
+    
+    private static void runDaemon(int port) throws IOException {
+        int maxInFlight = Runtime.getRuntime().availableProcessors();
+        try (ConversionDaemon daemon = new ConversionDaemon(port, maxInFlight)) {
+            System.err.println("Daemon listening on port " + daemon.getPort() + ", press Ctrl+C to stop");
+            daemon.run();
+        }
+    }
+    
+    private static void watch(ModelWatcher watcher) throws IOException {
+        try {
+            System.err.println("Watching for changes, press Ctrl+C to stop");
+            watcher.watch(System.err);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watcher.close();
+        }
     }
     
     private static void exitWithError(String error) {
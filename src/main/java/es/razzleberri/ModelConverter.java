@@ -0,0 +1,227 @@
+package es.razzleberri;
+
+import es.razzleberri.io.AtomicFileOutputStream;
+import es.razzleberri.io.CompactCraftStudioDeserializer;
+import es.razzleberri.io.FileContent;
+import org.jetbrains.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * Runs the full conversion pipeline of a single file: deserialization, conversion and serialization.
+ * <p>
+ * Instances hold no per-file state and can be shared between threads.
+ */
+public class ModelConverter {
+    
+    @NotNull
+    private final ConversionOptions options;
+    private final boolean replace;
+    @Nullable
+    private final ConversionCache cache;
+    @Nullable
+    private final ConversionClient client;
+    private final boolean mapFiles;
+    /** whether the daemon has failed to serve a request, which is only reported once */
+    private volatile boolean clientUnavailable;
+    
+    /**
+     * @param options the options of every conversion
+     * @param replace whether existing entity files may be replaced
+     * @param cache the cache of converted files or {@code null} if every file should be converted
+     * @param client the client of a daemon performing the conversions or {@code null} to convert locally
+     */
+    public ModelConverter(@NotNull ConversionOptions options,
+                          boolean replace,
+                          @Nullable ConversionCache cache,
+                          @Nullable ConversionClient client) {
+        this(options, replace, cache, client, true);
+    }
+    
+    /**
+     * @param options the options of every conversion
+     * @param replace whether existing entity files may be replaced
+     * @param cache the cache of converted files or {@code null} if every file should be converted
+     * @param client the client of a daemon performing the conversions or {@code null} to convert locally
+     * @param mapFiles whether large model files may be memory-mapped, which should be disabled for models that are
+     *                 still being edited
+     * @see FileContent#read(Path, boolean)
+     */
+    public ModelConverter(@NotNull ConversionOptions options,
+                          boolean replace,
+                          @Nullable ConversionCache cache,
+                          @Nullable ConversionClient client,
+                          boolean mapFiles) {
+        this.options = options;
+        this.replace = replace;
+        this.cache = cache;
+        this.client = client;
+        this.mapFiles = mapFiles;
+    }
+    
+    /**
+     * @param options the options of every conversion
+     * @param replace whether existing entity files may be replaced
+     */
+    public ModelConverter(@NotNull ConversionOptions options, boolean replace) {
+        this(options, replace, null, null);
+    }
+    
+    @NotNull
+    public ConversionOptions getOptions() {
+        return options;
+    }
+    
+    @Nullable
+    public ConversionCache getCache() {
+        return cache;
+    }
+    
+    /**
+     * Converts a CraftStudio model file into an entity file.
+     * <p>
+     * The model is converted by the {@link ConversionClient daemon} if there is one, or else by
+     * {@link #convert(byte[])}. The entity file is only written if its content changes. If a
+     * {@link ConversionCache cache} is used and contains the result for the content of the model file, the cached
+     * result is copied instead.
+     * <p>
+     * Failures are not thrown but reported through the returned result, so that one broken model does not abort a
+     * whole batch.
+     *
+     * @param csFile the CraftStudio model file
+     * @param entityFile the entity file to write
+     * @return the result of the conversion
+     */
+    @NotNull
+    public ConversionResult convert(@NotNull Path csFile, @NotNull Path entityFile) {
+        long time = System.nanoTime();
+        try {
+            if (!replace && Files.exists(entityFile))
+                return ConversionResult.failure(csFile, entityFile, 0, entityFile + " already exists!");
+            
+            Path parent = entityFile.toAbsolutePath().getParent();
+            if (parent != null)
+                Files.createDirectories(parent);
+            
+            ByteBuffer content = FileContent.read(csFile, mapFiles);
+            String key = null;
+            if (cache != null) {
+                key = ConversionCache.keyOf(content, options);
+                if (cache.matches(key, entityFile)) {
+                    cache.touch(key);
+                    return ConversionResult.cached(csFile, entityFile, System.nanoTime() - time, false);
+                }
+                if (cache.copyTo(key, entityFile))
+                    return ConversionResult.cached(csFile, entityFile, System.nanoTime() - time, true);
+            }
+            
+            ConversionOutput output = client == null? convert(content) : convertWithClient(content);
+            boolean written = writeIfChanged(entityFile, output.getContent());
+            if (cache != null)
+                cache.put(key, output.getContent());
+            
+            return ConversionResult.success(csFile, entityFile, System.nanoTime() - time, output, written);
+        } catch (IOException | RuntimeException ex) {
+            String message = ex.getMessage() == null? ex.toString() : ex.getMessage();
+            return ConversionResult.failure(csFile, entityFile, System.nanoTime() - time, message);
+        }
+    }
+    
+    /**
+     * Converts the content of a CraftStudio model file using the daemon, or locally if the daemon can not serve the
+     * request. The first time this happens, a warning is printed.
+     */
+    @NotNull
+    private ConversionOutput convertWithClient(@NotNull ByteBuffer content) throws IOException {
+        try {
+            return client.convert(content, options);
+        } catch (ConversionClient.UnavailableException ex) {
+            if (!clientUnavailable) {
+                clientUnavailable = true;
+                System.err.println("WARNING: " + ex.getMessage() + ", converting locally");
+            }
+            return convert(content);
+        }
+    }
+    
+    /**
+     * Converts the content of a CraftStudio model file into the content of an entity file.
+     *
+     * @param content the content of the model file
+     * @return the output of the conversion
+     * @throws IOException if the model can not be deserialized
+     * @see #convert(ByteBuffer)
+     */
+    @NotNull
+    public ConversionOutput convert(byte[] content) throws IOException {
+        return convert(ByteBuffer.wrap(content));
+    }
+    
+    /**
+     * Converts the content of a CraftStudio model file into the content of an entity file.
+     *
+     * @param content the content of the model file, which may be a memory-mapped file
+     * @return the output of the conversion
+     * @throws IOException if the model can not be deserialized
+     * @see #convertGeometry(ByteBuffer)
+     */
+    @NotNull
+    public ConversionOutput convert(ByteBuffer content) throws IOException {
+        ConvertedGeometry converted = convertGeometry(content);
+        return converted.toOutput(options.newSerializer().toBytes(converted.getGeometry()));
+    }
+    
+    /**
+     * Converts the content of a CraftStudio model file into a geometry without serializing it, so that several
+     * geometries can be {@link BatchConverter#runJoined(java.io.PrintStream) joined} into one entity file.
+     * <p>
+     * The model is read into its {@link CompactCraftStudioModel compact form} and converted from there, so neither the
+     * model nor the conversion creates objects per block, apart from the names of the blocks and the strings which
+     * the JSON parser creates for decimal numbers.
+     * If the options ask for it, bones are {@link BoneFlattener flattened}, hidden cubes are {@link CubeCuller culled}
+     * and cubes are {@link CubeMerger merged} afterwards, and then their UV layouts are {@link UvPacker packed}.
+     *
+     * @param content the content of the model file, which may be a memory-mapped file
+     * @return the converted geometry
+     * @throws IOException if the model can not be deserialized
+     */
+    @NotNull
+    public ConvertedGeometry convertGeometry(ByteBuffer content) throws IOException {
+        CompactCraftStudioModel csModel = new CompactCraftStudioDeserializer().fromByteBuffer(content);
+        CompactBedrockGeometry geometry = CraftStudioToBedrockEntity.convert(csModel, options);
+        if (options.isFlattenBones())
+            BoneFlattener.flattenBones(geometry);
+        int culledCubes = options.isCullCubes()? new CubeCuller().cull(geometry) : 0;
+        int mergedCubes = options.isMergeCubes()? CubeMerger.mergeCubes(geometry) : 0;
+        if (options.isPackUvs() && !UvPacker.pack(geometry))
+            System.err.println("WARNING: the UV layouts of " + geometry.getName() + " don't fit into a texture of "
+                + UvPacker.MAX_TEXTURE_SIZE + "x" + UvPacker.MAX_TEXTURE_SIZE + " pixels and are left as they are");
+        return new ConvertedGeometry(geometry, csModel.size(), mergedCubes, culledCubes);
+    }
+    
+    /**
+     * Writes bytes into a file unless the file already contains exactly these bytes, so that tools watching the file
+     * are not notified of a change which did not happen. The file is replaced atomically, so tools reading it never
+     * see a partially written file.
+     *
+     * @param file the file
+     * @param bytes the new content of the file
+     * @return whether the file was written
+     * @throws IOException if an I/O error occurs
+     */
+    static boolean writeIfChanged(Path file, byte[] bytes) throws IOException {
+        if (Files.isRegularFile(file)
+            && Files.size(file) == bytes.length
+            && Arrays.equals(Files.readAllBytes(file), bytes))
+            return false;
+        try (AtomicFileOutputStream stream = new AtomicFileOutputStream(file)) {
+            stream.write(bytes);
+            stream.commit();
+        }
+        return true;
+    }
+    
+}
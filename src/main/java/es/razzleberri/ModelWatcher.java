@@ -0,0 +1,181 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.*;
+import java.util.stream.*;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches CraftStudio model files and reconverts every model which changes, until the watching thread is
+ * interrupted.
+ * <p>
+ *     Editors often produce several events for one save, for instance by truncating and then writing a file, so events
+ *     are collected until no further event arrives within a short quiet period. Every changed model is then converted
+ *     once, in path order.
+ * </p>
+ * <p>
+ *     Only events from the watched directories are processed, so the delay between saving and reconverting depends on
+ *     the platform's {@link WatchService} and is much lower on systems with native file notifications.
+ * </p>
+ */
+public class ModelWatcher implements Closeable {
+    
+    private final static long QUIET_MILLIS = 20;
+    
+    @NotNull
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final boolean recursive;
+    @NotNull
+    private final Predicate<Path> isInput;
+    @NotNull
+    private final Function<Path, Path> outputOf;
+    @NotNull
+    private final ModelConverter converter;
+    
+    private ModelWatcher(@NotNull Path directory,
+                         boolean recursive,
+                         @NotNull Predicate<Path> isInput,
+                         @NotNull Function<Path, Path> outputOf,
+                         @NotNull ModelConverter converter) throws IOException {
+        this.watchService = directory.getFileSystem().newWatchService();
+        this.recursive = recursive;
+        this.isInput = isInput;
+        this.outputOf = outputOf;
+        this.converter = converter;
+        try {
+            register(directory);
+        } catch (IOException ex) {
+            watchService.close();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Creates a watcher for a single model file.
+     *
+     * @param csFile the CraftStudio model file
+     * @param entityFile the entity file to write
+     * @param converter the converter
+     * @return a new watcher
+     * @throws IOException if the directory of the model can not be watched
+     */
+    @NotNull
+    public static ModelWatcher forFile(@NotNull Path csFile,
+                                       @NotNull Path entityFile,
+                                       @NotNull ModelConverter converter) throws IOException {
+        Path absolute = csFile.toAbsolutePath().normalize();
+        Path directory = absolute.getParent();
+        return new ModelWatcher(directory, false,
+            path -> path.equals(absolute),
+            path -> entityFile,
+            converter);
+    }
+    
+    /**
+     * Creates a watcher for all inputs of a batch, including inputs which are created later on.
+     *
+     * @param batch the batch
+     * @param converter the converter
+     * @return a new watcher
+     * @throws IOException if the input directory can not be watched
+     * @throws IllegalArgumentException if the batch is {@link BatchConverter#isJoined() joined}
+     */
+    @NotNull
+    public static ModelWatcher forBatch(@NotNull BatchConverter batch,
+                                        @NotNull ModelConverter converter) throws IOException {
+        if (batch.isJoined())
+            throw new IllegalArgumentException("joined batches can not be watched");
+        return new ModelWatcher(batch.getInputRoot(), true, batch::isInput, batch::getOutputOf, converter);
+    }
+    
+    private void register(Path directory) throws IOException {
+        if (!recursive) {
+            directories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), directory);
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    /**
+     * Watches for changes and converts every changed model, printing one line per conversion.
+     * <p>
+     * This method only returns if the watched directory becomes inaccessible or if this watcher is closed.
+     *
+     * @param out the stream to print the results to
+     * @throws IOException if a newly created directory can not be watched
+     * @throws InterruptedException if the thread is interrupted while waiting for changes
+     */
+    public void watch(@NotNull PrintStream out) throws IOException, InterruptedException {
+        while (!directories.isEmpty()) {
+            Set<Path> changed = new TreeSet<>();
+            try {
+                WatchKey key = watchService.take();
+                do {
+                    collect(key, changed);
+                } while ((key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS)) != null);
+            } catch (ClosedWatchServiceException ex) {
+                // closed while waiting for changes or during the quiet period
+                return;
+            }
+            
+            for (Path input : changed)
+                if (Files.isRegularFile(input))
+                    out.println(converter.convert(input, outputOf.apply(input)));
+        }
+    }
+    
+    /**
+     * Collects the changed inputs of a signalled key and resets the key.
+     *
+     * @param key the key
+     * @param changed the set of changed inputs
+     * @throws IOException if a newly created directory can not be watched
+     */
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = directories.get(key);
+        
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // events were lost, so every input of the directory might have changed
+                addInputs(directory, changed);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (recursive && event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                register(path);
+                addInputs(path, changed);
+            } else if (isInput.test(path)) {
+                changed.add(path);
+            }
+        }
+        
+        if (!key.reset())
+            directories.remove(key);
+    }
+    
+    private void addInputs(Path directory, Set<Path> changed) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory, recursive? Integer.MAX_VALUE : 1)) {
+            changed.addAll(stream.filter(isInput).collect(Collectors.toList()));
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+    
+}
@@ -0,0 +1,241 @@
+package es.razzleberri;
+
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Packs the box UV layouts of all cubes of a geometry into the smallest texture whose width and height are powers of
+ * two, and rewrites the UV offsets of the cubes and the texture size of the geometry accordingly.
+ * <p>
+ *     The box UV layout of a cube with size {@code (x, y, z)} takes up {@code 2 * (x + z)} by {@code z + y} pixels.
+ *     Cubes with the same size and UV offset share their layout, so they keep sharing it after packing. Layouts are
+ *     placed from the tallest to the shortest with a bottom-left skyline packer, and texture sizes are tried from the
+ *     smallest area upwards, preferring square textures among textures of the same area.
+ * </p>
+ * <p>
+ *     The packed layout does not match the original texture anymore, so the texture has to be painted for it, which
+ *     is why packing is optional.
+ * </p>
+ */
+public final class UvPacker {
+    
+    /**
+     * The maximum width and height of packed textures.
+     */
+    public final static int MAX_TEXTURE_SIZE = 4096;
+    
+    private UvPacker() {}
+    
+    /**
+     * Packs the UV layouts of all cubes of a geometry.
+     *
+     * @param geometry the entity geometry
+     * @return whether the layouts fit into a texture of at most {@link #MAX_TEXTURE_SIZE} pixels, otherwise the
+     *         geometry is not modified
+     */
+    public static boolean pack(@NotNull BedrockEntityGeometry geometry) {
+        Layouts layouts = new Layouts();
+        for (BedrockEntityBone bone : geometry)
+            for (BedrockEntityCube cube : bone)
+                layouts.add(cube.getSize().getX(), cube.getSize().getY(), cube.getSize().getZ(),
+                    cube.getUv().getX(), cube.getUv().getY());
+        if (!layouts.pack())
+            return false;
+        
+        int cube = 0;
+        for (BedrockEntityBone bone : geometry) {
+            List<BedrockEntityCube> cubes = new ArrayList<>(bone.size());
+            for (BedrockEntityCube original : bone)
+                cubes.add(new BedrockEntityCube(original.getOrigin(), original.getSize(),
+                    new Vec2i(layouts.getU(cube), layouts.getV(cube++))));
+            bone.setCubes(cubes);
+        }
+        geometry.setTextureSize(new Vec2i(layouts.textureWidth, layouts.textureHeight));
+        return true;
+    }
+    
+    /**
+     * Packs the UV layouts of all cubes of a compact geometry.
+     *
+     * @param geometry the entity geometry
+     * @return whether the layouts fit into a texture of at most {@link #MAX_TEXTURE_SIZE} pixels, otherwise the
+     *         geometry is not modified
+     */
+    public static boolean pack(@NotNull CompactBedrockGeometry geometry) {
+        Layouts layouts = new Layouts();
+        for (int cube = 0; cube < geometry.getCubeCount(); cube++)
+            layouts.add(geometry.getSize(cube, 0), geometry.getSize(cube, 1), geometry.getSize(cube, 2),
+                geometry.getUv(cube, 0), geometry.getUv(cube, 1));
+        if (!layouts.pack())
+            return false;
+        
+        for (int cube = 0; cube < geometry.getCubeCount(); cube++)
+            geometry.setUv(cube, layouts.getU(cube), layouts.getV(cube));
+        geometry.setTextureSize(layouts.textureWidth, layouts.textureHeight);
+        return true;
+    }
+    
+    /**
+     * The distinct box UV layouts of all cubes, together with the layout of every cube.
+     */
+    private final static class Layouts {
+        
+        /** the index of the layout of each cube, in the order in which the cubes were added */
+        private int[] cubeLayouts = new int[16];
+        private int cubes;
+        /** the width, height, packed u and packed v of every distinct layout */
+        private final List<int[]> layouts = new ArrayList<>();
+        private final Map<List<Integer>, Integer> indices = new HashMap<>();
+        
+        int textureWidth, textureHeight;
+        
+        void add(int sizeX, int sizeY, int sizeZ, int u, int v) {
+            Integer layout = indices.get(Arrays.asList(sizeX, sizeY, sizeZ, u, v));
+            if (layout == null) {
+                layout = layouts.size();
+                layouts.add(new int[] {2 * (sizeX + sizeZ), sizeZ + sizeY, 0, 0});
+                indices.put(Arrays.asList(sizeX, sizeY, sizeZ, u, v), layout);
+            }
+            if (cubes == cubeLayouts.length)
+                cubeLayouts = Arrays.copyOf(cubeLayouts, cubes * 2);
+            cubeLayouts[cubes++] = layout;
+        }
+        
+        int getU(int cube) {
+            return layouts.get(cubeLayouts[cube])[2];
+        }
+        
+        int getV(int cube) {
+            return layouts.get(cubeLayouts[cube])[3];
+        }
+        
+        /**
+         * Packs all layouts into the smallest texture they fit into.
+         *
+         * @return whether a texture was found
+         */
+        boolean pack() {
+            long area = 0;
+            int maxWidth = 1, maxHeight = 1;
+            for (int[] layout : layouts) {
+                area += (long) layout[0] * layout[1];
+                maxWidth = Math.max(maxWidth, layout[0]);
+                maxHeight = Math.max(maxHeight, layout[1]);
+            }
+            
+            // tallest first, ties broken by width and then by first appearance, so packing is deterministic
+            Integer[] order = new Integer[layouts.size()];
+            for (int i = 0; i < order.length; i++)
+                order[i] = i;
+            Arrays.sort(order, Comparator.<Integer>comparingInt(i -> -layouts.get(i)[1])
+                .thenComparingInt(i -> -layouts.get(i)[0])
+                .thenComparingInt(i -> i));
+            
+            final int maxExponent = 2 * Integer.numberOfTrailingZeros(MAX_TEXTURE_SIZE);
+            for (int exponent = 0; exponent <= maxExponent; exponent++) {
+                if (1L << exponent < area)
+                    continue;
+                // the width and height of this area from square to wide, then to tall
+                for (int[] size : sizesOfArea(exponent)) {
+                    final int width = size[0], height = size[1];
+                    if (width < maxWidth || height < maxHeight || width > MAX_TEXTURE_SIZE || height > MAX_TEXTURE_SIZE)
+                        continue;
+                    if (packInto(order, width, height)) {
+                        textureWidth = width;
+                        textureHeight = height;
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        
+        private static List<int[]> sizesOfArea(int exponent) {
+            List<int[]> result = new ArrayList<>();
+            final int square = exponent / 2;
+            for (int widthExponent = exponent - square; widthExponent <= exponent; widthExponent++)
+                result.add(new int[] {1 << widthExponent, 1 << (exponent - widthExponent)});
+            for (int widthExponent = exponent - square - 1; widthExponent >= 0; widthExponent--)
+                result.add(new int[] {1 << widthExponent, 1 << (exponent - widthExponent)});
+            return result;
+        }
+        
+        /**
+         * Places all layouts with a bottom-left skyline packer. The skyline is a list of segments, each of which
+         * consists of its start, its width and the height up to which it is occupied.
+         */
+        private boolean packInto(Integer[] order, int width, int height) {
+            List<int[]> skyline = new ArrayList<>();
+            skyline.add(new int[] {0, width, 0});
+            for (int layout : order) {
+                final int[] rectangle = layouts.get(layout);
+                final int w = rectangle[0], h = rectangle[1];
+                if (w == 0 || h == 0) {
+                    rectangle[2] = rectangle[3] = 0;
+                    continue;
+                }
+                
+                int bestSegment = -1, bestX = 0, bestY = Integer.MAX_VALUE;
+                for (int segment = 0; segment < skyline.size(); segment++) {
+                    final int x = skyline.get(segment)[0];
+                    if (x + w > width)
+                        break;
+                    // the rectangle rests on the highest segment below it
+                    int y = 0;
+                    for (int i = segment, covered = x; covered < x + w; i++) {
+                        y = Math.max(y, skyline.get(i)[2]);
+                        covered += skyline.get(i)[1];
+                    }
+                    if (y + h <= height && y < bestY) {
+                        bestSegment = segment;
+                        bestX = x;
+                        bestY = y;
+                    }
+                }
+                if (bestSegment == -1)
+                    return false;
+                
+                rectangle[2] = bestX;
+                rectangle[3] = bestY;
+                place(skyline, bestSegment, bestX, w, bestY + h);
+            }
+            return true;
+        }
+        
+        /**
+         * Raises the skyline to the given height from {@code x} until {@code x + w}, starting at the given segment.
+         */
+        private static void place(List<int[]> skyline, int segment, int x, int w, int top) {
+            // remove or shorten the segments below the rectangle
+            int end = x + w;
+            while (segment < skyline.size() && skyline.get(segment)[0] < end) {
+                int[] current = skyline.get(segment);
+                int currentEnd = current[0] + current[1];
+                if (currentEnd <= end) {
+                    skyline.remove(segment);
+                } else {
+                    current[1] = currentEnd - end;
+                    current[0] = end;
+                    break;
+                }
+            }
+            skyline.add(segment, new int[] {x, w, top});
+            
+            // merge neighbors of the same height
+            for (int i = Math.max(segment - 1, 0); i + 1 < skyline.size() && i <= segment; ) {
+                int[] left = skyline.get(i), right = skyline.get(i + 1);
+                if (left[2] == right[2]) {
+                    left[1] += right[1];
+                    skyline.remove(i + 1);
+                    segment--;
+                } else {
+                    i++;
+                }
+            }
+        }
+        
+    }
+    
+}
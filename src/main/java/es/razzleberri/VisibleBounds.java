@@ -0,0 +1,260 @@
+package es.razzleberri;
+
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the visible bounds of entity geometries from the extents of their cubes, so that entities are neither
+ * culled while parts of them are still on screen nor tested against needlessly large boxes.
+ * <p>
+ *     The cubes of every bone are bounded by an axis-aligned box, which also contains the bounds of all child bones.
+ *     A bone with rotation may turn its content in any direction about its pivot, so its bounds are widened to the
+ *     box around the sphere which contains the content at any rotation. This keeps the bounds conservative without
+ *     depending on the order in which the angles are applied. Bones without rotation keep their bounds as they are.
+ * </p>
+ * <p>
+ *     The visible bounds are centered on the vertical axis of the entity like the bounds of vanilla entities, so the
+ *     width covers the greatest horizontal distance from that axis. Width and height are rounded up to whole blocks.
+ *     Geometries without cubes keep their bounds.
+ * </p>
+ */
+public final class VisibleBounds {
+    
+    /** the number of model units per block, which is the unit of visible bounds */
+    private final static double UNITS_PER_BLOCK = 16;
+    
+    private VisibleBounds() {}
+    
+    /**
+     * Computes and sets the visible bounds of a geometry.
+     *
+     * @param geometry the entity geometry
+     * @param parallelThreshold the minimum number of cubes for computing the bounds of the bones in parallel, or
+     *                          {@code 0} if they should always be computed sequentially
+     * @return whether the geometry contains any cubes and its bounds have been set
+     */
+    public static boolean compute(@NotNull BedrockEntityGeometry geometry, int parallelThreshold) {
+        final List<BedrockEntityBone> bones = new ArrayList<>(geometry.getBones());
+        final int count = bones.size();
+        Map<String, Integer> indices = new HashMap<>(count * 2);
+        for (int bone = 0; bone < count; bone++)
+            indices.put(bones.get(bone).getName(), bone);
+        
+        Bounds bounds = new Bounds(count);
+        int cubes = 0;
+        for (int bone = 0; bone < count; bone++) {
+            BedrockEntityBone b = bones.get(bone);
+            Integer parent = b.getParent() == null? null : indices.get(b.getParent());
+            Vec3d pivot = b.getPivot(), rotation = b.getRotation();
+            bounds.setBone(bone, parent == null? -1 : parent,
+                pivot == null? 0 : pivot.getX(), pivot == null? 0 : pivot.getY(), pivot == null? 0 : pivot.getZ(),
+                rotation == null || Rotations.isIdentity(rotation.getX(), rotation.getY(), rotation.getZ()));
+            cubes += b.size();
+        }
+        
+        bounds.boundCubes(cubes, parallelThreshold, bone -> {
+            for (BedrockEntityCube cube : bones.get(bone)) {
+                Vec3d origin = cube.getOrigin();
+                Vec3i size = cube.getSize();
+                bounds.include(bone,
+                    origin.getX(), origin.getY(), origin.getZ(),
+                    origin.getX() + size.getX(), origin.getY() + size.getY(), origin.getZ() + size.getZ());
+            }
+        });
+        if (!bounds.reduce())
+            return false;
+        geometry.setVisibleBounds(
+            new Vec2i(bounds.getWidth(), bounds.getHeight()),
+            new Vec3d(0, bounds.getOffsetY(), 0));
+        return true;
+    }
+    
+    /**
+     * Computes and sets the visible bounds of a compact geometry.
+     *
+     * @param geometry the entity geometry
+     * @param parallelThreshold the minimum number of cubes for computing the bounds of the bones in parallel, or
+     *                          {@code 0} if they should always be computed sequentially
+     * @return whether the geometry contains any cubes and its bounds have been set
+     */
+    public static boolean compute(@NotNull CompactBedrockGeometry geometry, int parallelThreshold) {
+        final int count = geometry.getBoneCount();
+        Bounds bounds = new Bounds(count);
+        for (int bone = 0; bone < count; bone++)
+            bounds.setBone(bone, geometry.getBoneParent(bone),
+                geometry.getPivot(bone, 0), geometry.getPivot(bone, 1), geometry.getPivot(bone, 2),
+                Rotations.isIdentity(
+                    geometry.getRotation(bone, 0), geometry.getRotation(bone, 1), geometry.getRotation(bone, 2)));
+        
+        bounds.boundCubes(geometry.getCubeCount(), parallelThreshold, bone -> {
+            for (int cube = geometry.getCubeStart(bone); cube < geometry.getCubeEnd(bone); cube++) {
+                final double x = geometry.getOrigin(cube, 0), y = geometry.getOrigin(cube, 1),
+                    z = geometry.getOrigin(cube, 2);
+                bounds.include(bone, x, y, z,
+                    x + geometry.getSize(cube, 0), y + geometry.getSize(cube, 1), z + geometry.getSize(cube, 2));
+            }
+        });
+        if (!bounds.reduce())
+            return false;
+        geometry.setVisibleBounds(bounds.getWidth(), bounds.getHeight(), 0, bounds.getOffsetY(), 0);
+        return true;
+    }
+    
+    /**
+     * The bounds of all bones, stored as parallel arrays of the minimum and maximum corner of each bone.
+     */
+    private final static class Bounds {
+        
+        final int[] parents;
+        final double[] pivots, min, max;
+        final boolean[] identities;
+        
+        double minX, minY, minZ, maxX, maxY, maxZ;
+        
+        Bounds(int bones) {
+            this.parents = new int[bones];
+            this.pivots = new double[bones * 3];
+            this.identities = new boolean[bones];
+            this.min = new double[bones * 3];
+            this.max = new double[bones * 3];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+        
+        void setBone(int bone, int parent, double pivotX, double pivotY, double pivotZ, boolean identity) {
+            parents[bone] = parent;
+            pivots[bone * 3] = pivotX;
+            pivots[bone * 3 + 1] = pivotY;
+            pivots[bone * 3 + 2] = pivotZ;
+            identities[bone] = identity;
+        }
+        
+        /**
+         * Bounds the cubes of every bone, in parallel if there are enough cubes. Every bone only writes its own
+         * bounds, so the bones need no synchronization.
+         */
+        void boundCubes(int cubes, int parallelThreshold, IntConsumer boundBone) {
+            IntStream bones = IntStream.range(0, parents.length);
+            if (parallelThreshold > 0 && cubes >= parallelThreshold)
+                bones = bones.parallel();
+            bones.forEach(boundBone);
+        }
+        
+        void include(int bone, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+            final int i3 = bone * 3;
+            min[i3] = Math.min(min[i3], minX);
+            min[i3 + 1] = Math.min(min[i3 + 1], minY);
+            min[i3 + 2] = Math.min(min[i3 + 2], minZ);
+            max[i3] = Math.max(max[i3], maxX);
+            max[i3 + 1] = Math.max(max[i3 + 1], maxY);
+            max[i3 + 2] = Math.max(max[i3 + 2], maxZ);
+        }
+        
+        /**
+         * Merges the bounds of every bone into the bounds of its parent, children first, and then the bounds of all
+         * bones without parent into the bounds of the geometry.
+         *
+         * @return whether the geometry has any bounds
+         */
+        boolean reduce() {
+            minX = minY = minZ = Double.POSITIVE_INFINITY;
+            maxX = maxY = maxZ = Double.NEGATIVE_INFINITY;
+            for (int bone : childrenFirst()) {
+                final int i3 = bone * 3;
+                if (min[i3] > max[i3])
+                    continue;
+                if (!identities[bone])
+                    widenToSphere(bone);
+                final int parent = parents[bone];
+                if (parent != -1) {
+                    include(parent, min[i3], min[i3 + 1], min[i3 + 2], max[i3], max[i3 + 1], max[i3 + 2]);
+                } else {
+                    minX = Math.min(minX, min[i3]);
+                    minY = Math.min(minY, min[i3 + 1]);
+                    minZ = Math.min(minZ, min[i3 + 2]);
+                    maxX = Math.max(maxX, max[i3]);
+                    maxY = Math.max(maxY, max[i3 + 1]);
+                    maxZ = Math.max(maxZ, max[i3 + 2]);
+                }
+            }
+            return minX <= maxX;
+        }
+        
+        /**
+         * Widens the bounds of a bone to the box around the sphere about its pivot through the farthest corner.
+         */
+        private void widenToSphere(int bone) {
+            final int i3 = bone * 3;
+            double squared = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                final double pivot = pivots[i3 + axis];
+                final double distance = Math.max(Math.abs(min[i3 + axis] - pivot), Math.abs(max[i3 + axis] - pivot));
+                squared += distance * distance;
+            }
+            final double radius = Math.sqrt(squared);
+            for (int axis = 0; axis < 3; axis++) {
+                min[i3 + axis] = pivots[i3 + axis] - radius;
+                max[i3 + axis] = pivots[i3 + axis] + radius;
+            }
+        }
+        
+        /**
+         * Orders the bones by decreasing depth, so that every bone comes before its parent.
+         */
+        private int[] childrenFirst() {
+            final int count = parents.length;
+            int[] depths = new int[count];
+            Arrays.fill(depths, -1);
+            int maxDepth = 0;
+            for (int bone = 0; bone < count; bone++) {
+                // walk up to the first bone with a known depth
+                int ancestor = bone, steps = 0;
+                while (ancestor != -1 && depths[ancestor] == -1) {
+                    if (++steps > count)
+                        throw new IllegalArgumentException("bone " + bone + " is its own ancestor");
+                    ancestor = parents[ancestor];
+                }
+                int depth = ancestor == -1? -1 : depths[ancestor];
+                // assign the depths on the way back down
+                int[] path = new int[steps];
+                for (int b = bone, i = steps - 1; i >= 0; b = parents[b], i--)
+                    path[i] = b;
+                for (int b : path)
+                    depths[b] = ++depth;
+                maxDepth = Math.max(maxDepth, depths[bone]);
+            }
+            
+            // counting sort by decreasing depth
+            int[] starts = new int[maxDepth + 2];
+            for (int depth : depths)
+                starts[maxDepth - depth + 1]++;
+            for (int i = 1; i < starts.length; i++)
+                starts[i] += starts[i - 1];
+            int[] result = new int[count];
+            for (int bone = 0; bone < count; bone++)
+                result[starts[maxDepth - depths[bone]]++] = bone;
+            return result;
+        }
+        
+        int getWidth() {
+            final double radius = Math.max(
+                Math.max(Math.abs(minX), Math.abs(maxX)),
+                Math.max(Math.abs(minZ), Math.abs(maxZ)));
+            return Math.max(1, (int) Math.ceil(2 * radius / UNITS_PER_BLOCK));
+        }
+        
+        int getHeight() {
+            return Math.max(1, (int) Math.ceil((maxY - minY) / UNITS_PER_BLOCK));
+        }
+        
+        double getOffsetY() {
+            return (minY + maxY) / 2 / UNITS_PER_BLOCK;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,291 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An {@link OutputStream} which replaces a file atomically.
+ * <p>
+ *     All bytes are written into a temporary file next to the target file, which only replaces the target file when
+ *     {@link #commit()} is called. If the stream is closed without being committed, for instance because the
+ *     serialization failed, the temporary file is deleted and the target file stays untouched. Readers of the target
+ *     file therefore never see a partially written file.
+ * </p>
+ * <p>
+ *     The temporary file is created with the default permissions, so a new target file gets the same permissions as
+ *     any other new file. A replaced target file keeps its POSIX permissions.
+ * </p>
+ * <p>
+ *     Bytes are collected in direct buffers from a {@link ByteBufferPool} and written to a {@link FileChannel} with
+ *     gathering writes of up to {@value #GATHER} buffers at once. Output which is streamed into this stream, such as
+ *     the joined entity file of a batch, therefore never has to be held in the heap as a whole.
+ *     {@link #commitIfChanged()} compares the temporary file with the target file instead of comparing arrays.
+ * </p>
+ * <pre>{@code
+ * try (AtomicFileOutputStream stream = new AtomicFileOutputStream(path)) {
+ *     serializer.toStream(object, stream);
+ *     stream.commit();
+ * }
+ * }</pre>
+ */
+public class AtomicFileOutputStream extends OutputStream {
+    
+    private final static int GATHER = 16;
+    
+    @NotNull
+    private final Path target, temp;
+    @NotNull
+    private final FileChannel channel;
+    @NotNull
+    private final ByteBufferPool pool;
+    
+    /** the buffers of this stream, all buffers before {@link #current} are full */
+    private final ByteBuffer[] buffers = new ByteBuffer[GATHER];
+    private int current = -1;
+    private boolean committed, closed;
+    
+    public AtomicFileOutputStream(@NotNull Path target, @NotNull ByteBufferPool pool) throws IOException {
+        this.target = target;
+        this.pool = pool;
+        Path parent = target.toAbsolutePath().getParent();
+        this.temp = createTempFile(parent, target.getFileName().toString());
+        try {
+            this.channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+    
+    public AtomicFileOutputStream(@NotNull Path target) throws IOException {
+        this(target, ByteBufferPool.DEFAULT);
+    }
+    
+    /**
+     * Creates a new temporary file like {@link Files#createTempFile}, but with the default permissions instead of
+     * permissions which only allow the owner to access the file.
+     */
+    private static Path createTempFile(Path directory, String name) throws IOException {
+        while (true) {
+            String suffix = Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36);
+            try {
+                return Files.createFile(directory.resolve("." + name + "." + suffix + ".tmp"));
+            } catch (FileAlreadyExistsException ex) {
+                // try another name
+            }
+        }
+    }
+    
+    /**
+     * Returns the buffer which is currently being filled, which has at least one byte remaining.
+     *
+     * @return the current buffer
+     * @throws IOException if the full buffers have to be written and an I/O error occurs
+     */
+    @NotNull
+    ByteBuffer buffer() throws IOException {
+        ensureOpen();
+        return current == -1 || !buffers[current].hasRemaining()? nextBuffer() : buffers[current];
+    }
+    
+    /**
+     * Leaves the current buffer as it is and continues with an empty buffer, for instance because the next encoded
+     * char does not fit into the current buffer anymore.
+     *
+     * @return the new current buffer
+     * @throws IOException if the full buffers have to be written and an I/O error occurs
+     */
+    @NotNull
+    ByteBuffer nextBuffer() throws IOException {
+        ensureOpen();
+        if (current == GATHER - 1)
+            writeBuffers();
+        current++;
+        if (buffers[current] == null)
+            buffers[current] = pool.acquire();
+        return buffers[current];
+    }
+    
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("stream is closed");
+    }
+    
+    /**
+     * Writes the content of all buffers to the channel, keeping the buffers for reuse.
+     */
+    private void writeBuffers() throws IOException {
+        if (current == -1)
+            return;
+        long remaining = 0;
+        for (int i = 0; i <= current; i++)
+            remaining += ((Buffer) buffers[i]).flip().remaining();
+        while (remaining > 0)
+            remaining -= channel.write(buffers, 0, current + 1);
+        for (int i = 0; i <= current; i++)
+            ((Buffer) buffers[i]).clear();
+        current = -1;
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        buffer().put((byte) b);
+    }
+    
+    @Override
+    public void write(@NotNull byte[] bytes, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > bytes.length - offset)
+            throw new IndexOutOfBoundsException();
+        // large arrays are written directly instead of being copied into the buffers
+        if (length >= pool.getBufferSize()) {
+            ensureOpen();
+            writeBuffers();
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes, offset, length);
+            while (wrapped.hasRemaining())
+                channel.write(wrapped);
+            return;
+        }
+        while (length > 0) {
+            ByteBuffer buffer = buffer();
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Appends the remaining content of a channel, using {@link FileChannel#transferFrom} so that the bytes don't have
+     * to pass through the heap.
+     *
+     * @param source the source channel
+     * @throws IOException if an I/O error occurs
+     */
+    public void transferFrom(@NotNull FileChannel source) throws IOException {
+        ensureOpen();
+        writeBuffers();
+        long position = channel.position();
+        for (long remaining = source.size() - source.position(); remaining > 0; ) {
+            long count = channel.transferFrom(source, position, remaining);
+            if (count == 0)
+                throw new EOFException("source channel was truncated");
+            source.position(source.position() + count);
+            position += count;
+            remaining -= count;
+        }
+        channel.position(position);
+    }
+    
+    /**
+     * Writes all buffered bytes into the temporary file. The target file is not modified until {@link #commit()} is
+     * called.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writeBuffers();
+    }
+    
+    /**
+     * Writes all buffered bytes and replaces the target file with the temporary file, then closes this stream.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void commit() throws IOException {
+        flush();
+        channel.close();
+        if (Files.exists(target) && temp.getFileSystem().supportedFileAttributeViews().contains("posix"))
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committed = true;
+        close();
+    }
+    
+    /**
+     * Replaces the target file like {@link #commit()}, unless the target file already contains exactly the written
+     * bytes, so that tools watching the file are not notified of a change which did not happen. Either way, this stream
+     * is closed.
+     *
+     * @return whether the target file was replaced
+     * @throws IOException if an I/O error occurs
+     */
+    public boolean commitIfChanged() throws IOException {
+        flush();
+        if (matchesTarget()) {
+            close();
+            return false;
+        }
+        commit();
+        return true;
+    }
+    
+    private boolean matchesTarget() throws IOException {
+        final long size = channel.size();
+        if (!Files.isRegularFile(target) || Files.size(target) != size)
+            return false;
+        ByteBuffer written = pool.acquire(), existing = pool.acquire();
+        try (FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.READ)) {
+            for (long position = 0; position < size; ) {
+                int length = (int) Math.min(size - position, pool.getBufferSize());
+                ((Buffer) written).clear().limit(length);
+                ((Buffer) existing).clear().limit(length);
+                readFully(channel, written, position);
+                readFully(targetChannel, existing, position);
+                ((Buffer) written).flip();
+                ((Buffer) existing).flip();
+                if (!written.equals(existing))
+                    return false;
+                position += length;
+            }
+            return true;
+        } finally {
+            pool.release(written);
+            pool.release(existing);
+        }
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count == -1)
+                throw new EOFException("file was truncated while comparing");
+            position += count;
+        }
+    }
+    
+    /**
+     * Closes this stream, deleting the temporary file unless this stream has been {@link #commit() committed}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        for (int i = 0; i < GATHER && buffers[i] != null; i++) {
+            pool.release(buffers[i]);
+            buffers[i] = null;
+        }
+        if (!committed) {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,134 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+import java.nio.file.Path;
+
+/**
+ * A {@link Writer} which replaces a file atomically, encoding UTF-8 directly into the pooled buffers of an
+ * {@link AtomicFileOutputStream}.
+ * <p>
+ *     Just like the stream, the target file is only replaced when {@link #commit()} is called. Closing an uncommitted
+ *     writer discards everything written so far.
+ * </p>
+ */
+public class AtomicFileWriter extends Writer {
+    
+    private final static int CHAR_BUFFER_SIZE = 8192;
+    
+    @NotNull
+    private final AtomicFileOutputStream stream;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    
+    public AtomicFileWriter(@NotNull Path target, @NotNull ByteBufferPool pool) throws IOException {
+        this.stream = new AtomicFileOutputStream(target, pool);
+    }
+    
+    public AtomicFileWriter(@NotNull Path target) throws IOException {
+        this(target, ByteBufferPool.DEFAULT);
+    }
+    
+    @Override
+    public void write(int c) throws IOException {
+        if (!chars.hasRemaining())
+            encode(false);
+        chars.put((char) c);
+    }
+    
+    @Override
+    public void write(@NotNull char[] buffer, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > buffer.length - offset)
+            throw new IndexOutOfBoundsException();
+        while (length > 0) {
+            if (!chars.hasRemaining())
+                encode(false);
+            int count = Math.min(length, chars.remaining());
+            chars.put(buffer, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    @Override
+    public void write(@NotNull String str, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > str.length() - offset)
+            throw new IndexOutOfBoundsException();
+        while (length > 0) {
+            if (!chars.hasRemaining())
+                encode(false);
+            int count = Math.min(length, chars.remaining());
+            chars.put(str, offset, offset + count);
+            offset += count;
+            length -= count;
+        }
+    }
+    
+    /**
+     * Encodes the buffered chars into the buffers of the stream. Unless this is the end of the input, a trailing high
+     * surrogate is kept in the char buffer until its low surrogate has been written.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        ((Buffer) chars).flip();
+        ByteBuffer buffer = stream.buffer();
+        while (encoder.encode(chars, buffer, endOfInput).isOverflow())
+            buffer = stream.nextBuffer();
+        if (endOfInput) {
+            while (encoder.flush(buffer).isOverflow())
+                buffer = stream.nextBuffer();
+        }
+        chars.compact();
+    }
+    
+    /**
+     * Writes all buffered chars into the temporary file. The target file is not modified until {@link #commit()} is
+     * called.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        encode(false);
+        stream.flush();
+    }
+    
+    /**
+     * Writes all buffered chars and replaces the target file, then closes this writer.
+     *
+     * @throws IOException if an I/O error occurs
+     * @see AtomicFileOutputStream#commit()
+     */
+    public void commit() throws IOException {
+        encode(true);
+        stream.commit();
+    }
+    
+    /**
+     * Writes all buffered chars and replaces the target file unless it already has the same content, then closes this
+     * writer.
+     *
+     * @return whether the target file was replaced
+     * @throws IOException if an I/O error occurs
+     * @see AtomicFileOutputStream#commitIfChanged()
+     */
+    public boolean commitIfChanged() throws IOException {
+        encode(true);
+        return stream.commitIfChanged();
+    }
+    
+    /**
+     * Closes this writer, discarding everything written unless this writer has been {@link #commit() committed}.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+    
+}
@@ -1,108 +1,218 @@
 package es.razzleberri.io;
 
-import com.google.gson.*;
 import es.razzleberri.*;
 import es.razzleberri.util.*;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.util.Map;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.*;
 
+/**
+ * Serializes a {@link BedrockEntityModel} into a pretty-printed entity geometry file.
+ * <p>
+ * The model is written straight to a {@link BufferedJsonWriter} without building an intermediate JSON tree, and doubles
+ * are written into its buffer by the {@link DoubleFormatter}. Only doubles with more than six decimals, such as most
+ * rotations of rotated bones, are still turned into strings first.
+ * <p>
+ * In compact mode, all whitespace is left out. Doubles, which are the pivots, rotations, origins and visible bounds
+ * offsets, can also be rounded to a number of decimals with a {@link DecimalFormat}, the same way as by
+ * {@link Vec3d#toString(DecimalFormat)}, which drops the rounding errors of the rotation math from the output.
+ */
 public class BedrockEntitySerializer implements TextSerializer<BedrockEntityModel> {
     
-    private final static String FORMAT_VERSION = "1.8.0";
+    /**
+     * The number of decimals which writes doubles at full precision.
+     */
+    public final static int FULL_PRECISION = -1;
+    
+    final static String FORMAT_VERSION = "1.8.0";
+    
+    private final boolean compact;
+    @Nullable
+    private final DecimalFormat format;
+    
+    /**
+     * Creates a serializer which pretty-prints doubles at full precision.
+     */
+    public BedrockEntitySerializer() {
+        this(false, FULL_PRECISION);
+    }
+    
+    /**
+     * @param compact whether all whitespace is left out
+     * @param decimals the number of decimals to round doubles to or {@link #FULL_PRECISION}
+     */
+    public BedrockEntitySerializer(boolean compact, int decimals) {
+        this.compact = compact;
+        this.format = newDecimalFormat(decimals);
+    }
     
     @Override
     public void toWriter(BedrockEntityModel model, Writer writer) throws IOException {
-        JsonObject root = new JsonObject();
-        root.addProperty("format_version", FORMAT_VERSION);
+        BufferedJsonWriter json = newJsonWriter(writer, compact);
+        json.beginObject();
+        json.name("format_version").value(FORMAT_VERSION);
         
-        for (Map.Entry<String, BedrockEntityGeometry> entry : model.getGeometryEntries())
-            root.add(entry.getKey(), serializeGeometry(entry.getValue()));
-    
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        try {
-            gson.toJson(root, writer);
-        } catch (JsonIOException ex) {
-            throw new IOException(ex);
+        for (Map.Entry<String, BedrockEntityGeometry> entry : model.getGeometryEntries()) {
+            json.name(entry.getKey());
+            serializeGeometry(json, format, entry.getValue());
         }
+        
+        json.endObject();
+        json.flush();
+    }
+    
+    /**
+     * Creates a JSON writer which produces the same output as writing a JSON tree with Gson.
+     *
+     * @param writer the writer
+     * @param compact whether the output is compact instead of pretty-printed
+     * @return a new JSON writer
+     */
+    static BufferedJsonWriter newJsonWriter(Writer writer, boolean compact) {
+        return new BufferedJsonWriter(writer, !compact);
+    }
+    
+    /**
+     * Creates the format which rounds doubles to a number of decimals, independent of the default locale.
+     *
+     * @param decimals the number of decimals or {@link #FULL_PRECISION}
+     * @return the format or {@code null} if doubles are written at full precision
+     */
+    @Nullable
+    static DecimalFormat newDecimalFormat(int decimals) {
+        if (decimals == FULL_PRECISION)
+            return null;
+        if (decimals < 0)
+            throw new IllegalArgumentException("decimals: " + decimals);
+        StringBuilder pattern = new StringBuilder(decimals + 2).append('0');
+        if (decimals > 0)
+            pattern.append('.');
+        for (int i = 0; i < decimals; i++)
+            pattern.append('#');
+        return new DecimalFormat(pattern.toString(), DecimalFormatSymbols.getInstance(Locale.ROOT));
     }
     
-    private static JsonObject serializeGeometry(BedrockEntityGeometry geometry) {
-        JsonObject json = new JsonObject();
+    private static void serializeGeometry(BufferedJsonWriter json,
+                                          @Nullable DecimalFormat format,
+                                          BedrockEntityGeometry geometry) throws IOException {
+        json.beginObject();
         
         Vec2i visibleBounds = geometry.getVisibleBounds();
-        json.addProperty("visible_bounds_width", visibleBounds.getX());
-        json.addProperty("visible_bounds_height", visibleBounds.getY());
+        json.name("visible_bounds_width").value(visibleBounds.getX());
+        json.name("visible_bounds_height").value(visibleBounds.getY());
         
-        json.add("visible_bounds_offset", serializeVec3d(geometry.getVisibleBoundsOffset()));
+        json.name("visible_bounds_offset");
+        serializeVec3d(json, format, geometry.getVisibleBoundsOffset());
         
         Vec2i textureSize = geometry.getTextureSize();
-        json.addProperty("texturewidth", textureSize.getX());
-        json.addProperty("textureheight", textureSize.getY());
+        json.name("texturewidth").value(textureSize.getX());
+        json.name("textureheight").value(textureSize.getY());
         
-        JsonArray jsonBones = new JsonArray(geometry.size());
+        json.name("bones").beginArray();
         for (BedrockEntityBone bone : geometry)
-            jsonBones.add(serializeBone(bone));
-        json.add("bones", jsonBones);
+            serializeBone(json, format, bone);
+        json.endArray();
         
-        return json;
+        json.endObject();
     }
     
-    private static JsonObject serializeBone(BedrockEntityBone bone) {
-        JsonObject json = new JsonObject();
-        json.addProperty("name", bone.getName());
+    private static void serializeBone(BufferedJsonWriter json,
+                                      @Nullable DecimalFormat format,
+                                      BedrockEntityBone bone) throws IOException {
+        json.beginObject();
+        json.name("name").value(bone.getName());
         if (bone.hasParent())
-            json.addProperty("parent", bone.getParent());
+            json.name("parent").value(bone.getParent());
         if (bone.hasPivot()) {
             assert bone.getPivot() != null;
-            json.add("pivot", serializeVec3d(bone.getPivot()));
+            json.name("pivot");
+            serializeVec3d(json, format, bone.getPivot());
         }
         if (bone.hasRotation()) {
             if (!bone.hasPivot())
                 System.err.println("WARNING: Bone \"" + bone.getName() + "\" has a rotation but no pivot");
             assert bone.getRotation() != null;
-            json.add("rotation", serializeVec3d(bone.getRotation()));
+            json.name("rotation");
+            serializeVec3d(json, format, bone.getRotation());
         }
         
-        JsonArray jsonCubes = new JsonArray();
+        json.name("cubes").beginArray();
         for (BedrockEntityCube cube : bone)
-            jsonCubes.add(serializeCube(cube));
-        json.add("cubes", jsonCubes);
+            serializeCube(json, format, cube);
+        json.endArray();
         
-        return json;
+        json.endObject();
     }
     
-    private static JsonObject serializeCube(BedrockEntityCube cube) {
-        JsonObject json = new JsonObject();
-        json.add("origin", serializeVec3d(cube.getOrigin()));
-        json.add("size", serializeVec3i(cube.getSize()));
-        json.add("uv", serializeVec2i(cube.getUv()));
-        return json;
+    private static void serializeCube(BufferedJsonWriter json,
+                                      @Nullable DecimalFormat format,
+                                      BedrockEntityCube cube) throws IOException {
+        json.beginObject();
+        json.name("origin");
+        serializeVec3d(json, format, cube.getOrigin());
+        json.name("size");
+        serializeVec3i(json, cube.getSize());
+        json.name("uv");
+        serializeVec2i(json, cube.getUv());
+        json.endObject();
     }
     
-    @SuppressWarnings("Duplicates")
-    private static JsonArray serializeVec3d(Vec3d v) {
-        JsonArray json = new JsonArray(3);
-        json.add(new JsonPrimitive(v.getX()));
-        json.add(new JsonPrimitive(v.getY()));
-        json.add(new JsonPrimitive(v.getZ()));
-        return json;
+    private static void serializeVec3d(BufferedJsonWriter json,
+                                       @Nullable DecimalFormat format,
+                                       Vec3d v) throws IOException {
+        serializeVec3d(json, format, v.getX(), v.getY(), v.getZ());
+    }
+    
+    private static void serializeVec3i(BufferedJsonWriter json, Vec3i v) throws IOException {
+        serializeVec3i(json, v.getX(), v.getY(), v.getZ());
+    }
+    
+    private static void serializeVec2i(BufferedJsonWriter json, Vec2i v) throws IOException {
+        serializeVec2i(json, v.getX(), v.getY());
+    }
+    
+    static void serializeVec3d(BufferedJsonWriter json,
+                               @Nullable DecimalFormat format,
+                               double x, double y, double z) throws IOException {
+        json.beginArray();
+        serializeDouble(json, format, x);
+        serializeDouble(json, format, y);
+        serializeDouble(json, format, z);
+        json.endArray();
+    }
+    
+    /**
+     * Writes a double, rounded by a format if there is one. Values which round to zero are written as {@code 0}
+     * instead of {@code -0}.
+     */
+    static void serializeDouble(BufferedJsonWriter json,
+                                @Nullable DecimalFormat format,
+                                double value) throws IOException {
+        if (format == null || Double.isNaN(value) || Double.isInfinite(value)) {
+            json.value(value);
+            return;
+        }
+        String formatted = format.format(value);
+        json.jsonValue(formatted.equals("-0")? "0" : formatted);
     }
     
     @SuppressWarnings("Duplicates")
-    private static JsonArray serializeVec3i(Vec3i v) {
-        JsonArray json = new JsonArray(3);
-        json.add(new JsonPrimitive(v.getX()));
-        json.add(new JsonPrimitive(v.getY()));
-        json.add(new JsonPrimitive(v.getZ()));
-        return json;
+    static void serializeVec3i(BufferedJsonWriter json, int x, int y, int z) throws IOException {
+        json.beginArray();
+        json.value(x);
+        json.value(y);
+        json.value(z);
+        json.endArray();
     }
     
-    private static JsonArray serializeVec2i(Vec2i v) {
-        JsonArray json = new JsonArray(2);
-        json.add(new JsonPrimitive(v.getX()));
-        json.add(new JsonPrimitive(v.getY()));
-        return json;
+    static void serializeVec2i(BufferedJsonWriter json, int x, int y) throws IOException {
+        json.beginArray();
+        json.value(x);
+        json.value(y);
+        json.endArray();
     }
     
 }
@@ -0,0 +1,108 @@
+package es.razzleberri.io;
+
+import es.razzleberri.*;
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static es.razzleberri.io.BinaryBedrockEntitySerializer.*;
+
+/**
+ * Deserializes a {@link BedrockEntityModel} written by {@link BinaryBedrockEntitySerializer} in a single pass over a
+ * {@link ByteBuffer}.
+ */
+public class BinaryBedrockEntityDeserializer implements Deserializer<BedrockEntityModel> {
+    
+    /** the number of bytes of a geometry without its name and bones */
+    private final static int MIN_GEOMETRY_BYTES = 4 + 4 * 4 + 3 * 8 + 4;
+    /** the number of bytes of a bone without the characters of its names, its pivot, its rotation and its cubes */
+    private final static int MIN_BONE_BYTES = 2 * 4 + 1 + 4;
+    private final static int CUBE_BYTES = 3 * 8 + 5 * 4;
+    
+    private final static String KIND = "entity model";
+    
+    /**
+     * Reads all bytes of the stream and deserializes them with {@link #fromByteBuffer(ByteBuffer)}.
+     *
+     * @param stream the stream
+     * @return the deserialized model
+     * @throws IOException if the deserialization fails
+     */
+    @NotNull
+    @Override
+    public BedrockEntityModel fromStream(InputStream stream) throws IOException {
+        return fromByteBuffer(BinaryFormat.readFully(stream));
+    }
+    
+    @NotNull
+    @Override
+    public BedrockEntityModel fromBytes(byte[] bytes) throws IOException {
+        return fromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+    
+    /**
+     * Deserializes a model from the remaining bytes of a buffer. The position of the buffer is not modified.
+     *
+     * @param buffer the buffer
+     * @return the deserialized model
+     * @throws IOException if the buffer does not contain a binary model of the current version
+     */
+    @NotNull
+    @Override
+    public BedrockEntityModel fromByteBuffer(ByteBuffer buffer) throws IOException {
+        buffer = buffer.duplicate();
+        try {
+            BinaryFormat.readHeader(buffer, MAGIC, KIND);
+            BedrockEntityModel model = new BedrockEntityModel();
+            final int geometries = BinaryFormat.readCount(buffer, MIN_GEOMETRY_BYTES);
+            for (int i = 0; i < geometries; i++) {
+                String name = BinaryFormat.readNonNullString(buffer);
+                model.putGeometry(name, readGeometry(buffer));
+            }
+            return model;
+        } catch (BufferUnderflowException ex) {
+            throw BinaryFormat.truncated(ex, KIND);
+        } catch (IllegalArgumentException ex) {
+            // thrown by geometries containing the same bone twice
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+    
+    private static BedrockEntityGeometry readGeometry(ByteBuffer buffer) throws IOException {
+        Vec2i visibleBounds = new Vec2i(buffer.getInt(), buffer.getInt());
+        Vec3d visibleBoundsOffset = readVec3d(buffer);
+        Vec2i textureSize = new Vec2i(buffer.getInt(), buffer.getInt());
+        BedrockEntityGeometry geometry = new BedrockEntityGeometry(visibleBounds, visibleBoundsOffset, textureSize);
+        
+        final int bones = BinaryFormat.readCount(buffer, MIN_BONE_BYTES);
+        for (int i = 0; i < bones; i++) {
+            String name = BinaryFormat.readNonNullString(buffer);
+            String parent = BinaryFormat.readString(buffer);
+            final int flags = buffer.get();
+            Vec3d pivot = (flags & HAS_PIVOT) != 0? readVec3d(buffer) : null;
+            Vec3d rotation = (flags & HAS_ROTATION) != 0? readVec3d(buffer) : null;
+            
+            final int cubes = BinaryFormat.readCount(buffer, CUBE_BYTES);
+            List<BedrockEntityCube> cubeList = new ArrayList<>(cubes);
+            for (int j = 0; j < cubes; j++) {
+                Vec3d origin = readVec3d(buffer);
+                Vec3i size = new Vec3i(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                cubeList.add(new BedrockEntityCube(origin, size, new Vec2i(buffer.getInt(), buffer.getInt())));
+            }
+            BedrockEntityBone bone = new BedrockEntityBone(name, parent, pivot, rotation);
+            bone.setCubes(cubeList);
+            geometry.addBone(bone);
+        }
+        return geometry;
+    }
+    
+    private static Vec3d readVec3d(ByteBuffer buffer) {
+        return new Vec3d(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+    }
+    
+}
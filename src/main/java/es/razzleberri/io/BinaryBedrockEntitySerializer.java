@@ -0,0 +1,73 @@
+package es.razzleberri.io;
+
+import es.razzleberri.*;
+import es.razzleberri.util.*;
+
+import java.io.*;
+import java.util.Map;
+
+/**
+ * Serializes a {@link BedrockEntityModel} into a compact binary file, which {@link BinaryBedrockEntityDeserializer}
+ * reads back without parsing JSON.
+ * <p>
+ *     After the {@link BinaryFormat header}, the file contains the number of geometries and then every geometry with
+ *     its name, visible bounds, texture size and bones in their order. A bone consists of its name, its parent or
+ *     {@code null}, a byte of flags telling whether a pivot and a rotation follow, and its cubes.
+ * </p>
+ */
+public class BinaryBedrockEntitySerializer implements Serializer<BedrockEntityModel> {
+    
+    /**
+     * The magic number of binary entity models, which is {@code "BEMB"} in ASCII.
+     */
+    public final static int MAGIC = 0x42454D42;
+    
+    final static int HAS_PIVOT = 1, HAS_ROTATION = 2;
+    
+    @Override
+    public void toStream(BedrockEntityModel model, OutputStream stream) throws IOException {
+        DataOutputStream output = BinaryFormat.newOutput(stream, MAGIC);
+        output.writeInt(model.getGeometryEntries().size());
+        for (Map.Entry<String, BedrockEntityGeometry> entry : model.getGeometryEntries()) {
+            BinaryFormat.writeString(output, entry.getKey());
+            writeGeometry(output, entry.getValue());
+        }
+        output.flush();
+    }
+    
+    private static void writeGeometry(DataOutputStream output, BedrockEntityGeometry geometry) throws IOException {
+        output.writeInt(geometry.getVisibleBounds().getX());
+        output.writeInt(geometry.getVisibleBounds().getY());
+        writeVec3d(output, geometry.getVisibleBoundsOffset());
+        output.writeInt(geometry.getTextureSize().getX());
+        output.writeInt(geometry.getTextureSize().getY());
+        
+        output.writeInt(geometry.size());
+        for (BedrockEntityBone bone : geometry) {
+            BinaryFormat.writeString(output, bone.getName());
+            BinaryFormat.writeString(output, bone.getParent());
+            output.writeByte((bone.hasPivot()? HAS_PIVOT : 0) | (bone.hasRotation()? HAS_ROTATION : 0));
+            if (bone.getPivot() != null)
+                writeVec3d(output, bone.getPivot());
+            if (bone.getRotation() != null)
+                writeVec3d(output, bone.getRotation());
+            
+            output.writeInt(bone.size());
+            for (BedrockEntityCube cube : bone) {
+                writeVec3d(output, cube.getOrigin());
+                output.writeInt(cube.getSize().getX());
+                output.writeInt(cube.getSize().getY());
+                output.writeInt(cube.getSize().getZ());
+                output.writeInt(cube.getUv().getX());
+                output.writeInt(cube.getUv().getY());
+            }
+        }
+    }
+    
+    private static void writeVec3d(DataOutputStream output, Vec3d v) throws IOException {
+        output.writeDouble(v.getX());
+        output.writeDouble(v.getY());
+        output.writeDouble(v.getZ());
+    }
+    
+}
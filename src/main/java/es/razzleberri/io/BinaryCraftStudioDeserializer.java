@@ -0,0 +1,108 @@
+package es.razzleberri.io;
+
+import es.razzleberri.CraftStudioBlock;
+import es.razzleberri.CraftStudioModel;
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Deserializes a {@link CraftStudioModel} written by {@link BinaryCraftStudioSerializer} in a single pass over a
+ * {@link ByteBuffer}.
+ */
+public class BinaryCraftStudioDeserializer implements Deserializer<CraftStudioModel> {
+    
+    /** the number of bytes of a block without the characters of its name */
+    private final static int MIN_BLOCK_BYTES = 4 + 9 * 8 + 6 * 4;
+    
+    private final static String KIND = "CraftStudio model";
+    
+    /**
+     * Reads all bytes of the stream and deserializes them with {@link #fromByteBuffer(ByteBuffer)}.
+     *
+     * @param stream the stream
+     * @return the deserialized model
+     * @throws IOException if the deserialization fails
+     */
+    @NotNull
+    @Override
+    public CraftStudioModel fromStream(InputStream stream) throws IOException {
+        return fromByteBuffer(BinaryFormat.readFully(stream));
+    }
+    
+    @NotNull
+    @Override
+    public CraftStudioModel fromBytes(byte[] bytes) throws IOException {
+        return fromByteBuffer(ByteBuffer.wrap(bytes));
+    }
+    
+    /**
+     * Deserializes a model from the remaining bytes of a buffer. The position of the buffer is not modified.
+     *
+     * @param buffer the buffer
+     * @return the deserialized model
+     * @throws IOException if the buffer does not contain a binary model of the current version
+     */
+    @NotNull
+    @Override
+    public CraftStudioModel fromByteBuffer(ByteBuffer buffer) throws IOException {
+        buffer = buffer.duplicate();
+        try {
+            BinaryFormat.readHeader(buffer, BinaryCraftStudioSerializer.MAGIC, KIND);
+            CraftStudioModel model = new CraftStudioModel(BinaryFormat.readNonNullString(buffer));
+            final int total = BinaryFormat.readCount(buffer, MIN_BLOCK_BYTES);
+            int remaining = BinaryFormat.readCount(buffer, MIN_BLOCK_BYTES);
+            
+            // the blocks whose children are still being read, together with the number of missing children
+            CraftStudioBlock[] parents = new CraftStudioBlock[16];
+            int[] missing = new int[16];
+            int depth = 0;
+            for (int read = 0; read < total; read++) {
+                while (depth > 0 && missing[depth - 1] == 0)
+                    depth--;
+                if (depth == 0 && remaining-- == 0)
+                    throw new IOException("more blocks than the model contains");
+                
+                CraftStudioBlock block = readBlock(buffer);
+                int children = BinaryFormat.readCount(buffer, MIN_BLOCK_BYTES);
+                if (depth == 0) {
+                    model.addBlock(block);
+                } else {
+                    parents[depth - 1].addChild(block);
+                    missing[depth - 1]--;
+                }
+                
+                if (children > 0) {
+                    if (depth == parents.length) {
+                        parents = Arrays.copyOf(parents, depth * 2);
+                        missing = Arrays.copyOf(missing, depth * 2);
+                    }
+                    parents[depth] = block;
+                    missing[depth++] = children;
+                }
+            }
+            while (depth > 0 && missing[depth - 1] == 0)
+                depth--;
+            if (depth != 0 || remaining != 0)
+                throw new IOException("fewer blocks than the model contains");
+            return model;
+        } catch (BufferUnderflowException ex) {
+            throw BinaryFormat.truncated(ex, KIND);
+        }
+    }
+    
+    private static CraftStudioBlock readBlock(ByteBuffer buffer) throws IOException {
+        String name = BinaryFormat.readNonNullString(buffer);
+        Vec3d position = new Vec3d(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+        Vec3d offsetFromPivot = new Vec3d(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+        Vec3i size = new Vec3i(buffer.getInt(), buffer.getInt(), buffer.getInt());
+        Vec3d rotation = new Vec3d(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+        Vec2i texOffset = new Vec2i(buffer.getInt(), buffer.getInt());
+        return new CraftStudioBlock(name, position, offsetFromPivot, size, rotation, texOffset);
+    }
+    
+}
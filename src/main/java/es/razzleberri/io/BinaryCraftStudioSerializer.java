@@ -0,0 +1,66 @@
+package es.razzleberri.io;
+
+import es.razzleberri.CraftStudioBlock;
+import es.razzleberri.CraftStudioModel;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Serializes a {@link CraftStudioModel} into a compact binary file, which {@link BinaryCraftStudioDeserializer} reads
+ * back much faster than the JSON of a {@code .csjsmodel} file can be parsed.
+ * <p>
+ *     After the {@link BinaryFormat header}, the file contains the title, the total number of blocks and then every
+ *     block in pre-order, so that each block is directly followed by its children. A block consists of its name, its
+ *     position, its offset from the pivot, its size, its rotation, its texture offset and its number of children.
+ * </p>
+ */
+public class BinaryCraftStudioSerializer implements Serializer<CraftStudioModel> {
+    
+    /**
+     * The magic number of binary CraftStudio models, which is {@code "CSMB"} in ASCII.
+     */
+    public final static int MAGIC = 0x43534D42;
+    
+    @Override
+    public void toStream(CraftStudioModel model, OutputStream stream) throws IOException {
+        DataOutputStream output = BinaryFormat.newOutput(stream, MAGIC);
+        BinaryFormat.writeString(output, model.getTitle());
+        output.writeInt(model.getTotalSize());
+        output.writeInt(model.size());
+        
+        // an explicit stack, so that deeply nested models don't overflow the thread's stack
+        Deque<CraftStudioBlock> stack = new ArrayDeque<>();
+        List<CraftStudioBlock> blocks = model.getBlocks();
+        for (int i = blocks.size() - 1; i >= 0; i--)
+            stack.push(blocks.get(i));
+        while (!stack.isEmpty()) {
+            CraftStudioBlock block = stack.pop();
+            writeBlock(output, block);
+            List<CraftStudioBlock> children = block.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--)
+                stack.push(children.get(i));
+        }
+        output.flush();
+    }
+    
+    private static void writeBlock(DataOutputStream output, CraftStudioBlock block) throws IOException {
+        BinaryFormat.writeString(output, block.getName());
+        output.writeDouble(block.getPosition().getX());
+        output.writeDouble(block.getPosition().getY());
+        output.writeDouble(block.getPosition().getZ());
+        output.writeDouble(block.getOffsetFromPivot().getX());
+        output.writeDouble(block.getOffsetFromPivot().getY());
+        output.writeDouble(block.getOffsetFromPivot().getZ());
+        output.writeInt(block.getSize().getX());
+        output.writeInt(block.getSize().getY());
+        output.writeInt(block.getSize().getZ());
+        output.writeDouble(block.getRotation().getX());
+        output.writeDouble(block.getRotation().getY());
+        output.writeDouble(block.getRotation().getZ());
+        output.writeInt(block.getTexOffset().getX());
+        output.writeInt(block.getTexOffset().getY());
+        output.writeInt(block.getChildren().size());
+    }
+    
+}
@@ -0,0 +1,135 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.*;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The parts which all binary model formats have in common.
+ * <p>
+ *     Every file starts with a four byte magic number identifying the kind of model, followed by the version of the
+ *     format. All numbers are stored in big-endian order as written by {@link DataOutputStream}, so that files can be
+ *     read back with a single pass over a {@link ByteBuffer} in its default byte order. Strings are stored as the
+ *     length of their UTF-8 encoding followed by the encoded bytes, and a length of {@code -1} stands for
+ *     {@code null}.
+ * </p>
+ */
+final class BinaryFormat {
+    
+    /**
+     * The version of all binary formats, which has to be increased whenever the layout of any of them changes.
+     */
+    final static int VERSION = 1;
+    
+    private final static int NULL_LENGTH = -1;
+    
+    private BinaryFormat() {}
+    
+    @NotNull
+    static DataOutputStream newOutput(@NotNull OutputStream stream, int magic) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream));
+        output.writeInt(magic);
+        output.writeInt(VERSION);
+        return output;
+    }
+    
+    /**
+     * Reads and checks the magic number and the version at the position of a buffer.
+     *
+     * @param buffer the buffer
+     * @param magic the expected magic number
+     * @param kind the kind of model, used in error messages
+     * @throws IOException if the buffer does not start with the magic number or the version is not supported
+     */
+    static void readHeader(@NotNull ByteBuffer buffer, int magic, @NotNull String kind) throws IOException {
+        if (buffer.remaining() < 8 || buffer.getInt() != magic)
+            throw new IOException("not a binary " + kind);
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IOException("unsupported binary " + kind + " version " + version + ", expected " + VERSION);
+    }
+    
+    static void writeString(@NotNull DataOutput output, @Nullable String string) throws IOException {
+        if (string == null) {
+            output.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+    
+    @Nullable
+    static String readString(@NotNull ByteBuffer buffer) throws IOException {
+        final int length = buffer.getInt();
+        if (length == NULL_LENGTH)
+            return null;
+        if (length < 0 || length > buffer.remaining())
+            throw new IOException("invalid string length " + length + " at " + (buffer.position() - 4));
+        if (buffer.hasArray()) {
+            String result = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+            ((Buffer) buffer).position(buffer.position() + length);
+            return result;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    @NotNull
+    static String readNonNullString(@NotNull ByteBuffer buffer) throws IOException {
+        String result = readString(buffer);
+        if (result == null)
+            throw new IOException("missing string at " + buffer.position());
+        return result;
+    }
+    
+    /**
+     * Reads a count of elements and checks that the buffer has enough bytes left for that many elements.
+     *
+     * @param buffer the buffer
+     * @param minBytes the minimum number of bytes of each element
+     * @return the count
+     * @throws IOException if the count is negative or larger than the buffer allows
+     */
+    static int readCount(@NotNull ByteBuffer buffer, int minBytes) throws IOException {
+        final int count = buffer.getInt();
+        if (count < 0 || (long) count * minBytes > buffer.remaining())
+            throw new IOException("invalid count " + count + " at " + (buffer.position() - 4));
+        return count;
+    }
+    
+    /**
+     * Reads all remaining bytes of a stream into a buffer.
+     *
+     * @param stream the stream
+     * @return a buffer containing the bytes
+     * @throws IOException if an I/O error occurs
+     */
+    @NotNull
+    static ByteBuffer readFully(@NotNull InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(stream.available(), 8192));
+        byte[] chunk = new byte[8192];
+        for (int read; (read = stream.read(chunk)) != -1; )
+            bytes.write(chunk, 0, read);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+    
+    /**
+     * Converts the exception thrown by reading past the end of a buffer into the exception of deserializers.
+     *
+     * @param ex the exception
+     * @param kind the kind of model, used in the error message
+     * @return the exception to throw
+     */
+    @NotNull
+    static IOException truncated(@NotNull BufferUnderflowException ex, @NotNull String kind) {
+        return new IOException("truncated binary " + kind, ex);
+    }
+    
+}
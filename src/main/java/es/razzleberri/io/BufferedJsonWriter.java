@@ -0,0 +1,270 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Writes JSON into a char buffer, producing exactly the same output as a lenient and HTML-safe
+ * {@link com.google.gson.stream.JsonWriter} created by a {@link com.google.gson.Gson} instance, either pretty-printed
+ * or compact.
+ * <p>
+ *     Unlike Gson's writer, which turns every number into a {@link String} first, numbers are written straight into the
+ *     buffer by the {@link DoubleFormatter}. Integers and short decimals, which make up most positions and sizes,
+ *     create no garbage at all, while doubles with more than six decimals still create a string each. Only the parts
+ *     of the writer which the entity serializers need are supported, and {@code null} values are not.
+ * </p>
+ */
+final class BufferedJsonWriter implements Flushable {
+    
+    private final static int BUFFER_SIZE = 8192;
+    private final static String INDENT = "  ";
+    
+    private final static int EMPTY_ARRAY = 1, NONEMPTY_ARRAY = 2, EMPTY_OBJECT = 3, DANGLING_NAME = 4,
+        NONEMPTY_OBJECT = 5, EMPTY_DOCUMENT = 6, NONEMPTY_DOCUMENT = 7;
+    
+    /** the escape sequences of all ASCII chars which are escaped in HTML-safe strings, or {@code null} */
+    private final static String[] REPLACEMENT_CHARS = new String[128];
+    
+    static {
+        for (int c = 0; c <= 0x1f; c++)
+            REPLACEMENT_CHARS[c] = String.format("\\u%04x", c);
+        REPLACEMENT_CHARS['"'] = "\\\"";
+        REPLACEMENT_CHARS['\\'] = "\\\\";
+        REPLACEMENT_CHARS['\t'] = "\\t";
+        REPLACEMENT_CHARS['\b'] = "\\b";
+        REPLACEMENT_CHARS['\n'] = "\\n";
+        REPLACEMENT_CHARS['\r'] = "\\r";
+        REPLACEMENT_CHARS['\f'] = "\\f";
+        REPLACEMENT_CHARS['<'] = "\\u003c";
+        REPLACEMENT_CHARS['>'] = "\\u003e";
+        REPLACEMENT_CHARS['&'] = "\\u0026";
+        REPLACEMENT_CHARS['='] = "\\u003d";
+        REPLACEMENT_CHARS['\''] = "\\u0027";
+    }
+    
+    @NotNull
+    private final Writer out;
+    private final boolean pretty;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    
+    private int[] stack = new int[32];
+    private int stackSize;
+    private String deferredName;
+    
+    /**
+     * @param out the writer to write the JSON to
+     * @param pretty whether the JSON is pretty-printed with an indentation of two spaces
+     */
+    BufferedJsonWriter(@NotNull Writer out, boolean pretty) {
+        this.out = out;
+        this.pretty = pretty;
+        push(EMPTY_DOCUMENT);
+    }
+    
+    BufferedJsonWriter beginArray() throws IOException {
+        return open(EMPTY_ARRAY, '[');
+    }
+    
+    BufferedJsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, ']');
+    }
+    
+    BufferedJsonWriter beginObject() throws IOException {
+        return open(EMPTY_OBJECT, '{');
+    }
+    
+    BufferedJsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, '}');
+    }
+    
+    BufferedJsonWriter name(@NotNull String name) {
+        if (deferredName != null || stackSize == 0)
+            throw new IllegalStateException("Nesting problem.");
+        deferredName = name;
+        return this;
+    }
+    
+    BufferedJsonWriter value(@NotNull String value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        string(value);
+        return this;
+    }
+    
+    BufferedJsonWriter value(long value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        ensure(20);
+        position = DoubleFormatter.writeLong(value, buffer, position);
+        return this;
+    }
+    
+    /**
+     * Writes a double like {@link Double#toString(double)}, including {@code NaN} and infinite values.
+     */
+    BufferedJsonWriter value(double value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        ensure(DoubleFormatter.MAX_CHARS);
+        position = DoubleFormatter.format(value, buffer, position);
+        return this;
+    }
+    
+    /**
+     * Writes a value which is already encoded as JSON, such as a formatted number.
+     */
+    BufferedJsonWriter jsonValue(@NotNull String value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        write(value);
+        return this;
+    }
+    
+    /**
+     * Writes the buffer to the underlying writer and flushes it.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+    
+    private BufferedJsonWriter open(int empty, char bracket) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        push(empty);
+        write(bracket);
+        return this;
+    }
+    
+    private BufferedJsonWriter close(int empty, int nonempty, char bracket) throws IOException {
+        final int context = peek();
+        if (context != nonempty && context != empty)
+            throw new IllegalStateException("Nesting problem.");
+        if (deferredName != null)
+            throw new IllegalStateException("Dangling name: " + deferredName);
+        stackSize--;
+        if (context == nonempty)
+            newline();
+        write(bracket);
+        return this;
+    }
+    
+    private void push(int context) {
+        if (stackSize == stack.length)
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        stack[stackSize++] = context;
+    }
+    
+    private int peek() {
+        if (stackSize == 0)
+            throw new IllegalStateException("JsonWriter is closed.");
+        return stack[stackSize - 1];
+    }
+    
+    private void writeDeferredName() throws IOException {
+        if (deferredName == null)
+            return;
+        final int context = peek();
+        if (context == NONEMPTY_OBJECT)
+            write(',');
+        else if (context != EMPTY_OBJECT)
+            throw new IllegalStateException("Nesting problem.");
+        newline();
+        stack[stackSize - 1] = DANGLING_NAME;
+        string(deferredName);
+        deferredName = null;
+    }
+    
+    private void beforeValue() throws IOException {
+        switch (peek()) {
+            case NONEMPTY_DOCUMENT:
+            case EMPTY_DOCUMENT:
+                // lenient writers accept several top-level values
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                newline();
+                break;
+            case NONEMPTY_ARRAY:
+                write(',');
+                newline();
+                break;
+            case DANGLING_NAME:
+                write(':');
+                if (pretty)
+                    write(' ');
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            default:
+                throw new IllegalStateException("Nesting problem.");
+        }
+    }
+    
+    private void newline() throws IOException {
+        if (!pretty)
+            return;
+        write('\n');
+        for (int i = 1; i < stackSize; i++)
+            write(INDENT);
+    }
+    
+    private void string(String value) throws IOException {
+        write('"');
+        int last = 0;
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            String replacement;
+            if (c < 128)
+                replacement = REPLACEMENT_CHARS[c];
+            else if (c == '\u2028')
+                replacement = "\\u2028";
+            else if (c == '\u2029')
+                replacement = "\\u2029";
+            else
+                replacement = null;
+            if (replacement == null)
+                continue;
+            write(value, last, i);
+            write(replacement);
+            last = i + 1;
+        }
+        write(value, last, length);
+        write('"');
+    }
+    
+    private void ensure(int chars) throws IOException {
+        if (position + chars > buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+    
+    private void write(char c) throws IOException {
+        ensure(1);
+        buffer[position++] = c;
+    }
+    
+    private void write(String string) throws IOException {
+        write(string, 0, string.length());
+    }
+    
+    private void write(String string, int from, int to) throws IOException {
+        while (from < to) {
+            ensure(1);
+            final int count = Math.min(to - from, buffer.length - position);
+            string.getChars(from, from + count, buffer, position);
+            position += count;
+            from += count;
+        }
+    }
+    
+}
@@ -0,0 +1,54 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} which reads from a {@link ByteBuffer}.
+ */
+public class ByteBufferInputStream extends InputStream {
+    
+    @NotNull
+    private final ByteBuffer buffer;
+    
+    /**
+     * @param buffer the buffer to read from its position to its limit, its position is not modified
+     */
+    public ByteBufferInputStream(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+    
+    @Override
+    public int read() {
+        return buffer.hasRemaining()? buffer.get() & 0xFF : -1;
+    }
+    
+    @Override
+    public int read(@NotNull byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || length > bytes.length - offset)
+            throw new IndexOutOfBoundsException();
+        if (length == 0)
+            return 0;
+        if (!buffer.hasRemaining())
+            return -1;
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+    
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        ((Buffer) buffer).position(buffer.position() + count);
+        return count;
+    }
+    
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+    
+}
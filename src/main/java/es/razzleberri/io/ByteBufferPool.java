@@ -0,0 +1,73 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of equally sized direct {@link ByteBuffer}s.
+ * <p>
+ *     Direct buffers are expensive to allocate but can be written to channels without an additional copy, so they are
+ *     kept and reused across files. At most a fixed number of buffers is retained, further released buffers are left to
+ *     the garbage collector.
+ * </p>
+ */
+public class ByteBufferPool {
+    
+    /**
+     * The pool shared by all {@link AtomicFileOutputStream}s which don't specify a pool.
+     */
+    public final static ByteBufferPool DEFAULT = new ByteBufferPool(64 * 1024, 64);
+    
+    private final int bufferSize, maxRetained;
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retained = new AtomicInteger();
+    
+    /**
+     * @param bufferSize the capacity of every buffer
+     * @param maxRetained the maximum number of buffers which are kept for reuse
+     */
+    public ByteBufferPool(int bufferSize, int maxRetained) {
+        this.bufferSize = bufferSize;
+        this.maxRetained = maxRetained;
+    }
+    
+    public int getBufferSize() {
+        return bufferSize;
+    }
+    
+    /**
+     * Returns an empty buffer, reusing a released buffer if possible.
+     *
+     * @return a cleared buffer
+     */
+    @NotNull
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(bufferSize);
+        retained.decrementAndGet();
+        return buffer;
+    }
+    
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer the buffer
+     */
+    public void release(@NotNull ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || !buffer.isDirect())
+            throw new IllegalArgumentException("buffer does not belong to this pool");
+        if (retained.incrementAndGet() > maxRetained) {
+            retained.decrementAndGet();
+            return;
+        }
+        ((Buffer) buffer).clear();
+        buffers.offer(buffer);
+    }
+    
+}
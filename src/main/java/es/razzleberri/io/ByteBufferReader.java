@@ -0,0 +1,78 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+/**
+ * A {@link Reader} which decodes UTF-8 directly from a {@link ByteBuffer}, without copying the bytes into an
+ * intermediate buffer first.
+ * <p>
+ *     Malformed input is replaced with the replacement character, just like an {@link InputStreamReader} does.
+ * </p>
+ */
+public class ByteBufferReader extends Reader {
+    
+    @NotNull
+    private final ByteBuffer buffer;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    /** holds the decoded chars of reads into arrays which are too small for a surrogate pair */
+    private final CharBuffer spare = CharBuffer.allocate(2);
+    private boolean done;
+    
+    /**
+     * @param buffer the buffer to read from its position to its limit, its position is not modified
+     */
+    public ByteBufferReader(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        // casts to Buffer keep the compiled code compatible with Java 8, which lacks the covariant overrides
+        ((Buffer) spare).flip();
+    }
+    
+    @Override
+    public int read(@NotNull char[] chars, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || length > chars.length - offset)
+            throw new IndexOutOfBoundsException();
+        if (length == 0)
+            return 0;
+        
+        if (spare.hasRemaining()) {
+            int count = Math.min(length, spare.remaining());
+            spare.get(chars, offset, count);
+            return count;
+        }
+        if (length == 1) {
+            ((Buffer) spare).clear();
+            int count = decode(spare);
+            ((Buffer) spare).flip();
+            return count == -1? -1 : read(chars, offset, length);
+        }
+        return decode(CharBuffer.wrap(chars, offset, length));
+    }
+    
+    /**
+     * Decodes as many chars as fit into the given buffer.
+     *
+     * @param out the buffer, which must have space for at least two chars
+     * @return the number of decoded chars or {@code -1} if the end has been reached
+     */
+    private int decode(CharBuffer out) {
+        if (done)
+            return -1;
+        int start = out.position();
+        if (decoder.decode(buffer, out, true).isUnderflow() && decoder.flush(out).isUnderflow())
+            done = true;
+        int count = out.position() - start;
+        return count == 0 && done? -1 : count;
+    }
+    
+    @Override
+    public void close() {
+        done = true;
+    }
+    
+}
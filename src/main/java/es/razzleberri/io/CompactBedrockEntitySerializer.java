@@ -0,0 +1,142 @@
+package es.razzleberri.io;
+
+import es.razzleberri.CompactBedrockGeometry;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.Collections;
+
+import static es.razzleberri.io.BedrockEntitySerializer.*;
+
+/**
+ * Serializes a {@link CompactBedrockGeometry} into a pretty-printed entity geometry file.
+ * <p>
+ * The output is identical to the output of the {@link BedrockEntitySerializer} for an equivalent
+ * {@link es.razzleberri.BedrockEntityModel} containing the geometry. Several geometries can also be
+ * {@link #toWriter(Iterable, Writer) joined} into one file.
+ */
+public class CompactBedrockEntitySerializer implements TextSerializer<CompactBedrockGeometry> {
+    
+    private final boolean compact;
+    @Nullable
+    private final DecimalFormat format;
+    
+    /**
+     * Creates a serializer which pretty-prints doubles at full precision.
+     */
+    public CompactBedrockEntitySerializer() {
+        this(false, FULL_PRECISION);
+    }
+    
+    /**
+     * @param compact whether all whitespace is left out
+     * @param decimals the number of decimals to round doubles to or {@link BedrockEntitySerializer#FULL_PRECISION}
+     * @see BedrockEntitySerializer#BedrockEntitySerializer(boolean, int)
+     */
+    public CompactBedrockEntitySerializer(boolean compact, int decimals) {
+        this.compact = compact;
+        this.format = newDecimalFormat(decimals);
+    }
+    
+    @Override
+    public void toWriter(CompactBedrockGeometry geometry, Writer writer) throws IOException {
+        toWriter(Collections.singletonList(geometry), writer);
+    }
+    
+    /**
+     * Writes several geometries into one entity geometry file, in the order in which they are given. The names of
+     * the geometries must be unique, since they are the keys of the file.
+     *
+     * @param geometries the geometries
+     * @param writer the writer
+     * @throws IOException if an I/O error occurs
+     */
+    public void toWriter(Iterable<CompactBedrockGeometry> geometries, Writer writer) throws IOException {
+        BufferedJsonWriter json = newJsonWriter(writer, compact);
+        json.beginObject();
+        json.name("format_version").value(FORMAT_VERSION);
+        for (CompactBedrockGeometry geometry : geometries) {
+            json.name(geometry.getName());
+            serializeGeometry(json, format, geometry);
+        }
+        json.endObject();
+        json.flush();
+    }
+    
+    /**
+     * Writes several geometries into one entity geometry file, encoding it as UTF-8.
+     *
+     * @param geometries the geometries
+     * @return the content of the file
+     * @throws IOException if an I/O error occurs
+     * @see #toWriter(Iterable, Writer)
+     */
+    public byte[] toBytes(Iterable<CompactBedrockGeometry> geometries) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        toWriter(geometries, writer);
+        writer.flush();
+        return stream.toByteArray();
+    }
+    
+    private static void serializeGeometry(BufferedJsonWriter json,
+                                          @Nullable DecimalFormat format,
+                                          CompactBedrockGeometry geometry) throws IOException {
+        json.beginObject();
+        json.name("visible_bounds_width").value(geometry.getVisibleBoundsWidth());
+        json.name("visible_bounds_height").value(geometry.getVisibleBoundsHeight());
+        json.name("visible_bounds_offset");
+        serializeVec3d(json, format,
+            geometry.getVisibleBoundsOffset(0),
+            geometry.getVisibleBoundsOffset(1),
+            geometry.getVisibleBoundsOffset(2));
+        json.name("texturewidth").value(geometry.getTextureWidth());
+        json.name("textureheight").value(geometry.getTextureHeight());
+        
+        json.name("bones").beginArray();
+        for (int bone = 0; bone < geometry.getBoneCount(); bone++)
+            serializeBone(json, format, geometry, bone);
+        json.endArray();
+        json.endObject();
+    }
+    
+    private static void serializeBone(BufferedJsonWriter json,
+                                      @Nullable DecimalFormat format,
+                                      CompactBedrockGeometry geometry,
+                                      int bone) throws IOException {
+        json.beginObject();
+        json.name("name").value(geometry.getBoneName(bone));
+        String parent = geometry.getBoneParentName(bone);
+        if (parent != null)
+            json.name("parent").value(parent);
+        json.name("pivot");
+        serializeVec3d(json, format,
+            geometry.getPivot(bone, 0),
+            geometry.getPivot(bone, 1),
+            geometry.getPivot(bone, 2));
+        json.name("rotation");
+        serializeVec3d(json, format,
+            geometry.getRotation(bone, 0),
+            geometry.getRotation(bone, 1),
+            geometry.getRotation(bone, 2));
+        
+        json.name("cubes").beginArray();
+        for (int cube = geometry.getCubeStart(bone), end = geometry.getCubeEnd(bone); cube < end; cube++) {
+            json.beginObject();
+            json.name("origin");
+            serializeVec3d(json, format,
+                geometry.getOrigin(cube, 0), geometry.getOrigin(cube, 1), geometry.getOrigin(cube, 2));
+            json.name("size");
+            serializeVec3i(json, geometry.getSize(cube, 0), geometry.getSize(cube, 1), geometry.getSize(cube, 2));
+            json.name("uv");
+            serializeVec2i(json, geometry.getUv(cube, 0), geometry.getUv(cube, 1));
+            json.endObject();
+        }
+        json.endArray();
+        
+        json.endObject();
+    }
+    
+}
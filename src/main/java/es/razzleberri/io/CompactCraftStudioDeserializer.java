@@ -0,0 +1,26 @@
+package es.razzleberri.io;
+
+import es.razzleberri.CompactCraftStudioModel;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+
+/**
+ * Deserializes a CraftStudio model into a {@link CompactCraftStudioModel}, without creating objects for the blocks.
+ */
+public class CompactCraftStudioDeserializer implements TextDeserializer<CompactCraftStudioModel> {
+    
+    @NotNull
+    @Override
+    public CompactCraftStudioModel fromReader(Reader reader) throws IOException {
+        CompactCraftStudioModelBuilder builder = new CompactCraftStudioModelBuilder();
+        new CraftStudioReader(reader).accept(builder);
+        
+        try {
+            return builder.getModel();
+        } catch (IllegalStateException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+    
+}
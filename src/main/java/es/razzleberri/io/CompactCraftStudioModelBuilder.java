@@ -0,0 +1,89 @@
+package es.razzleberri.io;
+
+import es.razzleberri.CompactCraftStudioModel;
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A {@link CraftStudioVisitor} which appends the visited blocks to a {@link CompactCraftStudioModel}.
+ */
+public class CompactCraftStudioModelBuilder implements CraftStudioVisitor {
+    
+    private final CompactCraftStudioModel model = new CompactCraftStudioModel("", 64);
+    private boolean hasTitle;
+    
+    private int[] openBlocks = new int[16];
+    private int depth;
+    
+    @Override
+    public void visitTitle(@NotNull String title) {
+        model.setTitle(title);
+        hasTitle = true;
+    }
+    
+    @Override
+    public void visitBlockFields(@NotNull String name,
+                                 @NotNull Vec3d position,
+                                 @NotNull Vec3d offsetFromPivot,
+                                 @NotNull Vec3i size,
+                                 @NotNull Vec3d rotation,
+                                 @NotNull Vec2i texOffset) {
+        addBlock(name,
+            position.getX(), position.getY(), position.getZ(),
+            offsetFromPivot.getX(), offsetFromPivot.getY(), offsetFromPivot.getZ(),
+            size.getX(), size.getY(), size.getZ(),
+            rotation.getX(), rotation.getY(), rotation.getZ(),
+            texOffset.getX(), texOffset.getY());
+    }
+    
+    @Override
+    public void visitBlockFields(@NotNull String name,
+                                 @NotNull double[] position,
+                                 @NotNull double[] offsetFromPivot,
+                                 @NotNull int[] size,
+                                 @NotNull double[] rotation,
+                                 @NotNull int[] texOffset) {
+        addBlock(name,
+            position[0], position[1], position[2],
+            offsetFromPivot[0], offsetFromPivot[1], offsetFromPivot[2],
+            size[0], size[1], size[2],
+            rotation[0], rotation[1], rotation[2],
+            texOffset[0], texOffset[1]);
+    }
+    
+    private void addBlock(String name,
+                          double x, double y, double z,
+                          double offsetX, double offsetY, double offsetZ,
+                          int sizeX, int sizeY, int sizeZ,
+                          double rotationX, double rotationY, double rotationZ,
+                          int texOffsetX, int texOffsetY) {
+        int parent = depth == 0? -1 : openBlocks[depth - 1];
+        int block = model.addBlock(parent, name, x, y, z, offsetX, offsetY, offsetZ, sizeX, sizeY, sizeZ,
+            rotationX, rotationY, rotationZ, texOffsetX, texOffsetY);
+        
+        if (depth == openBlocks.length)
+            openBlocks = Arrays.copyOf(openBlocks, depth * 2);
+        openBlocks[depth++] = block;
+    }
+    
+    @Override
+    public void visitBlockEnd() {
+        model.endBlock(openBlocks[--depth]);
+    }
+    
+    /**
+     * Returns the model built from all visited blocks.
+     *
+     * @return the model
+     * @throws IllegalStateException if no title was visited
+     */
+    @NotNull
+    public CompactCraftStudioModel getModel() {
+        if (!hasTitle)
+            throw new IllegalStateException("model has no title");
+        return model;
+    }
+    
+}
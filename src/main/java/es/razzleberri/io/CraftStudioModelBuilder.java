@@ -0,0 +1,61 @@
+package es.razzleberri.io;
+
+import es.razzleberri.*;
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.*;
+
+import java.util.*;
+
+/**
+ * A {@link CraftStudioVisitor} which builds a {@link CraftStudioModel} from the visited blocks.
+ */
+public class CraftStudioModelBuilder implements CraftStudioVisitor {
+    
+    @Nullable
+    private String title;
+    private final List<CraftStudioBlock> blocks = new ArrayList<>(32);
+    private final Deque<CraftStudioBlock> openBlocks = new ArrayDeque<>();
+    
+    @Override
+    public void visitTitle(@NotNull String title) {
+        this.title = title;
+    }
+    
+    @Override
+    public void visitBlockFields(@NotNull String name,
+                                 @NotNull Vec3d position,
+                                 @NotNull Vec3d offsetFromPivot,
+                                 @NotNull Vec3i size,
+                                 @NotNull Vec3d rotation,
+                                 @NotNull Vec2i texOffset) {
+        CraftStudioBlock block = new CraftStudioBlock(name, position, offsetFromPivot, size, rotation, texOffset);
+        if (openBlocks.isEmpty())
+            blocks.add(block);
+        else
+            openBlocks.peek().addChild(block);
+        openBlocks.push(block);
+    }
+    
+    @Override
+    public void visitBlockEnd() {
+        openBlocks.pop();
+    }
+    
+    /**
+     * Returns the model built from all visited blocks.
+     *
+     * @return the model
+     * @throws IllegalStateException if no title was visited
+     */
+    @NotNull
+    public CraftStudioModel getModel() {
+        if (title == null)
+            throw new IllegalStateException("model has no title");
+        
+        CraftStudioModel model = new CraftStudioModel(title);
+        for (CraftStudioBlock block : blocks)
+            model.addBlock(block);
+        return model;
+    }
+    
+}
@@ -0,0 +1,238 @@
+package es.razzleberri.io;
+
+import com.google.gson.stream.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads a CraftStudio model token by token and reports its contents to a {@link CraftStudioVisitor}.
+ * <p>
+ *     Unlike a tree-based parser, no intermediate representation of the JSON document is built, so only the blocks
+ *     that the visitor decides to keep occupy memory.
+ * </p>
+ * <p>
+ *     The fields of a block are reported together once they have all been read, which requires the
+ *     {@code "children"} of a block to follow its other fields, as is the case for all files written by CraftStudio.
+ * </p>
+ */
+public class CraftStudioReader {
+    
+    @NotNull
+    private final JsonReader json;
+    /** the state of every open block, indexed by depth */
+    private final List<BlockFrame> frames = new ArrayList<>();
+    
+    public CraftStudioReader(@NotNull Reader reader) {
+        this.json = new JsonReader(reader);
+        this.json.setLenient(true);
+    }
+    
+    /**
+     * Reads the entire model, reporting its contents to the given visitor.
+     *
+     * @param visitor the visitor
+     * @throws IOException if the model can not be read or is malformed
+     */
+    public void accept(@NotNull CraftStudioVisitor visitor) throws IOException {
+        try {
+            readModel(visitor);
+        } catch (IllegalStateException | NumberFormatException ex) {
+            throw new IOException(ex);
+        }
+    }
+    
+    private void readModel(CraftStudioVisitor visitor) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "title": {
+                    visitor.visitTitle(json.nextString());
+                    break;
+                }
+                case "tree": {
+                    json.beginArray();
+                    while (json.hasNext())
+                        readBlock(visitor);
+                    json.endArray();
+                    break;
+                }
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+        
+        if (json.peek() != JsonToken.END_DOCUMENT)
+            throw new IOException("model must not be followed by further content");
+    }
+    
+    /**
+     * Reads a top-level block including all of its descendants.
+     * <p>
+     * Nested blocks are read iteratively, keeping the state of every open block in a {@link BlockFrame} on an explicit
+     * stack, so that the nesting depth is only limited by the heap. The frames are reused for all blocks.
+     */
+    private void readBlock(CraftStudioVisitor visitor) throws IOException {
+        int depth = 0;
+        BlockFrame frame = beginBlock(visitor, depth++);
+        
+        while (true) {
+            if (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "name": frame.name = json.nextString(); break;
+                    case "position": {
+                        readVector(frame.position, "vec3d");
+                        frame.vectors |= BlockFrame.POSITION;
+                        break;
+                    }
+                    case "offsetFromPivot": {
+                        readVector(frame.offsetFromPivot, "vec3d");
+                        frame.vectors |= BlockFrame.OFFSET_FROM_PIVOT;
+                        break;
+                    }
+                    case "size": {
+                        readVector(frame.size, "vec3i");
+                        frame.vectors |= BlockFrame.SIZE;
+                        break;
+                    }
+                    case "rotation": {
+                        readVector(frame.rotation, "vec3d");
+                        frame.vectors |= BlockFrame.ROTATION;
+                        break;
+                    }
+                    case "texOffset": {
+                        readVector(frame.texOffset, "vec2i");
+                        frame.vectors |= BlockFrame.TEX_OFFSET;
+                        break;
+                    }
+                    case "children": {
+                        visitFields(visitor, frame);
+                        frame.fieldsVisited = true;
+                        visitor.visitChildrenStart();
+                        json.beginArray();
+                        if (json.hasNext()) {
+                            frame = beginBlock(visitor, depth++);
+                        } else {
+                            json.endArray();
+                            visitor.visitChildrenEnd();
+                        }
+                        break;
+                    }
+                    case "vertexCoords": {
+                        frame.stretched = true;
+                        json.skipValue();
+                        break;
+                    }
+                    default: json.skipValue();
+                }
+                continue;
+            }
+            
+            json.endObject();
+            if (!frame.fieldsVisited)
+                visitFields(visitor, frame);
+            if (frame.stretched)
+                System.err.println("WARNING: Cube \"" + frame.name + "\" has stretch which must be ignored.");
+            visitor.visitBlockEnd();
+            
+            if (--depth == 0)
+                return;
+            // continue with the next sibling or with the remaining fields of the parent
+            if (json.hasNext()) {
+                frame = beginBlock(visitor, depth++);
+            } else {
+                json.endArray();
+                visitor.visitChildrenEnd();
+                frame = frames.get(depth - 1);
+            }
+        }
+    }
+    
+    private BlockFrame beginBlock(CraftStudioVisitor visitor, int depth) throws IOException {
+        if (depth == frames.size())
+            frames.add(new BlockFrame());
+        BlockFrame frame = frames.get(depth);
+        frame.reset();
+        
+        visitor.visitBlockStart();
+        json.beginObject();
+        return frame;
+    }
+    
+    private static void visitFields(CraftStudioVisitor visitor, BlockFrame frame) throws IOException {
+        requireField(frame.name != null, "name");
+        requireField(frame.has(BlockFrame.POSITION), "position");
+        requireField(frame.has(BlockFrame.OFFSET_FROM_PIVOT), "offsetFromPivot");
+        requireField(frame.has(BlockFrame.SIZE), "size");
+        requireField(frame.has(BlockFrame.ROTATION), "rotation");
+        requireField(frame.has(BlockFrame.TEX_OFFSET), "texOffset");
+        visitor.visitBlockFields(frame.name, frame.position, frame.offsetFromPivot, frame.size, frame.rotation,
+            frame.texOffset);
+    }
+    
+    private static void requireField(boolean present, String field) throws IOException {
+        if (!present)
+            throw new IOException("block is missing \"" + field + "\" before its children");
+    }
+    
+    /**
+     * Reads a vector of exactly as many numbers as the given array holds into the array.
+     */
+    private void readVector(double[] values, String type) throws IOException {
+        json.beginArray();
+        int length = 0;
+        for (; json.hasNext(); length++) {
+            if (length == values.length)
+                throw new IOException(type + " must be " + values.length + " elements long");
+            values[length] = json.nextDouble();
+        }
+        json.endArray();
+        if (length != values.length)
+            throw new IOException(type + " must be " + values.length + " elements long");
+    }
+    
+    /**
+     * Reads a vector of exactly as many numbers as the given array holds into the array, dropping their fractions.
+     */
+    private void readVector(int[] values, String type) throws IOException {
+        json.beginArray();
+        int length = 0;
+        for (; json.hasNext(); length++) {
+            if (length == values.length)
+                throw new IOException(type + " must be " + values.length + " elements long");
+            values[length] = (int) json.nextDouble();
+        }
+        json.endArray();
+        if (length != values.length)
+            throw new IOException(type + " must be " + values.length + " elements long");
+    }
+    
+    /**
+     * The fields of a block which have been read so far. The components of vectors are read into arrays which are
+     * reused for all blocks at the same depth.
+     */
+    private final static class BlockFrame {
+        
+        final static int POSITION = 1, OFFSET_FROM_PIVOT = 2, SIZE = 4, ROTATION = 8, TEX_OFFSET = 16;
+        
+        String name;
+        final double[] position = new double[3], offsetFromPivot = new double[3], rotation = new double[3];
+        final int[] size = new int[3], texOffset = new int[2];
+        /** the flags of the vectors which have been read */
+        int vectors;
+        boolean fieldsVisited, stretched;
+        
+        boolean has(int vector) {
+            return (vectors & vector) != 0;
+        }
+        
+        void reset() {
+            name = null;
+            vectors = 0;
+            fieldsVisited = stretched = false;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,93 @@
+package es.razzleberri.io;
+
+import es.razzleberri.util.*;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives the contents of a CraftStudio model while it is being read by a {@link CraftStudioReader}.
+ * <p>
+ *     Every block produces the sequence {@code visitBlockStart, visitBlockFields, [visitChildrenStart, ...,
+ *     visitChildrenEnd], visitBlockEnd}, with the children of the block being visited in between. Blocks are visited
+ *     in the order in which they appear in the file.
+ * </p>
+ * <p>
+ *     All methods do nothing by default, so implementations only need to override the events they are interested in.
+ * </p>
+ */
+public interface CraftStudioVisitor {
+    
+    /**
+     * Visits the title of the model. The title may be visited before or after the blocks, depending on the order in
+     * the file.
+     *
+     * @param title the title
+     */
+    default void visitTitle(@NotNull String title) {}
+    
+    /**
+     * Visits the beginning of a block.
+     */
+    default void visitBlockStart() {}
+    
+    /**
+     * Visits the fields of the current block.
+     *
+     * @param name the name of the block
+     * @param position the position of the block
+     * @param offsetFromPivot the offset of the block from its pivot
+     * @param size the size of the block
+     * @param rotation the rotation of the block in degrees
+     * @param texOffset the texture offset of the block
+     */
+    default void visitBlockFields(@NotNull String name,
+                                  @NotNull Vec3d position,
+                                  @NotNull Vec3d offsetFromPivot,
+                                  @NotNull Vec3i size,
+                                  @NotNull Vec3d rotation,
+                                  @NotNull Vec2i texOffset) {}
+    
+    /**
+     * Visits the fields of the current block as arrays of their components. The arrays are reused for other blocks, so
+     * they must not be kept after this method returns.
+     * <p>
+     * By default, the components are wrapped into vectors and passed to
+     * {@link #visitBlockFields(String, Vec3d, Vec3d, Vec3i, Vec3d, Vec2i)}, visitors which store the components
+     * themselves can override this method instead to avoid creating these vectors.
+     *
+     * @param name the name of the block
+     * @param position the 3 components of the position of the block
+     * @param offsetFromPivot the 3 components of the offset of the block from its pivot
+     * @param size the 3 components of the size of the block
+     * @param rotation the 3 components of the rotation of the block in degrees
+     * @param texOffset the 2 components of the texture offset of the block
+     */
+    default void visitBlockFields(@NotNull String name,
+                                  @NotNull double[] position,
+                                  @NotNull double[] offsetFromPivot,
+                                  @NotNull int[] size,
+                                  @NotNull double[] rotation,
+                                  @NotNull int[] texOffset) {
+        visitBlockFields(name,
+            new Vec3d(position[0], position[1], position[2]),
+            new Vec3d(offsetFromPivot[0], offsetFromPivot[1], offsetFromPivot[2]),
+            new Vec3i(size[0], size[1], size[2]),
+            new Vec3d(rotation[0], rotation[1], rotation[2]),
+            new Vec2i(texOffset[0], texOffset[1]));
+    }
+    
+    /**
+     * Visits the beginning of the children of the current block.
+     */
+    default void visitChildrenStart() {}
+    
+    /**
+     * Visits the end of the children of the current block.
+     */
+    default void visitChildrenEnd() {}
+    
+    /**
+     * Visits the end of the current block.
+     */
+    default void visitBlockEnd() {}
+    
+}
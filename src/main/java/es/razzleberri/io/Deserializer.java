@@ -4,6 +4,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
 /**
  * Throwaway object only meant to perform one deserialization of a stream.
@@ -31,7 +32,21 @@ public interface Deserializer<T> {
     public abstract T fromStream(InputStream stream) throws IOException;
 
     /**
-     * Deserializes an object from a {@link File} using a {@link FileInputStream}.
+     * Deserializes an object from the remaining bytes of a {@link ByteBuffer} using a {@link ByteBufferInputStream}.
+     * The position of the buffer is not modified.
+     *
+     * @param buffer the buffer
+     * @return the deserialized object
+     * @throws IOException if the deserialization fails
+     */
+    @NotNull
+    public default T fromByteBuffer(ByteBuffer buffer) throws IOException {
+        return fromStream(new ByteBufferInputStream(buffer));
+    }
+    
+    /**
+     * Deserializes an object from a {@link File} by reading it with {@link FileContent#read(java.nio.file.Path)},
+     * which memory-maps large files.
      *
      * @param file the file
      * @return the deserialized object
@@ -39,11 +54,7 @@ public interface Deserializer<T> {
      */
     @NotNull
     public default T fromFile(File file) throws IOException {
-        try (InputStream stream = new FileInputStream(file)) {
-            try (BufferedInputStream buffStream = new BufferedInputStream(stream)) {
-                return fromStream(buffStream);
-            }
-        }
+        return fromByteBuffer(FileContent.read(file.toPath()));
     }
 
     /**
@@ -0,0 +1,127 @@
+package es.razzleberri.io;
+
+/**
+ * Writes doubles into char arrays exactly as {@link Double#toString(double)} would, without creating any objects for
+ * integers and decimals with up to six fraction digits.
+ * <p>
+ *     Most coordinates of CraftStudio models are integers or have very few decimals, such as {@code 0.5} or
+ *     {@code 24.25}. A value whose magnitude lies in the range in which {@link Double#toString(double)} uses plain
+ *     notation is scaled by powers of ten until it becomes an integer {@code m}, such that {@code m / 10^k} is the
+ *     value again. The first such decimal is the shortest decimal which rounds to the value, and it is the only one
+ *     with that many fraction digits, so it is the decimal chosen by {@link Double#toString(double)}. Its digits are
+ *     written straight from {@code m}. All other values fall back to {@link Double#toString(double)} and create a
+ *     string. These include most rotations of rotated bones, whose rounding errors such as {@code -44.40850000000001}
+ *     need more digits, so entity files of rotated models are not written without garbage.
+ * </p>
+ */
+final class DoubleFormatter {
+    
+    /**
+     * The maximum number of chars written for a single double, which is the length of the longest result of
+     * {@link Double#toString(double)}.
+     */
+    final static int MAX_CHARS = 26;
+    
+    /** the maximum number of fraction digits of the fast path */
+    private final static int MAX_FRACTION_DIGITS = 6;
+    /** the range in which {@link Double#toString(double)} uses plain notation */
+    private final static double MIN_PLAIN = 1e-3, MAX_PLAIN = 1e7;
+    
+    private final static double[] POWERS = new double[MAX_FRACTION_DIGITS + 1];
+    private final static long[] LONG_POWERS = new long[MAX_FRACTION_DIGITS + 1];
+    
+    static {
+        POWERS[0] = 1;
+        LONG_POWERS[0] = 1;
+        for (int i = 1; i <= MAX_FRACTION_DIGITS; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+            LONG_POWERS[i] = LONG_POWERS[i - 1] * 10;
+        }
+    }
+    
+    private DoubleFormatter() {}
+    
+    /**
+     * Writes a double into a char array.
+     *
+     * @param value the double
+     * @param chars the array, which must have at least {@link #MAX_CHARS} chars left after {@code offset}
+     * @param offset the index of the first char to write
+     * @return the index after the last written char
+     */
+    static int format(double value, char[] chars, int offset) {
+        if (value == 0) {
+            if (Double.doubleToRawLongBits(value) != 0)
+                chars[offset++] = '-';
+            chars[offset++] = '0';
+            chars[offset++] = '.';
+            chars[offset++] = '0';
+            return offset;
+        }
+        
+        final double abs = Math.abs(value);
+        if (abs >= MIN_PLAIN && abs < MAX_PLAIN) {
+            for (int digits = 0; digits <= MAX_FRACTION_DIGITS; digits++) {
+                final double scaled = Math.rint(abs * POWERS[digits]);
+                if (scaled / POWERS[digits] == abs) {
+                    if (value < 0)
+                        chars[offset++] = '-';
+                    return writeDecimal((long) scaled, digits, chars, offset);
+                }
+            }
+        }
+        
+        String string = Double.toString(value);
+        string.getChars(0, string.length(), chars, offset);
+        return offset + string.length();
+    }
+    
+    /**
+     * Writes {@code unscaled / 10^digits} with at least one fraction digit.
+     */
+    private static int writeDecimal(long unscaled, int digits, char[] chars, int offset) {
+        final long integer = unscaled / LONG_POWERS[digits];
+        long fraction = unscaled % LONG_POWERS[digits];
+        offset = writeLong(integer, chars, offset);
+        chars[offset++] = '.';
+        if (digits == 0) {
+            chars[offset++] = '0';
+            return offset;
+        }
+        // the fraction digits, including leading zeros, from the last one backwards
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return offset + digits;
+    }
+    
+    /**
+     * Writes a long into a char array exactly as {@link Long#toString(long)} would.
+     *
+     * @param value the long
+     * @param chars the array, which must have at least 20 chars left after {@code offset}
+     * @param offset the index of the first char to write
+     * @return the index after the last written char
+     */
+    static int writeLong(long value, char[] chars, int offset) {
+        if (value == Long.MIN_VALUE) {
+            String string = Long.toString(value);
+            string.getChars(0, string.length(), chars, offset);
+            return offset + string.length();
+        }
+        if (value < 0) {
+            chars[offset++] = '-';
+            value = -value;
+        }
+        int length = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10)
+            length++;
+        for (int i = offset + length - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + length;
+    }
+    
+}
@@ -0,0 +1,62 @@
+package es.razzleberri.io;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Reads the whole content of files into {@link ByteBuffer}s.
+ */
+public final class FileContent {
+    
+    /**
+     * The size from which on files are memory-mapped instead of being read. Mapping a file is more expensive than
+     * reading a small file, but saves copying large files through the heap.
+     */
+    public final static long MAP_THRESHOLD = 1 << 20;
+    
+    private FileContent() {}
+    
+    /**
+     * Reads the content of a file. Files of at least {@link #MAP_THRESHOLD} bytes are memory-mapped, smaller files are
+     * read into a heap buffer in one go.
+     *
+     * @param file the file
+     * @return a read-only buffer containing the content of the file
+     * @throws IOException if the file can not be read or is larger than 2 GiB
+     * @see #read(Path, boolean)
+     */
+    @NotNull
+    public static ByteBuffer read(@NotNull Path file) throws IOException {
+        return read(file, true);
+    }
+    
+    /**
+     * Reads the content of a file.
+     * <p>
+     * A mapping is only released once its buffer is garbage collected, and until then some platforms, such as Windows,
+     * don't allow the file to be replaced or deleted. Files which are still being edited, such as the models of watch
+     * mode, should therefore not be mapped.
+     *
+     * @param file the file
+     * @param map whether files of at least {@link #MAP_THRESHOLD} bytes are memory-mapped instead of being read into a
+     *            heap buffer
+     * @return a read-only buffer containing the content of the file
+     * @throws IOException if the file can not be read or is larger than 2 GiB
+     */
+    @NotNull
+    public static ByteBuffer read(@NotNull Path file, boolean map) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large: " + size + " bytes");
+            if (map && size >= MAP_THRESHOLD)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file)).asReadOnlyBuffer();
+    }
+    
+}
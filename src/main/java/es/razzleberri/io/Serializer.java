@@ -27,33 +27,30 @@ public interface Serializer<T> {
     public void toStream(T object, OutputStream stream) throws IOException;
 
     /**
-     * Writes the object into a {@link File} using a {@link FileOutputStream}.
+     * Writes the object into a {@link File} using an {@link AtomicFileOutputStream}. The file is only replaced once
+     * the object has been written completely, so a failed serialization leaves the file untouched.
      *
      * @param object the object
      * @param file the file
      * @throws IOException if an I/O error occurs
      */
     public default void toFile(T object, File file) throws IOException {
-        try (FileOutputStream stream = new FileOutputStream(file)) {
-            try (BufferedOutputStream buffStream = new BufferedOutputStream(stream)) {
-                toStream(object, buffStream);
-            }
+        try (AtomicFileOutputStream stream = new AtomicFileOutputStream(file.toPath())) {
+            toStream(object, stream);
+            stream.commit();
         }
     }
     
     /**
-     * Writes the object into a {@link File} specified by path using a {@link FileOutputStream}.
+     * Writes the object into a {@link File} specified by path using an {@link AtomicFileOutputStream}.
      *
      * @param object the object
      * @param path the file
      * @throws IOException if an I/O error occurs
+     * @see #toFile(Object, File)
      */
     public default void toFile(T object, String path) throws IOException {
-        try (FileOutputStream stream = new FileOutputStream(new File(path))) {
-            try (BufferedOutputStream buffStream = new BufferedOutputStream(stream)) {
-                toStream(object, buffStream);
-            }
-        }
+        toFile(object, new File(path));
     }
 
     /**
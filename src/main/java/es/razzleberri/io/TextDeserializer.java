@@ -3,6 +3,8 @@ package es.razzleberri.io;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Throwaway object only meant to perform one deserialization of a reader.
@@ -51,20 +53,39 @@ public interface TextDeserializer<T> extends Deserializer<T> {
         return fromReader(new StringReader(str));
     }
     
+    /**
+     * Deserializes an object from a UTF-8 encoded {@link InputStream} using an {@link InputStreamReader}.
+     *
+     * @param stream the stream
+     * @return the deserialized object
+     * @throws IOException if the deserialization fails
+     */
     @NotNull
     @Override
     default T fromStream(InputStream stream) throws IOException {
-        try (Reader reader = new InputStreamReader(stream)) {
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
             return fromReader(reader);
         }
     }
     
+    /**
+     * Deserializes an object from a UTF-8 encoded {@link ByteBuffer} using a {@link ByteBufferReader}, which decodes
+     * the buffer without copying it first.
+     *
+     * @param buffer the buffer
+     * @return the deserialized object
+     * @throws IOException if the deserialization fails
+     */
+    @NotNull
+    @Override
+    default T fromByteBuffer(ByteBuffer buffer) throws IOException {
+        return fromReader(new ByteBufferReader(buffer));
+    }
+    
     @NotNull
     @Override
-    default T fromFile(File file) throws IOException {
-        try (Reader reader = new FileReader(file)) {
-            return fromReader(reader);
-        }
+    default T fromBytes(byte[] bytes) throws IOException {
+        return fromByteBuffer(ByteBuffer.wrap(bytes));
     }
 
 
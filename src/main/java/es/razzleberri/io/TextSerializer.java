@@ -3,6 +3,7 @@ package es.razzleberri.io;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 public interface TextSerializer<T> extends Serializer<T> {
 
@@ -43,7 +44,7 @@ public interface TextSerializer<T> extends Serializer<T> {
     }
 
     /**
-     * Writes the object into an {@link OutputStream} using an {@link OutputStreamWriter}.
+     * Writes the object into an {@link OutputStream} using a UTF-8 {@link OutputStreamWriter}.
      *
      * @param object the object
      * @param stream the stream
@@ -51,13 +52,14 @@ public interface TextSerializer<T> extends Serializer<T> {
      */
     @Override
     default void toStream(T object, OutputStream stream) throws IOException {
-        Writer writer = new OutputStreamWriter(stream);
+        Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
         toWriter(object, writer);
         writer.flush();
     }
 
     /**
-     * Writes the object into a {@link File} using an {@link FileWriter}.
+     * Writes the object into a {@link File} using an {@link AtomicFileWriter}, encoding it as UTF-8. The file is only
+     * replaced once the object has been written completely.
      *
      * @param object the object
      * @param file the file
@@ -65,8 +67,9 @@ public interface TextSerializer<T> extends Serializer<T> {
      */
     @Override
     default void toFile(T object, File file) throws IOException {
-        try (Writer writer = new FileWriter(file)) {
+        try (AtomicFileWriter writer = new AtomicFileWriter(file.toPath())) {
             toWriter(object, writer);
+            writer.commit();
         }
     }
 
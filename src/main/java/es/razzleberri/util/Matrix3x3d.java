@@ -76,7 +76,7 @@ public class Matrix3x3d {
     // X Y Z
     
     public static Matrix3x3d fromEulerXYZ(double x, double y, double z) {
-        return fromRotX(x).times(fromRotY(y)).times(fromRotZ(z));
+        return new Matrix3x3d().setFromEulerXYZ(x, y, z);
     }
     
     public static Matrix3x3d fromEulerXYZ(Vec3d v) {
@@ -86,7 +86,7 @@ public class Matrix3x3d {
     // X Z Y
     
     public static Matrix3x3d fromEulerXZY(double x, double y, double z) {
-        return fromRotX(x).times(fromRotZ(z)).times(fromRotY(y));
+        return new Matrix3x3d().setFromEulerXZY(x, y, z);
     }
     
     public static Matrix3x3d fromEulerXZY(Vec3d v) {
@@ -96,7 +96,7 @@ public class Matrix3x3d {
     // Z X Y
     
     public static Matrix3x3d fromEulerZXY(double x, double y, double z) {
-        return fromRotZ(z).times(fromRotX(x)).times(fromRotY(y));
+        return new Matrix3x3d().setFromEulerZXY(x, y, z);
     }
     
     public static Matrix3x3d fromEulerZXY(Vec3d v) {
@@ -106,7 +106,7 @@ public class Matrix3x3d {
     // Y X Z
     
     public static Matrix3x3d fromEulerYXZ(double x, double y, double z) {
-        return fromRotY(y).times(fromRotX(x)).times(fromRotZ(z));
+        return new Matrix3x3d().setFromEulerYXZ(x, y, z);
     }
     
     public static Matrix3x3d fromEulerYXZ(Vec3d v) {
@@ -116,7 +116,7 @@ public class Matrix3x3d {
     // Y Z X
     
     public static Matrix3x3d fromEulerYZX(double x, double y, double z) {
-        return fromRotY(y).times(fromRotZ(z)).times(fromRotX(x));
+        return new Matrix3x3d().setFromEulerYZX(x, y, z);
     }
     
     public static Matrix3x3d fromEulerYZX(Vec3d v) {
@@ -126,7 +126,7 @@ public class Matrix3x3d {
     // Z Y X
     
     public static Matrix3x3d fromEulerZYX(double x, double y, double z) {
-        return fromRotZ(z).times(fromRotY(y)).times(fromRotX(x));
+        return new Matrix3x3d().setFromEulerZYX(x, y, z);
     }
     
     public static Matrix3x3d fromEulerZYX(Vec3d v) {
@@ -149,6 +149,10 @@ public class Matrix3x3d {
         this(new double[9]);
     }
     
+    public Matrix3x3d(Matrix3x3d m) {
+        this(m.content.clone());
+    }
+    
     // GETTERS
     
     public double get(int i, int j) {
@@ -178,6 +182,12 @@ public class Matrix3x3d {
     
     // X_l Y_l Z_l
     public Vec3d getLXLYLZEulerRotation() {
+        double[] result = new double[3];
+        getLXLYLZEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    public void getLXLYLZEulerRotation(double[] result) {
         double x = atan2(get(1, 2), get(2, 2));
         double cosY = hypot(get(0, 0), get(0, 1));
         double y = atan2(-get(0, 2), cosY);
@@ -186,12 +196,20 @@ public class Matrix3x3d {
         double sinZ = sinX * get(2, 0) - cosX * get(1, 0);
         double cosZ = cosX * get(1, 1) - sinX * get(2, 1);
         double z = atan2(sinZ, cosZ);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // X_r Y_r Z_r
-    @SuppressWarnings("Duplicates")
     public Vec3d getXYZEulerRotation() {
+        double[] result = new double[3];
+        getXYZEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    @SuppressWarnings("Duplicates")
+    public void getXYZEulerRotation(double[] result) {
         double x = atan2(-get(1, 2), get(2, 2));
         double cosY = hypot(get(0, 0), get(0, 1));
         double y = atan2(get(0, 2), cosY);
@@ -200,12 +218,20 @@ public class Matrix3x3d {
         double sinZ = sinX * get(2, 0) + cosX * get(1, 0);
         double cosZ = sinX * get(2, 1) + cosX * get(1, 1);
         double z = atan2(sinZ, cosZ);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // X_r Y_r Z_l
-    @SuppressWarnings("Duplicates")
     public Vec3d getXYLZEulerRotation() {
+        double[] result = new double[3];
+        getXYLZEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    @SuppressWarnings("Duplicates")
+    public void getXYLZEulerRotation(double[] result) {
         double x = atan2(-get(1, 2), get(2, 2));
         double cosY = hypot(get(0, 0), get(0, 1));
         double y = atan2(get(0, 2), cosY);
@@ -214,13 +240,21 @@ public class Matrix3x3d {
         double sinZ = -cosX * get(1, 0) - sinX * get(2, 0);
         double cosZ = cosX * get(1, 1) + sinX * get(2, 1);
         double z = atan2(sinZ, cosZ);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // XZY
     
     // X_r Z_r Y_r
     public Vec3d getXZYEulerRotation() {
+        double[] result = new double[3];
+        getXZYEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    public void getXZYEulerRotation(double[] result) {
         double x = atan2(get(2, 1), get(1, 1));
         double cosZ = hypot(get(0, 0), get(0, 2));
         double z = atan2(-get(0, 1), cosZ);
@@ -229,13 +263,21 @@ public class Matrix3x3d {
         double sinY = sinX * get(1, 0) - cosX * get(2, 0);
         double cosY = cosX * get(2, 2) - sinX * get(1, 2);
         double y = atan2(sinY, cosY);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // YXZ
     
     // Y_r X_r Z_r
     public Vec3d getYXZEulerRotation() {
+        double[] result = new double[3];
+        getYXZEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    public void getYXZEulerRotation(double[] result) {
         double y = atan2(get(0, 2), get(2, 2));
         double cosX = hypot(get(1, 0), get(1, 1));
         double x = atan2(-get(1, 2), cosX);
@@ -244,12 +286,20 @@ public class Matrix3x3d {
         double sinZ = sinY * get(2, 1) - cosY * get(0, 1);
         double cosZ = cosY * get(0, 0) - sinY * get(2, 0);
         double z = atan2(sinZ, cosZ);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // YZX
     
     public Vec3d getYZXEulerRotation() {
+        double[] result = new double[3];
+        getYZXEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    public void getYZXEulerRotation(double[] result) {
         double y = atan2(-get(2, 0), get(0, 0));
         double cosZ = hypot(get(1, 1), get(1, 2));
         double z = atan2(get(1, 0), cosZ);
@@ -258,14 +308,22 @@ public class Matrix3x3d {
         double sinX = sinY * get(0, 1) + cosY * get(2, 1);
         double cosX = sinY * get(0, 2) + cosY * get(2, 2);
         double x = atan2(sinX, cosX);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // ZYX
     
     // Z_l Y_r X_r
-    @SuppressWarnings("Duplicates")
     public Vec3d getLZYXEulerRotation() {
+        double[] result = new double[3];
+        getLZYXEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    @SuppressWarnings("Duplicates")
+    public void getLZYXEulerRotation(double[] result) {
         double z = atan2(-get(1, 0), get(0, 0));
         double cosY = hypot(get(2, 1), get(2, 2));
         double y = atan2(-get(2, 0), cosY);
@@ -274,12 +332,20 @@ public class Matrix3x3d {
         double sinX = -sinZ * get(0, 2) - cosZ * get(1, 2);
         double cosX = sinZ * get(0, 1) + cosZ * get(1, 1);
         double x = atan2(sinX, cosX);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // Z_r Y_r X_r
-    @SuppressWarnings("Duplicates")
     public Vec3d getZYXEulerRotation() {
+        double[] result = new double[3];
+        getZYXEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    @SuppressWarnings("Duplicates")
+    public void getZYXEulerRotation(double[] result) {
         double z = atan2(get(1, 0), get(0, 0));
         double cosY = hypot(get(2, 1), get(2, 2));
         double y = atan2(-get(2, 0), cosY);
@@ -288,13 +354,21 @@ public class Matrix3x3d {
         double sinX = sinZ * get(0, 2) - cosZ * get(1, 2);
         double cosX = cosZ * get(1, 1) - sinZ * get(0, 1);
         double x = atan2(sinX, cosX);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     // ZXY
     
     // Z_r Y_r X_r
     public Vec3d getZXYEulerRotation() {
+        double[] result = new double[3];
+        getZXYEulerRotation(result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    public void getZXYEulerRotation(double[] result) {
         double z = atan2(-get(0, 1), get(1, 1));
         double cosX = hypot(get(2, 0), get(2, 2));
         double x = atan2(get(2, 1), cosX);
@@ -303,29 +377,22 @@ public class Matrix3x3d {
         double sinY = sinZ * get(1, 2) + cosZ * get(0, 2);
         double cosY = sinZ * get(1, 0) + cosZ * get(0, 0);
         double y = atan2(sinY, cosY);
-        return new Vec3d(x, y, z);
+        result[0] = x;
+        result[1] = y;
+        result[2] = z;
     }
     
     /**
      * Multiplies this matrix with another matrix which will be the right hand side of the matrix multiplication.
+     * <p>
+     * Neither matrix is modified, use {@link #postMultiply(Matrix3x3d)} to avoid allocating a new matrix.
      *
      * @param m the right hand side matrix
+     * @return a new matrix containing the product
      */
     @NotNull
     public Matrix3x3d times(Matrix3x3d m) {
-        double[] result = new double[3 * 3];
-        
-        /* outer loop for acquiring the position (i, j) in the product matrix */
-        for (int i = 0; i < 3; i++)
-            for (int j = 0; j < 3; j++) {
-                final int index = i * 3 + j;
-                
-                /* inner loop for calculating the result at (i, j) */
-                for (int k = 0, l = 0; k < 3 && l < 3; k++, l++)
-                    result[index] += this.get(i, k) * m.get(l, j);
-            }
-        
-        return new Matrix3x3d(result);
+        return new Matrix3x3d(this).postMultiply(m);
     }
     
     public Vec3d times(Vec3d v) {
@@ -355,6 +422,163 @@ public class Matrix3x3d {
             content[k] *= factor;
     }
     
+    // IN-PLACE OPERATIONS
+    
+    @NotNull
+    public Matrix3x3d set(Matrix3x3d m) {
+        System.arraycopy(m.content, 0, content, 0, 9);
+        return this;
+    }
+    
+    @NotNull
+    public Matrix3x3d setIdentity() {
+        Arrays.fill(content, 0);
+        content[0] = content[4] = content[8] = 1;
+        return this;
+    }
+    
+    /**
+     * Sets this matrix to the product {@code a * b}. Either of the matrices may be this matrix itself.
+     * <p>
+     * Each entry ends with {@code + 0.0} so that it never becomes {@code -0.0}, which keeps the results identical to
+     * summing up the products starting from zero.
+     *
+     * @param a the left hand side matrix
+     * @param b the right hand side matrix
+     * @return this matrix
+     */
+    @NotNull
+    public Matrix3x3d setProduct(Matrix3x3d a, Matrix3x3d b) {
+        final double[] l = a.content, r = b.content;
+        final double
+            l00 = l[0], l01 = l[1], l02 = l[2],
+            l10 = l[3], l11 = l[4], l12 = l[5],
+            l20 = l[6], l21 = l[7], l22 = l[8],
+            r00 = r[0], r01 = r[1], r02 = r[2],
+            r10 = r[3], r11 = r[4], r12 = r[5],
+            r20 = r[6], r21 = r[7], r22 = r[8];
+        
+        content[0] = l00 * r00 + l01 * r10 + l02 * r20 + 0.0;
+        content[1] = l00 * r01 + l01 * r11 + l02 * r21 + 0.0;
+        content[2] = l00 * r02 + l01 * r12 + l02 * r22 + 0.0;
+        content[3] = l10 * r00 + l11 * r10 + l12 * r20 + 0.0;
+        content[4] = l10 * r01 + l11 * r11 + l12 * r21 + 0.0;
+        content[5] = l10 * r02 + l11 * r12 + l12 * r22 + 0.0;
+        content[6] = l20 * r00 + l21 * r10 + l22 * r20 + 0.0;
+        content[7] = l20 * r01 + l21 * r11 + l22 * r21 + 0.0;
+        content[8] = l20 * r02 + l21 * r12 + l22 * r22 + 0.0;
+        return this;
+    }
+    
+    /**
+     * Multiplies this matrix with another matrix from the right, so that this matrix becomes {@code this * m}.
+     *
+     * @param m the right hand side matrix
+     * @return this matrix
+     */
+    @NotNull
+    public Matrix3x3d postMultiply(Matrix3x3d m) {
+        return setProduct(this, m);
+    }
+    
+    /**
+     * Multiplies this matrix with another matrix from the left, so that this matrix becomes {@code m * this}.
+     *
+     * @param m the left hand side matrix
+     * @return this matrix
+     */
+    @NotNull
+    public Matrix3x3d preMultiply(Matrix3x3d m) {
+        return setProduct(m, this);
+    }
+    
+    /**
+     * Multiplies this matrix from the right with a rotation matrix around the x-axis, so that this matrix becomes
+     * {@code this * fromRotX(angle)}. Only the two affected columns are computed.
+     *
+     * @param angle the angle in radians
+     * @return this matrix
+     */
+    @SuppressWarnings("Duplicates")
+    @NotNull
+    public Matrix3x3d rotateX(double angle) {
+        final double sin = sin(angle), cos = cos(angle);
+        for (int row = 0; row < 9; row += 3) {
+            final double m1 = content[row + 1], m2 = content[row + 2];
+            content[row + 1] = m1 * cos + m2 * sin + 0.0;
+            content[row + 2] = m2 * cos - m1 * sin + 0.0;
+        }
+        return this;
+    }
+    
+    /**
+     * Multiplies this matrix from the right with a rotation matrix around the y-axis, so that this matrix becomes
+     * {@code this * fromRotY(angle)}. Only the two affected columns are computed.
+     *
+     * @param angle the angle in radians
+     * @return this matrix
+     */
+    @SuppressWarnings("Duplicates")
+    @NotNull
+    public Matrix3x3d rotateY(double angle) {
+        final double sin = sin(angle), cos = cos(angle);
+        for (int row = 0; row < 9; row += 3) {
+            final double m0 = content[row], m2 = content[row + 2];
+            content[row] = m0 * cos - m2 * sin + 0.0;
+            content[row + 2] = m0 * sin + m2 * cos + 0.0;
+        }
+        return this;
+    }
+    
+    /**
+     * Multiplies this matrix from the right with a rotation matrix around the z-axis, so that this matrix becomes
+     * {@code this * fromRotZ(angle)}. Only the two affected columns are computed.
+     *
+     * @param angle the angle in radians
+     * @return this matrix
+     */
+    @SuppressWarnings("Duplicates")
+    @NotNull
+    public Matrix3x3d rotateZ(double angle) {
+        final double sin = sin(angle), cos = cos(angle);
+        for (int row = 0; row < 9; row += 3) {
+            final double m0 = content[row], m1 = content[row + 1];
+            content[row] = m0 * cos + m1 * sin + 0.0;
+            content[row + 1] = m1 * cos - m0 * sin + 0.0;
+        }
+        return this;
+    }
+    
+    @NotNull
+    public Matrix3x3d setFromEulerXYZ(double x, double y, double z) {
+        return setIdentity().rotateX(x).rotateY(y).rotateZ(z);
+    }
+    
+    @NotNull
+    public Matrix3x3d setFromEulerXZY(double x, double y, double z) {
+        return setIdentity().rotateX(x).rotateZ(z).rotateY(y);
+    }
+    
+    @NotNull
+    public Matrix3x3d setFromEulerZXY(double x, double y, double z) {
+        return setIdentity().rotateZ(z).rotateX(x).rotateY(y);
+    }
+    
+    @NotNull
+    public Matrix3x3d setFromEulerYXZ(double x, double y, double z) {
+        return setIdentity().rotateY(y).rotateX(x).rotateZ(z);
+    }
+    
+    @NotNull
+    public Matrix3x3d setFromEulerYZX(double x, double y, double z) {
+        return setIdentity().rotateY(y).rotateZ(z).rotateX(x);
+    }
+    
+    @NotNull
+    public Matrix3x3d setFromEulerZYX(double x, double y, double z) {
+        return setIdentity().rotateZ(z).rotateY(y).rotateX(x);
+    }
+    
     // MISC
     
     @Override
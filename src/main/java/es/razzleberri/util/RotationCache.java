@@ -0,0 +1,255 @@
+package es.razzleberri.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of converted rotations, keyed by the exact CraftStudio rotation.
+ * <p>
+ * Models tend to reuse a small set of rotations, so most conversions become lookups. The cache is split into
+ * segments which are locked independently, so that one cache can be shared by all threads of a batch conversion.
+ * Every segment is a table of small buckets, and a full bucket evicts its rotations in CLOCK order, so rotations
+ * which are looked up again survive longer than rotations which are only used once.
+ * <p>
+ * Lookups compare the components of the rotation directly and don't create any objects, only a miss creates the
+ * cached rotation. Models whose rotations are rarely repeated convert faster without a cache.
+ */
+public class RotationCache {
+    
+    private final static int SEGMENTS = 16;
+    /** the maximum number of rotations in one bucket of a segment */
+    private final static int WAYS = 4;
+    
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+    
+    /**
+     * @param capacity the maximum number of rotations held by the cache
+     */
+    public RotationCache(int capacity) {
+        if (capacity < SEGMENTS)
+            throw new IllegalArgumentException("capacity must be at least " + SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(capacity / SEGMENTS);
+    }
+    
+    /**
+     * Returns the entity rotation of a CraftStudio rotation.
+     *
+     * @param xyzDegrees the CraftStudio rotation in degrees
+     * @return the entity rotation in degrees
+     * @see Rotations#craftStudioRotationToEntityRotation(Vec3d)
+     */
+    @NotNull
+    public Vec3d toEntityRotation(@NotNull Vec3d xyzDegrees) {
+        return get(xyzDegrees.getX(), xyzDegrees.getY(), xyzDegrees.getZ()).entityRotation;
+    }
+    
+    /**
+     * Writes the entity rotation of a CraftStudio rotation into an array.
+     *
+     * @param x the rotation around the x-axis in degrees
+     * @param y the rotation around the y-axis in degrees
+     * @param z the rotation around the z-axis in degrees
+     * @param result the array, which receives the entity rotation in degrees
+     * @see Rotations#craftStudioRotationToEntityRotation(double, double, double, double[])
+     */
+    public void toEntityRotation(double x, double y, double z, double[] result) {
+        Vec3d rotation = get(x, y, z).entityRotation;
+        result[0] = rotation.getX();
+        result[1] = rotation.getY();
+        result[2] = rotation.getZ();
+    }
+    
+    /**
+     * Returns whether a CraftStudio rotation is a zero rotation.
+     *
+     * @param xyzDegrees the CraftStudio rotation in degrees
+     * @return whether the rotation is a zero rotation
+     * @see Rotations#isZeroRotation(Vec3d)
+     */
+    public boolean isZeroRotation(@NotNull Vec3d xyzDegrees) {
+        return get(xyzDegrees.getX(), xyzDegrees.getY(), xyzDegrees.getZ()).zero;
+    }
+    
+    /**
+     * Returns whether a CraftStudio rotation is a zero rotation.
+     *
+     * @param x the rotation around the x-axis in degrees
+     * @param y the rotation around the y-axis in degrees
+     * @param z the rotation around the z-axis in degrees
+     * @return whether the rotation is a zero rotation
+     * @see Rotations#isZeroRotation(double, double, double)
+     */
+    public boolean isZeroRotation(double x, double y, double z) {
+        return get(x, y, z).zero;
+    }
+    
+    private CachedRotation get(double x, double y, double z) {
+        long bits = Double.doubleToLongBits(x);
+        bits = bits * 31 + Double.doubleToLongBits(y);
+        bits = bits * 31 + Double.doubleToLongBits(z);
+        int hash = (int) (bits ^ bits >>> 32);
+        hash ^= hash >>> 16;
+        Segment segment = segments[hash & (SEGMENTS - 1)];
+        hash >>>= 4;
+        
+        CachedRotation cached;
+        synchronized (segment) {
+            cached = segment.get(hash, x, y, z);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        
+        misses.increment();
+        double[] rotation = new double[3];
+        Rotations.craftStudioRotationToEntityRotation(x, y, z, rotation);
+        cached = new CachedRotation(x, y, z,
+            new Vec3d(rotation[0], rotation[1], rotation[2]),
+            Rotations.isZeroRotation(x, y, z));
+        synchronized (segment) {
+            return segment.put(hash, cached);
+        }
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    /**
+     * Returns the ratio of lookups which were answered from the cache.
+     *
+     * @return the hit rate in range 0..1
+     */
+    public double getHitRate() {
+        long hits = getHits(), total = hits + getMisses();
+        return total == 0? 0 : hits / (double) total;
+    }
+    
+    public int size() {
+        int result = 0;
+        for (Segment segment : segments)
+            synchronized (segment) {
+                result += segment.size;
+            }
+        return result;
+    }
+    
+    public void clear() {
+        for (Segment segment : segments)
+            synchronized (segment) {
+                segment.clear();
+            }
+        hits.reset();
+        misses.reset();
+    }
+    
+    @Override
+    public String toString() {
+        return getHits() + " hits, " + getMisses() + " misses (" + Math.round(getHitRate() * 100) + "% hit rate)";
+    }
+    
+    /**
+     * A table of buckets with up to {@link #WAYS} rotations each.
+     */
+    private static class Segment {
+        
+        private final int ways, bucketMask;
+        private final CachedRotation[] slots;
+        /** whether a slot has been looked up since the clock hand of its bucket last passed it */
+        private final boolean[] referenced;
+        /** the clock hand of every bucket, as an index into the bucket */
+        private final byte[] hands;
+        private int size;
+        
+        private Segment(int capacity) {
+            this.ways = Math.min(WAYS, capacity);
+            int buckets = Integer.highestOneBit(capacity / ways);
+            this.bucketMask = buckets - 1;
+            this.slots = new CachedRotation[buckets * ways];
+            this.referenced = new boolean[slots.length];
+            this.hands = new byte[buckets];
+        }
+        
+        private CachedRotation get(int hash, double x, double y, double z) {
+            int start = (hash & bucketMask) * ways;
+            for (int i = start; i < start + ways; i++) {
+                CachedRotation cached = slots[i];
+                if (cached != null && cached.matches(x, y, z)) {
+                    referenced[i] = true;
+                    return cached;
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * Adds a rotation unless another thread has added it in the meantime.
+         *
+         * @return the rotation held by the segment
+         */
+        private CachedRotation put(int hash, CachedRotation rotation) {
+            CachedRotation existing = get(hash, rotation.x, rotation.y, rotation.z);
+            if (existing != null)
+                return existing;
+            
+            int bucket = hash & bucketMask, start = bucket * ways;
+            for (int i = start; i < start + ways; i++) {
+                if (slots[i] == null) {
+                    slots[i] = rotation;
+                    size++;
+                    return rotation;
+                }
+            }
+            // the first slot which has not been looked up since the hand last passed it is evicted
+            int hand = hands[bucket];
+            while (referenced[start + hand]) {
+                referenced[start + hand] = false;
+                hand = (hand + 1) % ways;
+            }
+            slots[start + hand] = rotation;
+            hands[bucket] = (byte) ((hand + 1) % ways);
+            return rotation;
+        }
+        
+        private void clear() {
+            Arrays.fill(slots, null);
+            Arrays.fill(referenced, false);
+            Arrays.fill(hands, (byte) 0);
+            size = 0;
+        }
+        
+    }
+    
+    private static class CachedRotation {
+        
+        /** the CraftStudio rotation */
+        private final double x, y, z;
+        private final Vec3d entityRotation;
+        private final boolean zero;
+        
+        private CachedRotation(double x, double y, double z, Vec3d entityRotation, boolean zero) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.entityRotation = entityRotation;
+            this.zero = zero;
+        }
+        
+        private boolean matches(double x, double y, double z) {
+            return Double.doubleToLongBits(this.x) == Double.doubleToLongBits(x)
+                && Double.doubleToLongBits(this.y) == Double.doubleToLongBits(y)
+                && Double.doubleToLongBits(this.z) == Double.doubleToLongBits(z);
+        }
+        
+    }
+    
+}
@@ -1,5 +1,10 @@
 package es.razzleberri.util;
 
+import static java.lang.Math.atan2;
+import static java.lang.Math.sin;
+import static java.lang.Math.cos;
+import static java.lang.Math.sqrt;
+
 public final class Rotations {
     
     private final static double
@@ -10,11 +15,66 @@ public final class Rotations {
     private final static Vec3d _360 = new Vec3d(360, 360, 360);
     
     public static Vec3d craftStudioRotationToEntityRotation(Vec3d xyzDegrees) {
-        xyzDegrees = xyzDegrees.times(DEG_TO_RAD);
-        Matrix3x3d transformYXZ = Matrix3x3d.fromEulerYXZ(xyzDegrees);
-        transformYXZ = new Matrix3x3d(1, 0, 0, 0, 1, 0, 0, 0, -1).times(transformYXZ);
-        xyzDegrees = transformYXZ.getLZYXEulerRotation();
-        return xyzDegrees.times(RAD_TO_DEG);
+        double[] result = new double[3];
+        craftStudioRotationToEntityRotation(xyzDegrees.getX(), xyzDegrees.getY(), xyzDegrees.getZ(), result);
+        return new Vec3d(result[0], result[1], result[2]);
+    }
+    
+    /**
+     * <p>
+     * Converts a CraftStudio rotation into an entity rotation without allocating any objects.
+     * </p>
+     * <p>
+     * This is the closed form of mirroring the z-axis of {@link Matrix3x3d#fromEulerYXZ(double, double, double)} and
+     * decomposing the result with {@link Matrix3x3d#getLZYXEulerRotation()}. Only the matrix entries which are not
+     * constant zero are computed and the terms are added in the same order as in the generic matrix multiplication,
+     * so the results are identical. Adding {@code 0.0} turns {@code -0.0} into {@code 0.0} just like the summation
+     * of the generic multiplication does.
+     * </p>
+     *
+     * @param x the x-rotation in degrees
+     * @param y the y-rotation in degrees
+     * @param z the z-rotation in degrees
+     * @param result the array into which the x, y and z entity rotation in degrees are written
+     */
+    public static void craftStudioRotationToEntityRotation(double x, double y, double z, double[] result) {
+        x *= DEG_TO_RAD;
+        y *= DEG_TO_RAD;
+        z *= DEG_TO_RAD;
+        final double
+            sinX = sin(x), cosX = cos(x),
+            sinY = sin(y), cosY = cos(y),
+            sinZ = sin(z), cosZ = cos(z);
+        
+        /* rotY(y) * rotX(x) */
+        final double
+            a00 = cosY, a01 = sinY * sinX + 0.0, a02 = sinY * cosX + 0.0,
+            a11 = cosX, a12 = -sinX + 0.0,
+            a20 = -sinY + 0.0, a21 = cosY * sinX + 0.0, a22 = cosY * cosX + 0.0;
+        
+        /* (rotY(y) * rotX(x)) * rotZ(z) with the third row negated to mirror the z-axis */
+        final double
+            m00 = a00 * cosZ + a01 * sinZ + 0.0,
+            m01 = a01 * cosZ - a00 * sinZ + 0.0,
+            m02 = a02,
+            m10 = a11 * sinZ + 0.0,
+            m11 = a11 * cosZ + 0.0,
+            m12 = a12,
+            m20 = 0.0 - (a20 * cosZ + a21 * sinZ + 0.0),
+            m21 = 0.0 - (a21 * cosZ - a20 * sinZ + 0.0),
+            m22 = 0.0 - a22;
+        
+        /* Z_l Y_r X_r decomposition */
+        final double angleZ = atan2(-m10, m00);
+        final double angleY = atan2(-m20, sqrt(m21 * m21 + m22 * m22));
+        final double sinAngleZ = sin(angleZ), cosAngleZ = cos(angleZ);
+        final double angleX = atan2(
+            -sinAngleZ * m02 - cosAngleZ * m12,
+            sinAngleZ * m01 + cosAngleZ * m11);
+        
+        result[0] = angleX * RAD_TO_DEG;
+        result[1] = angleY * RAD_TO_DEG;
+        result[2] = angleZ * RAD_TO_DEG;
     }
     
     public static boolean isZeroRotation(Vec3d anglesDeg) {
@@ -27,4 +87,34 @@ public final class Rotations {
             && anglesDeg.getZ() < EPSILON;
     }
     
+    /**
+     * Returns whether a rotation is a zero rotation without allocating any objects.
+     *
+     * @param x the x-rotation in degrees
+     * @param y the y-rotation in degrees
+     * @param z the z-rotation in degrees
+     * @return whether the rotation is a zero rotation
+     * @see #isZeroRotation(Vec3d)
+     */
+    public static boolean isZeroRotation(double x, double y, double z) {
+        return (x % 360 + 360) % 360 < EPSILON
+            && (y % 360 + 360) % 360 < EPSILON
+            && (z % 360 + 360) % 360 < EPSILON;
+    }
+    
+    /**
+     * Returns whether a rotation does not rotate at all. Unlike {@link #isZeroRotation(double, double, double)}, this
+     * also detects combinations of angles which cancel each other out, such as {@code (180, 180, 180)}, and angles
+     * which are slightly below a multiple of 360 degrees due to rounding errors.
+     *
+     * @param x the x-rotation in degrees
+     * @param y the y-rotation in degrees
+     * @param z the z-rotation in degrees
+     * @return whether the rotation matrix of the rotation is the identity matrix
+     */
+    public static boolean isIdentity(double x, double y, double z) {
+        return Matrix3x3d.fromEulerXYZ(x * DEG_TO_RAD, y * DEG_TO_RAD, z * DEG_TO_RAD)
+            .equals(new Matrix3x3d().setIdentity(), EPSILON);
+    }
+    
 }
@@ -0,0 +1,96 @@
+package es.razzleberri;
+
+import es.razzleberri.io.*;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class BatchConverterTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static String model(String title, int width) {
+        return TestModels.model(title, TestModels.block("body").position(0, 8, 0).size(width, 4, 4).rotation(0, 30, 0));
+    }
+    
+    /**
+     * Verifies that joined geometries are written in path order, regardless of the order in which their conversions
+     * finish, and that the file matches a model containing all geometries.
+     */
+    @Test
+    public void joinInPathOrder() throws IOException {
+        Path inputs = folder.newFolder("models").toPath();
+        String[] sources = new String[8];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = model("geometry.model" + i, i + 1);
+            write(inputs.resolve("model" + i + BatchConverter.CS_EXTENSION), sources[i]);
+        }
+        Path output = folder.getRoot().toPath().resolve("joined.json");
+        
+        ModelConverter converter = new ModelConverter(new ConversionOptions(), false);
+        List<ConversionResult> results = BatchConverter.joined(inputs.toString(), output, converter)
+            .runJoined(new PrintStream(new ByteArrayOutputStream()));
+        assertEquals(sources.length, results.size());
+        assertTrue(results.stream().allMatch(result -> result.isSuccess() && result.isWritten()));
+        assertTrue(results.stream().allMatch(result -> result.getOutput().equals(output)));
+        
+        BedrockEntityModel expected = new BedrockEntityModel();
+        for (String source : sources)
+            for (Map.Entry<String, BedrockEntityGeometry> entry : CraftStudioToBedrockEntity.convert(
+                new CraftStudioDeserializer().fromString(source)).getGeometryEntries())
+                expected.putGeometry(entry.getKey(), entry.getValue());
+        assertEquals(new BedrockEntitySerializer().toString(expected),
+            new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Verifies that a geometry whose name is already taken by an earlier input fails and that the entity file is not
+     * written in that case.
+     */
+    @Test
+    public void rejectDuplicateGeometryNames() throws IOException {
+        Path inputs = folder.newFolder("models").toPath();
+        write(inputs.resolve("a" + BatchConverter.CS_EXTENSION), model("geometry.same", 1));
+        write(inputs.resolve("b" + BatchConverter.CS_EXTENSION), model("geometry.same", 2));
+        Path output = folder.getRoot().toPath().resolve("joined.json");
+        
+        ModelConverter converter = new ModelConverter(new ConversionOptions(), false);
+        List<ConversionResult> results = BatchConverter.joined(inputs.toString(), output, converter)
+            .runJoined(new PrintStream(new ByteArrayOutputStream()));
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getError().contains("geometry.same"));
+        assertFalse(Files.exists(output));
+    }
+    
+    /**
+     * Verifies that a joined batch without inputs fails instead of writing an entity file without geometries.
+     */
+    @Test
+    public void rejectEmptyJoinedBatch() throws IOException {
+        Path inputs = folder.newFolder("models").toPath();
+        Path output = folder.getRoot().toPath().resolve("joined.json");
+        
+        ModelConverter converter = new ModelConverter(new ConversionOptions(), false);
+        try {
+            BatchConverter.joined(inputs.toString(), output, converter)
+                .runJoined(new PrintStream(new ByteArrayOutputStream()));
+            fail("empty batch was joined");
+        } catch (IOException expected) {
+            // no models were found
+        }
+        assertFalse(Files.exists(output));
+    }
+    
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+}
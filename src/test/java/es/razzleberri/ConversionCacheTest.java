@@ -0,0 +1,71 @@
+package es.razzleberri;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class ConversionCacheTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void putAndCopy() throws IOException {
+        ConversionCache cache = ConversionCache.open(folder.newFolder("cache").toPath(), 1 << 20);
+        String key = ConversionCache.keyOf("model".getBytes(StandardCharsets.UTF_8), new ConversionOptions());
+        Path output = folder.getRoot().toPath().resolve("model.json");
+        
+        assertFalse(cache.copyTo(key, output));
+        cache.put(key, "entity".getBytes(StandardCharsets.UTF_8));
+        assertTrue(cache.copyTo(key, output));
+        assertEquals("entity", new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+        assertTrue(cache.matches(key, output));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+    
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+        Path directory = folder.newFolder("cache").toPath();
+        ConversionCache cache = ConversionCache.open(directory, 2500);
+        Path output = folder.getRoot().toPath().resolve("model.json");
+        byte[] content = new byte[1000];
+        
+        String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ConversionCache.keyOf(new byte[] {(byte) i}, new ConversionOptions());
+            if (i == 2) {
+                // file times may be too coarse to order entries which were written right after each other
+                for (int j = 0; j < 2; j++) {
+                    Path entry = directory.resolve(keys[j].substring(0, 2)).resolve(keys[j] + ".json");
+                    Files.setLastModifiedTime(entry, FileTime.fromMillis(1000 * (j + 1)));
+                }
+            }
+            cache.put(keys[i], content);
+        }
+        
+        assertTrue(cache.getBytes() <= 2500);
+        assertFalse(cache.copyTo(keys[0], output));
+        assertTrue(cache.copyTo(keys[2], output));
+    }
+    
+    @Test
+    public void invalidateOtherVersions() throws IOException {
+        Path directory = folder.newFolder("cache").toPath();
+        String key = ConversionCache.keyOf(new byte[0], new ConversionOptions());
+        ConversionCache.open(directory, 1 << 20).put(key, new byte[10]);
+        assertEquals(10, ConversionCache.open(directory, 1 << 20).getBytes());
+        
+        Files.write(directory.resolve("VERSION"), "0".getBytes(StandardCharsets.UTF_8));
+        ConversionCache cache = ConversionCache.open(directory, 1 << 20);
+        assertEquals(0, cache.getBytes());
+        assertFalse(cache.copyTo(key, directory.resolve("model.json")));
+    }
+    
+}
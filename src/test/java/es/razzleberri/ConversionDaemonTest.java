@@ -0,0 +1,153 @@
+package es.razzleberri;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class ConversionDaemonTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream stream = ConversionDaemonTest.class.getClassLoader().getResourceAsStream(name)) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = stream.read(buffer)) != -1; )
+                result.write(buffer, 0, n);
+            return result.toByteArray();
+        }
+    }
+    
+    private static Thread start(ConversionDaemon daemon) {
+        Thread thread = new Thread(() -> {
+            try {
+                daemon.run();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+    
+    @Test
+    public void convertConcurrently() throws Exception {
+        byte[] model = readResource("model.csjsmodel");
+        ConversionOptions options = new ConversionOptions();
+        byte[] expected = new ModelConverter(options, true).convert(model).getContent();
+        
+        try (ConversionDaemon daemon = new ConversionDaemon(0, 2)) {
+            start(daemon);
+            
+            ConversionClient client = new ConversionClient(daemon.getPort());
+            assertTrue(client.isAvailable());
+            
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<ConversionOutput>> futures = new ArrayList<>();
+                for (int i = 0; i < 32; i++)
+                    futures.add(executor.submit(() -> client.convert(model, options)));
+                for (Future<ConversionOutput> future : futures) {
+                    ConversionOutput output = future.get();
+                    assertArrayEquals(expected, output.getContent());
+                    assertEquals(9, output.getBlocks());
+                }
+            } finally {
+                executor.shutdown();
+            }
+            
+            try {
+                client.convert("{\"tree\": [".getBytes(StandardCharsets.UTF_8), options);
+                fail("malformed model was converted");
+            } catch (IOException expectedException) {
+                // the daemon reports the error of the conversion
+                assertFalse(expectedException instanceof ConversionClient.UnavailableException);
+            }
+            assertEquals(33, daemon.getRequests());
+        }
+    }
+    
+    /**
+     * Verifies that a client which announces a large model and then stops sending is disconnected, so that it neither
+     * holds the only permit nor the memory of the model forever.
+     */
+    @Test(timeout = 10_000)
+    public void disconnectStalledClient() throws Exception {
+        byte[] model = readResource("model.csjsmodel");
+        ConversionOptions options = new ConversionOptions();
+        
+        try (ConversionDaemon daemon = new ConversionDaemon(0, 1, 200);
+             Socket stalled = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            start(daemon);
+            
+            DataOutputStream out = new DataOutputStream(stalled.getOutputStream());
+            out.writeInt(ConversionDaemon.MAGIC);
+            out.writeInt(CraftStudioToBedrockEntity.VERSION);
+            out.writeUTF(options.getFingerprint());
+            out.writeInt(ConversionDaemon.MAX_LENGTH);
+            out.flush();
+            // gives the daemon time to hand the only permit to the stalled request
+            Thread.sleep(50);
+            
+            ConversionOutput output = new ConversionClient(daemon.getPort()).convert(model, options);
+            assertEquals(9, output.getBlocks());
+            assertEquals("stalled connection was closed", -1, stalled.getInputStream().read());
+            assertEquals(1, daemon.getRequests());
+        }
+    }
+    
+    /**
+     * Verifies that a daemon rejects requests of another version of the conversion instead of answering them with
+     * the output of its own version.
+     */
+    @Test(timeout = 10_000)
+    public void rejectOtherVersion() throws Exception {
+        try (ConversionDaemon daemon = new ConversionDaemon(0, 1);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            start(daemon);
+            
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ConversionDaemon.MAGIC);
+            out.writeInt(CraftStudioToBedrockEntity.VERSION + 1);
+            out.flush();
+            
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(ConversionDaemon.STATUS_REJECTED, in.readByte());
+            assertEquals(0, daemon.getRequests());
+        }
+    }
+    
+    /**
+     * Verifies that models are converted locally if the daemon is gone.
+     */
+    @Test(timeout = 10_000)
+    public void convertLocallyWithoutDaemon() throws Exception {
+        int port;
+        try (ConversionDaemon daemon = new ConversionDaemon(0, 1)) {
+            port = daemon.getPort();
+        }
+        ConversionOptions options = new ConversionOptions();
+        ModelConverter converter = new ModelConverter(options, true, null, new ConversionClient(port));
+        
+        Path csFile = folder.getRoot().toPath().resolve("model.csjsmodel");
+        Path entityFile = folder.getRoot().toPath().resolve("model.json");
+        byte[] model = readResource("model.csjsmodel");
+        Files.write(csFile, model);
+        
+        ConversionResult result = converter.convert(csFile, entityFile);
+        assertTrue(result.getError(), result.isSuccess());
+        byte[] expected = new ModelConverter(options, true).convert(model).getContent();
+        assertArrayEquals(expected, Files.readAllBytes(entityFile));
+    }
+    
+}
@@ -1,9 +1,353 @@
 package es.razzleberri;
 
+import es.razzleberri.io.*;
+import es.razzleberri.util.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.*;
+
+import static es.razzleberri.TestModels.*;
 import static org.junit.Assert.*;
 
 public class CraftStudio2BedrockEntityTest {
     
-
+    private final static String[] MODELS = {"model.csjsmodel", "axes.csjsmodel", "rotations.csjsmodel"};
+    
+    /**
+     * Verifies that converting and serializing the compact representation of a model produces exactly the same entity
+     * file as the object representation.
+     */
+    @Test
+    public void compactConversionMatchesObjectConversion() throws IOException {
+        for (String resource : MODELS) {
+            CraftStudioModel model = new CraftStudioDeserializer().fromResource(getClass(), resource);
+            CompactCraftStudioModel compactModel = new CompactCraftStudioDeserializer().fromResource(getClass(), resource);
+            assertEquals(model.getTotalSize(), compactModel.size());
+            
+            String expected = new BedrockEntitySerializer().toString(CraftStudioToBedrockEntity.convert(model));
+            CompactBedrockGeometry geometry = CraftStudioToBedrockEntity.convert(compactModel, new ConversionOptions());
+            assertEquals(resource, expected, new CompactBedrockEntitySerializer().toString(geometry));
+            
+            BedrockEntityModel entity = CraftStudioToBedrockEntity.convert(model);
+            assertEquals(resource, new BedrockEntitySerializer(true, 2).toString(entity),
+                new CompactBedrockEntitySerializer(true, 2).toString(geometry));
+        }
+    }
+    
+    /**
+     * Verifies that parallel conversions produce the same output as sequential conversions, using a threshold which
+     * splits every model down to single top-level blocks.
+     */
+    @Test
+    public void parallelConversionMatchesSequentialConversion() throws IOException {
+        ConversionOptions parallel = new ConversionOptions().setParallelThreshold(1);
+        for (String resource : MODELS) {
+            CraftStudioModel model = new CraftStudioDeserializer().fromResource(getClass(), resource);
+            CompactCraftStudioModel compactModel = new CompactCraftStudioDeserializer().fromResource(getClass(), resource);
+            
+            BedrockEntitySerializer serializer = new BedrockEntitySerializer();
+            String expected = serializer.toString(CraftStudioToBedrockEntity.convert(model));
+            assertEquals(resource, expected, serializer.toString(CraftStudioToBedrockEntity.convert(model, parallel)));
+            CompactBedrockGeometry geometry = CraftStudioToBedrockEntity.convert(compactModel, parallel);
+            assertEquals(resource, expected, new CompactBedrockEntitySerializer().toString(geometry));
+        }
+    }
+    
+    /**
+     * Verifies that deeply nested models are parsed and converted on a thread with a small stack.
+     */
+    @Test
+    public void deeplyNestedModel() throws Exception {
+        final int depth = 20_000;
+        String source = TestModels.chain(depth);
+        
+        String[] results = new String[2];
+        Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                CraftStudioModel model = new CraftStudioDeserializer().fromString(source);
+                assertEquals(depth, model.getTotalSize());
+                BedrockEntityModel entity = CraftStudioToBedrockEntity.convert(model);
+                assertEquals(depth, entity.getGeometry("geometry.chain").size());
+                results[0] = new BedrockEntitySerializer().toString(entity);
+                
+                CompactCraftStudioModel compactModel = new CompactCraftStudioDeserializer().fromString(source);
+                CompactBedrockGeometry geometry =
+                    CraftStudioToBedrockEntity.convert(compactModel, new ConversionOptions());
+                results[1] = new CompactBedrockEntitySerializer().toString(geometry);
+            } catch (Throwable ex) {
+                error[0] = ex;
+            }
+        }, "deeply-nested", 256 * 1024);
+        thread.start();
+        thread.join();
+        
+        if (error[0] != null)
+            throw new AssertionError(error[0]);
+        assertEquals(results[0], results[1]);
+    }
+    
+    /**
+     * Verifies that duplicate bone names are first prefixed with the name of their parent and then numbered.
+     */
+    @Test
+    public void duplicateBoneNames() throws IOException {
+        TestModels.Block arm = block("arm").rotation(0, 45, 0);
+        TestModels.Block body = block("body").rotation(0, 45, 0).children(arm);
+        String source = model("geometry.duplicates", body, body, arm);
+        
+        CraftStudioModel model = new CraftStudioDeserializer().fromString(source);
+        BedrockEntityGeometry geometry = CraftStudioToBedrockEntity.convert(model).getGeometry("geometry.duplicates");
+        String[] names = {"body", "arm", "body_2", "body_2.arm", "arm_2"};
+        String[] parents = {null, "body", null, "body_2", null};
+        int i = 0;
+        for (BedrockEntityBone bone : geometry) {
+            assertEquals(names[i], bone.getName());
+            assertEquals(parents[i], bone.getParent());
+            assertSame(bone, geometry.getBone(names[i++]));
+        }
+        assertEquals(names.length, i);
+        assertFalse(geometry.hasBone("body.arm"));
+        
+        String expected = new BedrockEntitySerializer().toString(CraftStudioToBedrockEntity.convert(model));
+        ConversionOptions parallel = new ConversionOptions().setParallelThreshold(1);
+        CompactCraftStudioModel compactModel = new CompactCraftStudioDeserializer().fromString(source);
+        for (ConversionOptions options : new ConversionOptions[] {new ConversionOptions(), parallel}) {
+            assertEquals(expected,
+                new BedrockEntitySerializer().toString(CraftStudioToBedrockEntity.convert(model, options)));
+            assertEquals(expected, new CompactBedrockEntitySerializer().toString(
+                CraftStudioToBedrockEntity.convert(compactModel, options)));
+        }
+    }
+    
+    /**
+     * Verifies that a row of touching cubes with equal UV offsets is merged into one cube, even though the cube of the
+     * bone itself overlaps the row, but not a cube with a different UV offset. Both representations must merge the
+     * same cubes.
+     */
+    @Test
+    public void mergeCubes() throws IOException {
+        int[][] bricks = {{0, 0}, {2, 0}, {4, 0}, {6, 8}};
+        TestModels.Block root = block("wall").position(0, 8, 0).rotation(0, 45, 0);
+        for (int[] brick : bricks)
+            root.children(block("brick").position(brick[0], 0, 0).size(2, 1, 1).texOffset(brick[1], 0));
+        String source = model("geometry.wall", root);
+        
+        BedrockEntityModel model = CraftStudioToBedrockEntity.convert(new CraftStudioDeserializer().fromString(source));
+        BedrockEntityGeometry geometry = model.getGeometry("geometry.wall");
+        assertEquals(2, CubeMerger.mergeCubes(geometry));
+        BedrockEntityBone wall = geometry.getBone("wall");
+        assertNotNull(wall);
+        assertEquals(3, wall.size());
+        assertTrue(wall.getCubes().stream().anyMatch(cube -> cube.getSize().getX() == 6));
+        
+        CompactBedrockGeometry compact = CraftStudioToBedrockEntity.convert(
+            new CompactCraftStudioDeserializer().fromString(source), new ConversionOptions());
+        assertEquals(2, CubeMerger.mergeCubes(compact));
+        assertEquals(3, compact.getCubeCount());
+        assertEquals(new BedrockEntitySerializer().toString(model),
+            new CompactBedrockEntitySerializer().toString(compact));
+    }
+    
+    /**
+     * Verifies that a chain of bones whose rotations cancel out is collapsed into their rotated ancestor, which
+     * receives their cubes and their rotated child, and that both representations are flattened the same way.
+     */
+    @Test
+    public void flattenBones() throws IOException {
+        Function<String, TestModels.Block> blockAt = name -> block(name).position(1, 2, 3).offsetFromPivot(0, 1, 0)
+            .size(1, 2, 3);
+        TestModels.Block arm = blockAt.apply("arm").rotation(0, 0, 30);
+        TestModels.Block joint = blockAt.apply("joint").rotation(180, 180, 180).children(arm);
+        TestModels.Block hinge = blockAt.apply("hinge").rotation(180, 180, 180).children(joint);
+        String source = model("geometry.chain", blockAt.apply("body").rotation(0, 45, 0).children(hinge));
+        
+        BedrockEntityModel model = CraftStudioToBedrockEntity.convert(new CraftStudioDeserializer().fromString(source));
+        BedrockEntityGeometry geometry = model.getGeometry("geometry.chain");
+        assertEquals(4, geometry.size());
+        assertEquals(2, BoneFlattener.flattenBones(geometry));
+        BedrockEntityBone body = geometry.getBone("body");
+        assertNotNull(body);
+        assertEquals(3, body.size());
+        assertFalse(geometry.hasBone("joint"));
+        assertEquals("body", geometry.getBone("arm").getParent());
+        
+        CompactBedrockGeometry compact = CraftStudioToBedrockEntity.convert(
+            new CompactCraftStudioDeserializer().fromString(source), new ConversionOptions());
+        assertEquals(2, BoneFlattener.flattenBones(compact));
+        assertEquals(2, compact.getBoneCount());
+        assertEquals(new BedrockEntitySerializer().toString(model),
+            new CompactBedrockEntitySerializer().toString(compact));
+    }
+    
+    /**
+     * Verifies that a chain of blocks without rotation below a rotated block is folded into the bone of the rotated
+     * block at any depth, with the positions of all ancestors added up, and that a rotated block at the end of the
+     * chain becomes a child of that bone.
+     */
+    @Test
+    public void foldNestedBlocksWithoutRotation() throws IOException {
+        TestModels.Block rotated = block("rotated").position(0, 0, 1).size(2, 2, 2).rotation(0, 0, 30);
+        TestModels.Block cube = block("cube").position(0, 0, 2).size(2, 2, 2);
+        TestModels.Block inner = block("inner").position(0, 1, 0).offsetFromPivot(1, 0, 0).size(2, 2, 2)
+            .children(cube, rotated);
+        TestModels.Block outer = block("outer").position(1, 0, 0).offsetFromPivot(0, 0, 1).size(2, 2, 2)
+            .children(inner);
+        String source = model("geometry.chain", block("body").position(1, 2, 3).offsetFromPivot(0, 1, 0)
+            .size(2, 2, 2).rotation(0, 45, 0).children(outer));
+        
+        BedrockEntityModel model = CraftStudioToBedrockEntity.convert(new CraftStudioDeserializer().fromString(source));
+        BedrockEntityGeometry geometry = model.getGeometry("geometry.chain");
+        assertEquals(2, geometry.size());
+        
+        BedrockEntityBone body = geometry.getBone("body");
+        assertNotNull(body);
+        String[] origins = {"[0.0, 2.0, -4.0]", "[1.0, 2.0, -5.0]", "[2.0, 3.0, -5.0]", "[2.0, 3.0, -7.0]"};
+        assertEquals(origins.length, body.size());
+        for (int i = 0; i < origins.length; i++)
+            assertEquals(origins[i], body.getCubes().get(i).getOrigin().toString());
+        
+        BedrockEntityBone bone = geometry.getBone("rotated");
+        assertNotNull(bone);
+        assertEquals("body", bone.getParent());
+        assertEquals("[2.0, 3.0, -4.0]", String.valueOf(bone.getPivot()));
+        assertEquals("[2.0, 3.0, -6.0]", bone.getCubes().get(0).getOrigin().toString());
+        
+        CompactBedrockGeometry compact = CraftStudioToBedrockEntity.convert(
+            new CompactCraftStudioDeserializer().fromString(source), new ConversionOptions());
+        assertEquals(new BedrockEntitySerializer().toString(model),
+            new CompactBedrockEntitySerializer().toString(compact));
+    }
+    
+    /**
+     * Verifies that the center of a 3x3x3 block of cubes and a cube without area are culled, but none of the cubes on
+     * the surface of the block, and that both representations cull the same cubes.
+     */
+    @Test
+    public void cullCubes() throws IOException {
+        TestModels.Block root = block("block").rotation(0, 45, 0);
+        for (int x = 0; x < 3; x++)
+            for (int y = 0; y < 3; y++)
+                for (int z = 0; z < 3; z++)
+                    root.children(block("voxel").position(x, y, z));
+        root.children(block("line").position(8, 8, 8).size(0, 0, 4));
+        String source = model("geometry.block", root);
+        
+        BedrockEntityModel model = CraftStudioToBedrockEntity.convert(new CraftStudioDeserializer().fromString(source));
+        BedrockEntityGeometry geometry = model.getGeometry("geometry.block");
+        CubeCuller culler = new CubeCuller();
+        assertEquals(2, culler.cull(geometry));
+        assertEquals(12, culler.getCulledFaces());
+        assertEquals(27, geometry.getBone("block").size());
+        
+        CompactBedrockGeometry compact = CraftStudioToBedrockEntity.convert(
+            new CompactCraftStudioDeserializer().fromString(source), new ConversionOptions());
+        assertEquals(2, new CubeCuller().cull(compact));
+        assertEquals(new BedrockEntitySerializer().toString(model),
+            new CompactBedrockEntitySerializer().toString(compact));
+    }
+    
+    /**
+     * Verifies that the visible bounds fit the cubes of a model exactly if no bone is rotated, that rotated bones widen
+     * the bounds and that the fixed bounds can still be used.
+     */
+    @Test
+    public void visibleBounds() throws IOException {
+        IntFunction<String> source = angle -> model("geometry.body",
+            block("body").position(0, 16, 0).size(16, 32, 16).rotation(0, angle, 0));
+        
+        CompactBedrockGeometry geometry = CraftStudioToBedrockEntity.convert(
+            new CompactCraftStudioDeserializer().fromString(source.apply(0)), new ConversionOptions());
+        assertEquals(1, geometry.getVisibleBoundsWidth());
+        assertEquals(2, geometry.getVisibleBoundsHeight());
+        assertEquals(1, geometry.getVisibleBoundsOffset(1), 0);
+        
+        // turning the body by 45 degrees makes it sqrt(2) times as wide, the bounds must contain that at least
+        BedrockEntityGeometry rotated = CraftStudioToBedrockEntity.convert(
+            new CraftStudioDeserializer().fromString(source.apply(45))).getGeometry("geometry.body");
+        assertTrue(rotated.getVisibleBounds().getX() >= 2);
+        assertTrue(rotated.getVisibleBounds().getY() >= 2);
+        
+        BedrockEntityGeometry fixed = CraftStudioToBedrockEntity.convert(
+            new CraftStudioDeserializer().fromString(source.apply(45)),
+            new ConversionOptions().setFixedVisibleBounds(true)).getGeometry("geometry.body");
+        assertEquals(1, fixed.getVisibleBounds().getX());
+        assertEquals(2, fixed.getVisibleBounds().getY());
+        assertEquals(0, fixed.getVisibleBoundsOffset().getY(), 0);
+    }
+    
+    /**
+     * Verifies that packed UV layouts lie inside a texture whose sides are powers of two without overlapping, that
+     * cubes which shared a layout keep sharing it, and that both representations are packed the same way.
+     */
+    @Test
+    public void packUvs() throws IOException {
+        String source = model("geometry.cubes",
+            block("large").size(8, 8, 8),
+            block("small").size(4, 4, 4).texOffset(64, 0),
+            block("shared").size(4, 4, 4).texOffset(64, 0),
+            block("tall").size(2, 6, 2).texOffset(96, 0));
+        
+        BedrockEntityModel model = CraftStudioToBedrockEntity.convert(new CraftStudioDeserializer().fromString(source));
+        BedrockEntityGeometry geometry = model.getGeometry("geometry.cubes");
+        assertTrue(UvPacker.pack(geometry));
+        assertEquals(32, geometry.getTextureSize().getX());
+        assertEquals(32, geometry.getTextureSize().getY());
+        
+        List<BedrockEntityCube> cubes = new ArrayList<>();
+        for (BedrockEntityBone bone : geometry)
+            cubes.addAll(bone.getCubes());
+        assertEquals(4, cubes.size());
+        for (int i = 0; i < cubes.size(); i++) {
+            int[] a = footprintOf(cubes.get(i));
+            assertTrue(a[0] >= 0 && a[1] >= 0 && a[2] <= 32 && a[3] <= 32);
+            for (int j = i + 1; j < cubes.size(); j++) {
+                int[] b = footprintOf(cubes.get(j));
+                boolean overlaps = a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3];
+                assertEquals(Arrays.equals(a, b), overlaps);
+            }
+        }
+        
+        CompactBedrockGeometry compact = CraftStudioToBedrockEntity.convert(
+            new CompactCraftStudioDeserializer().fromString(source), new ConversionOptions());
+        assertTrue(UvPacker.pack(compact));
+        assertEquals(new BedrockEntitySerializer().toString(model),
+            new CompactBedrockEntitySerializer().toString(compact));
+    }
+    
+    /**
+     * Returns the left, top, right and bottom edge of the box UV layout of a cube.
+     */
+    private static int[] footprintOf(BedrockEntityCube cube) {
+        Vec3i size = cube.getSize();
+        Vec2i uv = cube.getUv();
+        return new int[] {uv.getX(), uv.getY(),
+            uv.getX() + 2 * (size.getX() + size.getZ()), uv.getY() + size.getZ() + size.getY()};
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void addDuplicateBone() {
+        BedrockEntityGeometry geometry =
+            new BedrockEntityGeometry(new Vec2i(1, 1), new Vec3d(0, 0, 0), new Vec2i(1, 1));
+        geometry.addBone(new BedrockEntityBone("bone", null, null, null));
+        geometry.addBone(new BedrockEntityBone("bone", null, null, null));
+    }
+    
+    @Test
+    public void compactModelStructure() throws IOException {
+        CompactCraftStudioModel model = new CompactCraftStudioDeserializer().fromResource(getClass(), "model.csjsmodel");
+        
+        assertEquals("geometry.test", model.getTitle());
+        int third = 0;
+        for (int i = 0; i < 2; i++)
+            third = model.getEnd(third);
+        assertEquals("Third", model.getName(third));
+        assertEquals(third + 2, model.getEnd(third));
+        assertEquals("Third_Child", model.getName(third + 1));
+        assertEquals(third, model.getParent(third + 1));
+        assertEquals(45, model.getRotation(third + 1, 1), 0);
+    }
     
 }
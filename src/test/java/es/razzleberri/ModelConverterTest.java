@@ -0,0 +1,46 @@
+package es.razzleberri;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class ModelConverterTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    /**
+     * Verifies that a file is only rewritten if its content changes, so that tools watching it are not notified of
+     * changes which did not happen.
+     */
+    @Test
+    public void writeIfChanged() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("model.json");
+        assertTrue(ModelConverter.writeIfChanged(file, bytes("{}")));
+        assertEquals("{}", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        
+        FileTime modified = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(file, modified);
+        assertFalse(ModelConverter.writeIfChanged(file, bytes("{}")));
+        assertEquals(modified, Files.getLastModifiedTime(file));
+        
+        // the same length with a different content
+        assertTrue(ModelConverter.writeIfChanged(file, bytes("[]")));
+        assertEquals("[]", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertNotEquals(modified, Files.getLastModifiedTime(file));
+        
+        assertTrue(ModelConverter.writeIfChanged(file, bytes("{\"a\": 1}")));
+        assertEquals("{\"a\": 1}", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+    
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+    
+}
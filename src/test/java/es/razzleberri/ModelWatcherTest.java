@@ -0,0 +1,69 @@
+package es.razzleberri;
+
+import es.razzleberri.io.*;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import static org.junit.Assert.*;
+
+public class ModelWatcherTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static String model(int width) {
+        return TestModels.model("geometry.watched",
+            TestModels.block("body").position(0, 8, 0).size(width, 4, 4).rotation(0, 30, 0));
+    }
+    
+    /**
+     * Verifies that a model is converted again after it has been modified.
+     */
+    @Test(timeout = 10_000)
+    public void reconvertModifiedModel() throws Exception {
+        Path csFile = folder.getRoot().toPath().resolve("model" + BatchConverter.CS_EXTENSION);
+        Path entityFile = folder.getRoot().toPath().resolve("model" + BatchConverter.ENTITY_EXTENSION);
+        write(csFile, model(4));
+        ModelConverter converter = new ModelConverter(new ConversionOptions(), true);
+        assertTrue(converter.convert(csFile, entityFile).isSuccess());
+        
+        String modified = model(6);
+        String expected = new BedrockEntitySerializer().toString(
+            CraftStudioToBedrockEntity.convert(new CraftStudioDeserializer().fromString(modified)));
+        assertNotEquals(expected, read(entityFile));
+        
+        Throwable[] error = new Throwable[1];
+        try (ModelWatcher watcher = ModelWatcher.forFile(csFile, entityFile, converter)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    watcher.watch(new PrintStream(new ByteArrayOutputStream()));
+                } catch (Throwable ex) {
+                    error[0] = ex;
+                }
+            }, "watcher");
+            thread.start();
+            
+            write(csFile, modified);
+            while (!expected.equals(read(entityFile)))
+                Thread.sleep(10);
+            
+            watcher.close();
+            thread.join();
+        }
+        if (error[0] != null)
+            throw new AssertionError(error[0]);
+    }
+    
+    private static void write(Path file, String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+    
+}
@@ -0,0 +1,159 @@
+package es.razzleberri;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * CraftStudio models which are generated by tests instead of being stored as resources.
+ */
+public final class TestModels {
+    
+    private TestModels() {}
+    
+    /**
+     * Returns the source of a model titled {@code geometry.chain}, which consists of a single chain of rotated blocks,
+     * each block being the only child of the previous block.
+     *
+     * @param depth the number of blocks
+     * @return the JSON source of the model
+     */
+    @NotNull
+    public static String chain(int depth) {
+        StringBuilder json = new StringBuilder("{\"title\": \"geometry.chain\", \"tree\": [");
+        for (int i = 0; i < depth; i++)
+            json.append("{\"name\": \"chain").append(i).append("\", \"position\": [1, 2, 0]")
+                .append(", \"offsetFromPivot\": [0, 0, 0], \"size\": [1, 1, 1], \"rotation\": [15, 0, 0]")
+                .append(", \"texOffset\": [0, 0], \"children\": [");
+        for (int i = 0; i < depth; i++)
+            json.append("]}");
+        return json.append("]}").toString();
+    }
+    
+    /**
+     * Returns the source of a model.
+     *
+     * @param title the title of the model
+     * @param tree the top-level blocks of the model
+     * @return the JSON source of the model
+     */
+    @NotNull
+    public static String model(@NotNull String title, @NotNull Block... tree) {
+        StringBuilder json = new StringBuilder("{\"title\": \"").append(title).append("\", \"tree\": [");
+        appendBlocks(json, Arrays.asList(tree));
+        return json.append("]}").toString();
+    }
+    
+    /**
+     * Returns a block at the origin of its parent, with a size of 1 and neither an offset, a rotation nor a texture
+     * offset, which the methods of the block change.
+     *
+     * @param name the name of the block
+     * @return the block
+     */
+    @NotNull
+    public static Block block(@NotNull String name) {
+        return new Block(name);
+    }
+    
+    private static void appendBlocks(StringBuilder json, List<Block> blocks) {
+        for (int i = 0; i < blocks.size(); i++) {
+            if (i != 0)
+                json.append(", ");
+            blocks.get(i).appendTo(json);
+        }
+    }
+    
+    private static void appendVector(StringBuilder json, String field, int... components) {
+        json.append(", \"").append(field).append("\": [");
+        for (int i = 0; i < components.length; i++)
+            json.append(i == 0? "" : ", ").append(components[i]);
+        json.append(']');
+    }
+    
+    /**
+     * A block of a generated model, whose {@link #toString() source} is created once the block is complete.
+     */
+    public final static class Block {
+        
+        private final String name;
+        private int[] position = {0, 0, 0}, offsetFromPivot = {0, 0, 0}, size = {1, 1, 1}, rotation = {0, 0, 0};
+        private int[] texOffset = {0, 0};
+        private final List<Block> children = new ArrayList<>();
+        
+        private Block(String name) {
+            this.name = name;
+        }
+        
+        @NotNull
+        public Block position(int x, int y, int z) {
+            this.position = new int[] {x, y, z};
+            return this;
+        }
+        
+        @NotNull
+        public Block offsetFromPivot(int x, int y, int z) {
+            this.offsetFromPivot = new int[] {x, y, z};
+            return this;
+        }
+        
+        @NotNull
+        public Block size(int x, int y, int z) {
+            this.size = new int[] {x, y, z};
+            return this;
+        }
+        
+        @NotNull
+        public Block rotation(int x, int y, int z) {
+            this.rotation = new int[] {x, y, z};
+            return this;
+        }
+        
+        @NotNull
+        public Block texOffset(int x, int y) {
+            this.texOffset = new int[] {x, y};
+            return this;
+        }
+        
+        /**
+         * Appends children to this block. A block may be added several times, even to different parents.
+         *
+         * @param children the children
+         * @return this block
+         */
+        @NotNull
+        public Block children(@NotNull Block... children) {
+            this.children.addAll(Arrays.asList(children));
+            return this;
+        }
+        
+        private void appendTo(StringBuilder json) {
+            json.append("{\"name\": \"").append(name).append('"');
+            appendVector(json, "position", position);
+            appendVector(json, "offsetFromPivot", offsetFromPivot);
+            appendVector(json, "size", size);
+            appendVector(json, "rotation", rotation);
+            appendVector(json, "texOffset", texOffset);
+            if (!children.isEmpty()) {
+                json.append(", \"children\": [");
+                appendBlocks(json, children);
+                json.append(']');
+            }
+            json.append('}');
+        }
+        
+        /**
+         * Returns the source of this block including its children.
+         *
+         * @return the JSON source of the block
+         */
+        @Override
+        public String toString() {
+            StringBuilder json = new StringBuilder();
+            appendTo(json);
+            return json.toString();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,141 @@
+package es.razzleberri.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class AtomicFileOutputStreamTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static long countFiles(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.count();
+        }
+    }
+    
+    @Test
+    public void testCommitReplacesFile() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path file = directory.resolve("out.bin");
+        Files.write(file, new byte[] {1, 2, 3});
+        
+        // small pool buffers force several gathering writes and the direct path for large arrays
+        ByteBufferPool pool = new ByteBufferPool(16, 4);
+        byte[] expected = new byte[1000];
+        new Random(1).nextBytes(expected);
+        try (AtomicFileOutputStream stream = new AtomicFileOutputStream(file, pool)) {
+            for (int i = 0; i < 500; i++)
+                stream.write(expected[i]);
+            stream.write(expected, 500, 5);
+            stream.write(expected, 505, 495);
+            assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(file));
+            stream.commit();
+        }
+        
+        assertArrayEquals(expected, Files.readAllBytes(file));
+        assertEquals(1, countFiles(directory));
+    }
+    
+    @Test
+    public void testCloseWithoutCommitKeepsFile() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path file = directory.resolve("out.json");
+        Files.write(file, "{}".getBytes(StandardCharsets.UTF_8));
+        
+        try (AtomicFileWriter writer = new AtomicFileWriter(file)) {
+            writer.write("{\"truncated\": ");
+            writer.flush();
+        }
+        
+        assertEquals("{}", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertEquals(1, countFiles(directory));
+    }
+    
+    @Test
+    public void testWriterEncodesUtf8() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path file = directory.resolve("out.txt");
+        
+        // surrogate pairs are split across writes and buffers
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 3000; i++)
+            builder.append(i % 3 == 0? "\uD83D\uDE00" : i % 3 == 1? "\u00e4" : "a");
+        String expected = builder.toString();
+        try (AtomicFileWriter writer = new AtomicFileWriter(file, new ByteBufferPool(16, 4))) {
+            for (int i = 0; i < expected.length(); i += 7)
+                writer.write(expected, i, Math.min(7, expected.length() - i));
+            writer.commit();
+        }
+        
+        assertEquals(expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Verifies that a file is only replaced if its content changes, comparing across several pool buffers.
+     */
+    @Test
+    public void testCommitIfChanged() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path file = directory.resolve("out.bin");
+        byte[] content = new byte[100];
+        new Random(2).nextBytes(content);
+        Files.write(file, content);
+        ByteBufferPool pool = new ByteBufferPool(16, 4);
+        
+        try (AtomicFileOutputStream stream = new AtomicFileOutputStream(file, pool)) {
+            stream.write(content);
+            assertFalse(stream.commitIfChanged());
+        }
+        assertEquals(1, countFiles(directory));
+        
+        content[99]++;
+        try (AtomicFileOutputStream stream = new AtomicFileOutputStream(file, pool)) {
+            stream.write(content);
+            assertTrue(stream.commitIfChanged());
+        }
+        assertArrayEquals(content, Files.readAllBytes(file));
+        assertEquals(1, countFiles(directory));
+    }
+    
+    /**
+     * Verifies that a new file gets the same permissions as any other new file in its directory, instead of the owner
+     * only permissions of temporary files, and that a replaced file keeps its permissions.
+     */
+    @Test
+    public void testPosixPermissions() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path reference = Files.createFile(directory.resolve("reference"));
+        Path file = directory.resolve("out.json");
+        
+        try (AtomicFileWriter writer = new AtomicFileWriter(file)) {
+            writer.write("{}");
+            writer.commit();
+        }
+        assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(file));
+        
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r-----");
+        Files.setPosixFilePermissions(file, permissions);
+        try (AtomicFileWriter writer = new AtomicFileWriter(file)) {
+            writer.write("[]");
+            writer.commit();
+        }
+        assertEquals("[]", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertEquals(permissions, Files.getPosixFilePermissions(file));
+    }
+    
+}
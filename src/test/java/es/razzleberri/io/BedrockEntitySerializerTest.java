@@ -1,5 +1,6 @@
 package es.razzleberri.io;
 
+import com.google.gson.*;
 import es.razzleberri.BedrockEntityBone;
 import es.razzleberri.BedrockEntityCube;
 import es.razzleberri.BedrockEntityGeometry;
@@ -10,6 +11,7 @@ import es.razzleberri.util.Vec3i;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Locale;
 
 import static org.junit.Assert.*;
 
@@ -32,4 +34,112 @@ public class BedrockEntitySerializerTest {
         
         new BedrockEntitySerializer().toStream(model, System.out);
     }
+    
+    /**
+     * Returns the model of the tests which compare the output, which has a second bone whose name has to be escaped
+     * and whose rotation contains negative zero and a number in scientific notation.
+     */
+    private static BedrockEntityModel createModel() {
+        BedrockEntityModel model = new BedrockEntityModel();
+        BedrockEntityGeometry geometry = new BedrockEntityGeometry(
+            new Vec2i(1, 2),
+            new Vec3d(0, 0.75, 0),
+            new Vec2i(64, 32)
+        );
+        
+        BedrockEntityBone body = new BedrockEntityBone("body", null, null, null);
+        body.addCube(new BedrockEntityCube(new Vec3d(0, 0, 0), new Vec3i(16, 16, 16), new Vec2i(16, 16)));
+        geometry.addBone(body);
+        
+        BedrockEntityBone head = new BedrockEntityBone("<head>", "body", new Vec3d(0, 24, 0), new Vec3d(-0.0, 1E-7, 45));
+        head.addCube(new BedrockEntityCube(new Vec3d(-4, 24, -4), new Vec3i(8, 8, 8), new Vec2i(0, 0)));
+        geometry.addBone(head);
+        
+        model.putGeometry("geometry.test", geometry);
+        return model;
+    }
+    
+    
+    /**
+     * Verifies that the streaming serializer produces exactly the same output as pretty-printing a JSON tree of the
+     * model with Gson.
+     */
+    @Test
+    public void toWriterMatchesTree() throws IOException {
+        JsonObject geometry = new JsonObject();
+        geometry.addProperty("visible_bounds_width", 1);
+        geometry.addProperty("visible_bounds_height", 2);
+        geometry.add("visible_bounds_offset", array(0d, 0.75, 0d));
+        geometry.addProperty("texturewidth", 64);
+        geometry.addProperty("textureheight", 32);
+        
+        JsonObject body = new JsonObject();
+        body.addProperty("name", "body");
+        body.add("cubes", array(cube(array(0d, 0d, 0d), array(16, 16, 16), array(16, 16))));
+        
+        JsonObject head = new JsonObject();
+        head.addProperty("name", "<head>");
+        head.addProperty("parent", "body");
+        head.add("pivot", array(0d, 24d, 0d));
+        head.add("rotation", array(-0.0, 1E-7, 45d));
+        head.add("cubes", array(cube(array(-4d, 24d, -4d), array(8, 8, 8), array(0, 0))));
+        
+        geometry.add("bones", array(body, head));
+        
+        JsonObject root = new JsonObject();
+        root.addProperty("format_version", "1.8.0");
+        root.add("geometry.test", geometry);
+        
+        String expected = new GsonBuilder().setPrettyPrinting().create().toJson(root);
+        assertEquals(expected, new BedrockEntitySerializer().toString(createModel()));
+    }
+    
+    /**
+     * Verifies that compact output has no whitespace, parses into the same tree apart from rounding, rounds doubles
+     * independently of the default locale and never writes {@code -0}.
+     */
+    @Test
+    public void compactAndRounded() throws IOException {
+        BedrockEntityModel model = createModel();
+        model.getGeometry("geometry.test").addBone(new BedrockEntityBone("arm", "body",
+            new Vec3d(-44.40850000000001, 2.5, 1.23456), new Vec3d(-0.00001, 0.5, 100)));
+        
+        Locale locale = Locale.getDefault();
+        String compact;
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            compact = new BedrockEntitySerializer(true, 4).toString(model);
+        } finally {
+            Locale.setDefault(locale);
+        }
+        assertFalse(compact.contains(" ") || compact.contains("\n"));
+        assertTrue(compact.contains("\"pivot\":[-44.4085,2.5,1.2346]"));
+        assertTrue(compact.contains("\"rotation\":[0,0.5,100]"));
+        assertTrue(compact.contains("\"rotation\":[0,0,45]"));
+        
+        // without rounding, compact output differs from pretty output only in whitespace
+        JsonParser parser = new JsonParser();
+        assertEquals(parser.parse(new BedrockEntitySerializer().toString(model)),
+            parser.parse(new BedrockEntitySerializer(true, BedrockEntitySerializer.FULL_PRECISION).toString(model)));
+    }
+    
+    private static JsonObject cube(JsonArray origin, JsonArray size, JsonArray uv) {
+        JsonObject json = new JsonObject();
+        json.add("origin", origin);
+        json.add("size", size);
+        json.add("uv", uv);
+        return json;
+    }
+    
+    private static JsonArray array(Object... elements) {
+        JsonArray json = new JsonArray();
+        for (Object element : elements) {
+            if (element instanceof Number)
+                json.add(new JsonPrimitive((Number) element));
+            else
+                json.add((JsonElement) element);
+        }
+        return json;
+    }
+    
 }
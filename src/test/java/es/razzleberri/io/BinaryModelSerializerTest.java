@@ -0,0 +1,96 @@
+package es.razzleberri.io;
+
+import es.razzleberri.*;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BinaryModelSerializerTest {
+    
+    private final static String[] MODELS = {"model.csjsmodel", "axes.csjsmodel", "rotations.csjsmodel"};
+    
+    /**
+     * Verifies that CraftStudio models read back from their binary form, also from read-only buffers like those of
+     * {@link FileContent}, convert into exactly the same entity files as the models read from JSON.
+     */
+    @Test
+    public void craftStudioRoundTrip() throws IOException {
+        for (String resource : MODELS) {
+            CraftStudioModel model = new CraftStudioDeserializer().fromResource(getClass(), resource);
+            byte[] bytes = new BinaryCraftStudioSerializer().toBytes(model);
+            CraftStudioModel fromBytes = new BinaryCraftStudioDeserializer().fromBytes(bytes);
+            CraftStudioModel fromBuffer = new BinaryCraftStudioDeserializer()
+                .fromByteBuffer(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+            assertEquals(model.getTitle(), fromBytes.getTitle());
+            assertEquals(model.getTotalSize(), fromBytes.getTotalSize());
+            
+            BedrockEntitySerializer serializer = new BedrockEntitySerializer();
+            String expected = serializer.toString(CraftStudioToBedrockEntity.convert(model));
+            assertEquals(resource, expected, serializer.toString(CraftStudioToBedrockEntity.convert(fromBytes)));
+            assertEquals(resource, expected, serializer.toString(CraftStudioToBedrockEntity.convert(fromBuffer)));
+        }
+    }
+    
+    /**
+     * Verifies that entity models read back from their binary form serialize into the same entity files, including
+     * bones without parent, pivot or rotation.
+     */
+    @Test
+    public void bedrockEntityRoundTrip() throws IOException {
+        for (String resource : MODELS) {
+            BedrockEntityModel model = CraftStudioToBedrockEntity.convert(
+                new CraftStudioDeserializer().fromResource(getClass(), resource));
+            model.getGeometryEntries().iterator().next().getValue()
+                .addBone(new BedrockEntityBone("loose", null, null, null));
+            byte[] bytes = new BinaryBedrockEntitySerializer().toBytes(model);
+            
+            BedrockEntitySerializer serializer = new BedrockEntitySerializer();
+            assertEquals(resource, serializer.toString(model),
+                serializer.toString(new BinaryBedrockEntityDeserializer().fromBytes(bytes)));
+            assertEquals(resource, serializer.toString(model),
+                serializer.toString(new BinaryBedrockEntityDeserializer().fromStream(new ByteArrayInputStream(bytes))));
+        }
+    }
+    
+    /**
+     * Verifies that deeply nested models are written and read without recursion.
+     */
+    @Test
+    public void deeplyNestedModel() throws IOException {
+        final int depth = 20_000;
+        CraftStudioModel model = new CraftStudioDeserializer().fromString(TestModels.chain(depth));
+        
+        CraftStudioModel read = new BinaryCraftStudioDeserializer().fromBytes(
+            new BinaryCraftStudioSerializer().toBytes(model));
+        assertEquals(depth, read.getTotalSize());
+        assertEquals(1, read.size());
+    }
+    
+    /**
+     * Verifies that other files and truncated files are rejected with an {@link IOException}.
+     */
+    @Test
+    public void rejectInvalidInput() throws IOException {
+        CraftStudioModel model = new CraftStudioDeserializer().fromResource(getClass(), "model.csjsmodel");
+        byte[] bytes = new BinaryCraftStudioSerializer().toBytes(model);
+        
+        assertRejected(new BinaryBedrockEntityDeserializer(), bytes);
+        assertRejected(new BinaryCraftStudioDeserializer(), "{\"title\": \"geometry.json\"}".getBytes("UTF-8"));
+        for (int length : new int[] {4, 12, bytes.length / 2, bytes.length - 1})
+            assertRejected(new BinaryCraftStudioDeserializer(), Arrays.copyOf(bytes, length));
+    }
+    
+    private static void assertRejected(Deserializer<?> deserializer, byte[] bytes) {
+        try {
+            deserializer.fromBytes(bytes);
+            fail("deserialized " + bytes.length + " invalid bytes");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+    
+}
@@ -0,0 +1,49 @@
+package es.razzleberri.io;
+
+import com.google.gson.*;
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.junit.Assert.*;
+
+public class BufferedJsonWriterTest {
+    
+    /**
+     * Verifies that the JSON writer escapes strings and nests containers exactly like Gson, also beyond the size of
+     * its buffer.
+     */
+    @Test
+    public void writeLikeGson() throws IOException {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 10_000; i++)
+            longString.append((char) (i % 200)).append('\u2028');
+        String[] names = {
+            "plain", "<tag> & 'quote' = \"x\"\\", "\t\b\n\r\f\u0000\u001f \u00e9 \u2029", longString.toString()
+        };
+        
+        for (boolean pretty : new boolean[] {true, false}) {
+            JsonObject tree = new JsonObject();
+            StringWriter writer = new StringWriter();
+            BufferedJsonWriter json = new BufferedJsonWriter(writer, pretty);
+            json.beginObject();
+            for (String name : names) {
+                JsonArray array = new JsonArray();
+                array.add(name);
+                array.add(0.5);
+                array.add(-3);
+                array.add(new JsonObject());
+                array.add(new JsonArray());
+                tree.add(name, array);
+                json.name(name).beginArray().value(name).value(0.5).value(-3)
+                    .beginObject().endObject().beginArray().endArray().endArray();
+            }
+            json.endObject();
+            json.flush();
+            
+            Gson gson = pretty? new GsonBuilder().setPrettyPrinting().create() : new Gson();
+            assertEquals(gson.toJson(tree), writer.toString());
+        }
+    }
+    
+}
@@ -1,10 +1,14 @@
 package es.razzleberri.io;
 
+import es.razzleberri.CraftStudioBlock;
 import es.razzleberri.CraftStudioModel;
+import es.razzleberri.util.*;
 import org.junit.Test;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import static org.junit.Assert.*;
 
@@ -20,4 +24,117 @@ public class CraftStudioDeserializerTest {
         }
     }
     
+    @Test
+    public void testDeserializeChildren() throws IOException {
+        CraftStudioModel model = new CraftStudioDeserializer().fromResource(getClass(), "model.csjsmodel");
+        
+        CraftStudioBlock third = model.getBlocks().get(2);
+        assertEquals("Third", third.getName());
+        assertEquals(1, third.getChildren().size());
+        assertEquals("Third_Child", third.getChildren().get(0).getName());
+        assertEquals(45, third.getChildren().get(0).getRotation().getY(), 0);
+        assertEquals(9, model.getTotalSize());
+    }
+    
+    @Test
+    public void testVisitor() throws IOException {
+        StringBuilder events = new StringBuilder();
+        String json = "{\"tree\": [{\"name\": \"a\", \"position\": [0, 0, 0], \"offsetFromPivot\": [0, 0, 0], "
+            + "\"size\": [1, 1, 1], \"rotation\": [0, 0, 0], \"texOffset\": [0, 0], \"children\": []}], "
+            + "\"title\": \"t\"}";
+        
+        new CraftStudioReader(new StringReader(json)).accept(new CraftStudioVisitor() {
+            @Override
+            public void visitTitle(String title) {
+                events.append("title ");
+            }
+            
+            @Override
+            public void visitBlockStart() {
+                events.append("start ");
+            }
+            
+            @Override
+            public void visitBlockFields(String name, Vec3d position, Vec3d offsetFromPivot, Vec3i size,
+                                         Vec3d rotation, Vec2i texOffset) {
+                events.append("fields:").append(name).append(' ');
+            }
+            
+            @Override
+            public void visitChildrenStart() {
+                events.append("children ");
+            }
+            
+            @Override
+            public void visitChildrenEnd() {
+                events.append("/children ");
+            }
+            
+            @Override
+            public void visitBlockEnd() {
+                events.append("end ");
+            }
+        });
+        
+        assertEquals("start fields:a children /children end title ", events.toString());
+    }
+    
+    @Test(expected = IOException.class)
+    public void testMissingField() throws IOException {
+        new CraftStudioDeserializer().fromString("{\"title\": \"t\", \"tree\": [{\"name\": \"a\"}]}");
+    }
+    
+    @Test
+    public void testByteBufferReader() throws IOException {
+        String text = "{\"title\": \"Mod\u00e8l \uD834\uDD1E \u4E16\"}";
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        buffer.put(text.getBytes(StandardCharsets.UTF_8)).flip();
+        
+        // single char reads have to split surrogate pairs
+        StringBuilder result = new StringBuilder();
+        try (Reader reader = new ByteBufferReader(buffer)) {
+            char[] chars = new char[1];
+            while (reader.read(chars, 0, 1) != -1)
+                result.append(chars[0]);
+        }
+        assertEquals(text, result.toString());
+        assertEquals(0, buffer.position());
+    }
+    
+    @Test
+    public void testDeserializeMappedFile() throws IOException {
+        StringBuilder json = new StringBuilder("{\"title\": \"\u00e8\", \"tree\": [");
+        while (json.length() < FileContent.MAP_THRESHOLD)
+            json.append("{\"name\": \"a\", \"position\": [0, 0, 0], \"offsetFromPivot\": [0, 0, 0], ")
+                .append("\"size\": [1, 1, 1], \"rotation\": [0, 0, 0], \"texOffset\": [0, 0]},\n");
+        json.setLength(json.length() - 2);
+        json.append("]}");
+        
+        File file = File.createTempFile("mapped", ".csjsmodel");
+        try {
+            Files.write(file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+            CraftStudioModel model = new CraftStudioDeserializer().fromFile(file);
+            
+            assertEquals("\u00e8", model.getTitle());
+            assertEquals(new CraftStudioDeserializer().fromString(json.toString()).size(), model.size());
+        } finally {
+            // a mapped file can not be deleted on every platform until the mapping is garbage collected
+            file.deleteOnExit();
+        }
+    }
+    
+    /**
+     * Verifies that large files can be read without mapping them, so that they can be replaced or deleted right away.
+     */
+    @Test
+    public void testReadLargeFileIntoHeap() throws IOException {
+        File file = File.createTempFile("heap", ".csjsmodel");
+        Files.write(file.toPath(), new byte[(int) FileContent.MAP_THRESHOLD]);
+        
+        ByteBuffer content = FileContent.read(file.toPath(), false);
+        assertFalse(content.isDirect());
+        assertEquals(FileContent.MAP_THRESHOLD, content.remaining());
+        Files.delete(file.toPath());
+    }
+    
 }
@@ -0,0 +1,49 @@
+package es.razzleberri.io;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DoubleFormatterTest {
+    
+    private static void assertFormatted(double value) {
+        char[] chars = new char[DoubleFormatter.MAX_CHARS + 2];
+        int end = DoubleFormatter.format(value, chars, 2);
+        assertEquals(Double.toString(value), new String(chars, 2, end - 2));
+    }
+    
+    /**
+     * Verifies that doubles are formatted exactly like {@link Double#toString(double)}, both the short decimals of the
+     * fast path and all other values.
+     */
+    @Test
+    public void formatLikeToString() {
+        double[] values = {
+            0.0, -0.0, 1, -1, 0.5, 24.25, 0.1, 0.2 + 0.1, 1e-3, 9.99e-4, 1e7, 9999999.5, 1234567.125, 1e-7, 1e21,
+            45.00000000000001, Math.PI, -Math.E, Double.MIN_VALUE, Double.MAX_VALUE, Double.MIN_NORMAL,
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Math.nextUp(0.001), Math.nextDown(1e7)
+        };
+        for (double value : values)
+            assertFormatted(value);
+        
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long unscaled = random.nextInt(2_000_000_000) - 1_000_000_000L;
+            assertFormatted(unscaled / Math.pow(10, random.nextInt(10)));
+            assertFormatted(Double.longBitsToDouble(random.nextLong()));
+            assertFormatted((random.nextDouble() - 0.5) * 200);
+        }
+    }
+    
+    @Test
+    public void writeLong() {
+        for (long value : new long[] {0, 7, -7, 10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            char[] chars = new char[21];
+            int end = DoubleFormatter.writeLong(value, chars, 1);
+            assertEquals(Long.toString(value), new String(chars, 1, end - 1));
+        }
+    }
+    
+}
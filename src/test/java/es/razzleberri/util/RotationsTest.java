@@ -24,6 +24,15 @@ public class RotationsTest {
         assertFalse(Rotations.isZeroRotation(new Vec3d(55, 400, -400)));
     }
     
+    @Test
+    public void isIdentity() {
+        assertTrue(Rotations.isIdentity(0, 360, -360));
+        assertTrue(Rotations.isIdentity(180, 180, 180));
+        assertTrue(Rotations.isIdentity(-1E-12, 0, 0));
+        assertFalse(Rotations.isIdentity(180, 0, 180));
+        assertFalse(Rotations.isIdentity(0, 1E-6, 0));
+    }
+    
     /* private static Vec3d nextVector(Random random) {
         return new Vec3d(
             random.nextDouble(),
@@ -305,4 +314,81 @@ public class RotationsTest {
         
     }
     
+    private static Vec3d craftStudioRotationToEntityRotationUsingMatrices(Vec3d xyzDegrees) {
+        Matrix3x3d transformYXZ = Matrix3x3d.fromEulerYXZ(xyzDegrees.times(DEG_TO_RAD));
+        transformYXZ = new Matrix3x3d(1, 0, 0, 0, 1, 0, 0, 0, -1).times(transformYXZ);
+        return transformYXZ.getLZYXEulerRotation().times(RAD_TO_DEG);
+    }
+    
+    /**
+     * Verifies that the closed-form conversion yields exactly the same angles as mirroring and decomposing the
+     * rotation matrix, both for random angles and for the multiples of 22.5 degrees which are common in models.
+     */
+    @Test
+    public void craftStudioRotationToEntityRotationClosedForm() {
+        List<Vec3d> inputs = new ArrayList<>();
+        Random random = new Random(12345);
+        for (int i = 0; i < 1000; i++)
+            inputs.add(new Vec3d(random.nextDouble() * 720 - 360, random.nextDouble() * 720 - 360,
+                random.nextDouble() * 720 - 360));
+        for (double x = -180; x <= 180; x += 22.5)
+            for (double y = -180; y <= 180; y += 22.5)
+                for (double z = -180; z <= 180; z += 22.5)
+                    inputs.add(new Vec3d(x, y, z));
+        
+        double[] result = new double[3];
+        for (Vec3d input : inputs) {
+            Vec3d expected = craftStudioRotationToEntityRotationUsingMatrices(input);
+            Rotations.craftStudioRotationToEntityRotation(input.getX(), input.getY(), input.getZ(), result);
+            
+            assertEquals(expected.getX(), result[0], 0);
+            assertEquals(expected.getY(), result[1], 0);
+            assertEquals(expected.getZ(), result[2], 0);
+        }
+    }
+    
+    @Test
+    public void rotationCache() {
+        RotationCache cache = new RotationCache(32);
+        Vec3d rotation = new Vec3d(22.5, 45, 90);
+        
+        assertTrue(cache.toEntityRotation(rotation).equals(Rotations.craftStudioRotationToEntityRotation(rotation), EPSILON));
+        assertSame(cache.toEntityRotation(rotation), cache.toEntityRotation(new Vec3d(22.5, 45, 90)));
+        assertTrue(cache.isZeroRotation(new Vec3d(0, 360, -360)));
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        
+        double[] result = new double[3];
+        cache.toEntityRotation(22.5, 45, 90, result);
+        Vec3d cached = cache.toEntityRotation(rotation);
+        assertArrayEquals(new double[] {cached.getX(), cached.getY(), cached.getZ()}, result, 0);
+        assertTrue(cache.isZeroRotation(0, 360, -360));
+        assertFalse(cache.isZeroRotation(-0.0, 0, 15));
+        assertEquals(3, cache.getMisses());
+        assertEquals(5, cache.getHits());
+        
+        for (int i = 0; i < 1000; i++)
+            cache.toEntityRotation(new Vec3d(i, 0, 0));
+        assertTrue(cache.size() <= 32);
+        for (int i = 0; i < 1000; i++)
+            assertTrue(cache.toEntityRotation(new Vec3d(i, i, 0)).equals(
+                Rotations.craftStudioRotationToEntityRotation(new Vec3d(i, i, 0)), EPSILON));
+        assertTrue(cache.size() <= 32);
+    }
+    
+    @Test
+    public void matrixInPlaceOperations() {
+        Matrix3x3d x = Matrix3x3d.fromRotX(0.3), y = Matrix3x3d.fromRotY(-1.1), z = Matrix3x3d.fromRotZ(2.5);
+        Matrix3x3d expected = x.times(y).times(z);
+        
+        assertTrue(expected.equals(new Matrix3x3d().setIdentity().rotateX(0.3).rotateY(-1.1).rotateZ(2.5), EPSILON));
+        assertTrue(expected.equals(new Matrix3x3d(x).postMultiply(y).postMultiply(z), EPSILON));
+        assertTrue(expected.equals(new Matrix3x3d(z).preMultiply(y).preMultiply(x), EPSILON));
+        assertTrue(expected.equals(new Matrix3x3d().setFromEulerXYZ(0.3, -1.1, 2.5), EPSILON));
+        
+        double[] result = new double[3];
+        expected.getXYZEulerRotation(result);
+        assertTrue(new Vec3d(result[0], result[1], result[2]).equals(new Vec3d(0.3, -1.1, 2.5), EPSILON));
+    }
+    
 }